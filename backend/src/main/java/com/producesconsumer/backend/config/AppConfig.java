@@ -1,5 +1,6 @@
 package com.producesconsumer.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -34,10 +35,16 @@ public class AppConfig {
     }
 
     /**
-     * Thread pool for machine processing threads
+     * Executor for machine runners and input generators.
+     * "platform" (default) gives one OS thread per runner, "virtual" runs each
+     * runner on its own virtual thread so idle/processing machines cost no OS thread
      */
     @Bean
-    public ExecutorService machineExecutorService() {
+    public ExecutorService machineExecutorService(
+            @Value("${simulation.execution-mode:platform}") String executionMode) {
+        if ("virtual".equalsIgnoreCase(executionMode)) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
         return Executors.newCachedThreadPool();
     }
 }
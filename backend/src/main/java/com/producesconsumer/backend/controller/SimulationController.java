@@ -2,7 +2,11 @@ package com.producesconsumer.backend.controller;
 
 import com.producesconsumer.backend.dto.*;
 import com.producesconsumer.backend.model.*;
+import com.producesconsumer.backend.service.CheckpointService;
+import com.producesconsumer.backend.service.EventBroadcaster;
 import com.producesconsumer.backend.service.EventService;
+import com.producesconsumer.backend.service.MetricsService;
+import com.producesconsumer.backend.service.ReplayService;
 import com.producesconsumer.backend.service.SimulationService;
 import com.producesconsumer.backend.service.SnapshotService;
 import lombok.RequiredArgsConstructor;
@@ -26,7 +30,11 @@ public class SimulationController {
 
     private final SimulationService simulationService;
     private final SnapshotService snapshotService;
+    private final CheckpointService checkpointService;
+    private final ReplayService replayService;
     private final EventService eventService;
+    private final EventBroadcaster eventBroadcaster;
+    private final MetricsService metricsService;
 
     // ==================== SSE Endpoint ====================
 
@@ -34,7 +42,9 @@ public class SimulationController {
     public SseEmitter streamEvents() {
         SseEmitter emitter = new SseEmitter(0L); // Infinite timeout
 
-        Disposable subscription = eventService.getEventStream()
+        // Full snapshot once, then STATE_DELTAs continuing from its seq
+        Disposable subscription = eventService.subscribe()
+                .startWith(new SSE("STATE_SNAPSHOT", eventBroadcaster.snapshot(simulationService.getState())))
                 .subscribe(
                         event -> {
                             try {
@@ -53,6 +63,11 @@ public class SimulationController {
         return emitter;
     }
 
+    @GetMapping("/events/stats")
+    public ApiResponse<EventStreamStats> getEventStreamStats() {
+        return ApiResponse.success(eventService.getStats());
+    }
+
     // ==================== State ====================
 
     @GetMapping("/state")
@@ -60,6 +75,19 @@ public class SimulationController {
         return ApiResponse.success(simulationService.getState());
     }
 
+    /// Full state plus the seq of the last delta it includes, for clients that
+    /// detected a gap in the STATE_DELTA sequence
+    @GetMapping("/state/sync")
+    public ApiResponse<StateSync> syncState() {
+        return ApiResponse.success(eventBroadcaster.snapshot(simulationService.getState()));
+    }
+
+    /// Validation findings of the routing graph as it stands now (recompiled on every edit)
+    @GetMapping("/topology")
+    public ApiResponse<TopologyReport> getTopology() {
+        return ApiResponse.success(simulationService.getTopology().getReport());
+    }
+
     // ==================== Queues ====================
 
     @PostMapping("/queues")
@@ -67,6 +95,59 @@ public class SimulationController {
         return ApiResponse.success(simulationService.addQueue(request.getX(), request.getY()));
     }
 
+    @PatchMapping("/queues/{id}/capacity")
+    public ApiResponse<Queue> setQueueCapacity(@PathVariable String id, @RequestBody CapacityRequest request) {
+        if (request.getCapacity() < 0) {
+            return ApiResponse.error("capacity must be 0 (unbounded) or positive");
+        }
+        try {
+            Queue queue = simulationService.setQueueCapacity(id, request.getCapacity(), request.getOverflowPolicy());
+            return queue != null ? ApiResponse.success(queue) : ApiResponse.error("Queue not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Unknown overflow policy: " + request.getOverflowPolicy());
+        }
+    }
+
+    @PatchMapping("/queues/{id}/role")
+    public ApiResponse<Queue> setQueueRole(@PathVariable String id, @RequestBody RoleRequest request) {
+        try {
+            Queue queue = simulationService.setQueueRole(id, request.getRole());
+            return queue != null ? ApiResponse.success(queue) : ApiResponse.error("Queue not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Unknown queue role: " + request.getRole());
+        }
+    }
+
+    @PatchMapping("/queues/{id}/arrivals")
+    public ApiResponse<Queue> setSourceArrivals(@PathVariable String id, @RequestBody DistributionRequest request) {
+        try {
+            Queue queue = simulationService.setSourceArrivals(id, request);
+            return queue != null ? ApiResponse.success(queue) : ApiResponse.error("Queue not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Invalid distribution: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/flow")
+    public ApiResponse<FlowStats> getFlowStats() {
+        return ApiResponse.success(simulationService.getFlowStats());
+    }
+
+    @GetMapping("/metrics")
+    public ApiResponse<MetricsReport> getMetrics() {
+        return ApiResponse.success(metricsService.getMetrics());
+    }
+
+    @GetMapping("/latency")
+    public ApiResponse<LatencyReport> getLatencyReport() {
+        return ApiResponse.success(simulationService.getLatencyReport());
+    }
+
+    @GetMapping("/queues/stats")
+    public ApiResponse<List<QueueStats>> getQueueStats() {
+        return ApiResponse.success(simulationService.getQueueStats());
+    }
+
     @DeleteMapping("/queues/{id}")
     public ApiResponse<Void> deleteQueue(@PathVariable String id) {
         simulationService.deleteQueue(id);
@@ -98,6 +179,56 @@ public class SimulationController {
         return ApiResponse.success(null);
     }
 
+    @PatchMapping("/machines/{id}/routing")
+    public ApiResponse<Machine> setMachineRouting(@PathVariable String id, @RequestBody RoutingRequest request) {
+        try {
+            Machine machine = simulationService.setMachineRouting(id, request.getStrategy());
+            return machine != null ? ApiResponse.success(machine) : ApiResponse.error("Machine not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Unknown routing strategy: " + request.getStrategy());
+        }
+    }
+
+    @PatchMapping("/machines/{id}/input-policy")
+    public ApiResponse<Machine> setMachineInputPolicy(@PathVariable String id,
+            @RequestBody InputPolicyRequest request) {
+        try {
+            Machine machine = simulationService.setMachineInputPolicy(id, request.getPolicy());
+            return machine != null ? ApiResponse.success(machine) : ApiResponse.error("Machine not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Unknown input policy: " + request.getPolicy());
+        }
+    }
+
+    @PatchMapping("/machines/{id}/batch")
+    public ApiResponse<Machine> setMachineBatch(@PathVariable String id, @RequestBody BatchRequest request) {
+        if (request.getBatchSize() < 1 || request.getBatchTimeoutMs() < 0) {
+            return ApiResponse.error("batchSize must be at least 1 and batchTimeoutMs not negative");
+        }
+        Machine machine = simulationService.setMachineBatch(id, request.getBatchSize(), request.getBatchTimeoutMs());
+        return machine != null ? ApiResponse.success(machine) : ApiResponse.error("Machine not found: " + id);
+    }
+
+    @PatchMapping("/machines/{id}/servers")
+    public ApiResponse<Machine> setMachineServers(@PathVariable String id, @RequestBody ServersRequest request) {
+        if (request.getServers() < 1) {
+            return ApiResponse.error("servers must be at least 1");
+        }
+        Machine machine = simulationService.setMachineServers(id, request.getServers());
+        return machine != null ? ApiResponse.success(machine) : ApiResponse.error("Machine not found: " + id);
+    }
+
+    @PatchMapping("/machines/{id}/processing-time")
+    public ApiResponse<Machine> setMachineProcessingTime(@PathVariable String id,
+            @RequestBody DistributionRequest request) {
+        try {
+            Machine machine = simulationService.setMachineProcessingTime(id, request);
+            return machine != null ? ApiResponse.success(machine) : ApiResponse.error("Machine not found: " + id);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Invalid distribution: " + e.getMessage());
+        }
+    }
+
     // ==================== Connections ====================
 
     @PostMapping("/connections")
@@ -107,6 +238,15 @@ public class SimulationController {
                 request.getTargetId(), request.getTargetType()));
     }
 
+    @PatchMapping("/connections/{id}/weight")
+    public ApiResponse<Connection> setConnectionWeight(@PathVariable String id, @RequestBody WeightRequest request) {
+        if (request.getWeight() < 1) {
+            return ApiResponse.error("weight must be at least 1");
+        }
+        Connection connection = simulationService.setConnectionWeight(id, request.getWeight());
+        return connection != null ? ApiResponse.success(connection) : ApiResponse.error("Connection not found: " + id);
+    }
+
     @DeleteMapping("/connections/{id}")
     public ApiResponse<Void> deleteConnection(@PathVariable String id) {
         simulationService.deleteConnection(id);
@@ -115,6 +255,20 @@ public class SimulationController {
 
     // ==================== Simulation Control ====================
 
+    @PatchMapping("/arrivals")
+    public ApiResponse<TimeDistribution> setArrivalDistribution(@RequestBody DistributionRequest request) {
+        try {
+            return ApiResponse.success(simulationService.setArrivalDistribution(request));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Invalid distribution: " + e.getMessage());
+        }
+    }
+
+    @PatchMapping("/seed")
+    public ApiResponse<Long> setRandomSeed(@RequestBody SeedRequest request) {
+        return ApiResponse.success(simulationService.setRandomSeed(request.getSeed()));
+    }
+
     @PostMapping("/start")
     public ApiResponse<Void> startSimulation() {
         simulationService.startSimulation();
@@ -139,6 +293,14 @@ public class SimulationController {
         return ApiResponse.success(null);
     }
 
+    @PostMapping("/fast-forward")
+    public ApiResponse<FastForwardResult> fastForward(@RequestBody FastForwardRequest request) {
+        if (request.getDurationMs() <= 0) {
+            return ApiResponse.error("durationMs must be positive");
+        }
+        return ApiResponse.success(simulationService.fastForward(request.getDurationMs()));
+    }
+
     // ==================== Snapshots ====================
 
     @GetMapping("/snapshots")
@@ -147,9 +309,14 @@ public class SimulationController {
     }
 
     @PostMapping("/snapshots")
-    public ApiResponse<SimulationSnapshot> createSnapshot(@RequestBody(required = false) SnapshotRequest request) {
+    public ApiResponse<SnapshotInfo> createSnapshot(@RequestBody(required = false) SnapshotRequest request) {
         String label = request != null ? request.getLabel() : null;
-        return ApiResponse.success(snapshotService.saveSnapshot(label));
+        String format = request != null ? request.getFormat() : null;
+        try {
+            return ApiResponse.success(snapshotService.saveSnapshot(label, format));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error("Unknown snapshot format: " + format);
+        }
     }
 
     // @PostMapping("/snapshots/{id}/replay")
@@ -163,11 +330,75 @@ public class SimulationController {
         simulationService.backupLiveState(); // save current session before replaying
         simulationService.stopSimulation(); // kill all threads before replaying
         snapshotService.loadSnapshot(label);
+        simulationService.recompileTopology(); // routes of the loaded graph
         simulationService.broadcastState(); // send new state to all SSE clients
         SimulationState state = simulationService.getState();
         return ApiResponse.success(state);
     }
 
+    // ==================== Checkpoints ====================
+
+    @GetMapping("/checkpoints")
+    public ApiResponse<List<CheckpointInfo>> getCheckpoints() {
+        return ApiResponse.success(checkpointService.getCheckpoints());
+    }
+
+    @PostMapping("/checkpoints")
+    public ApiResponse<CheckpointInfo> createCheckpoint() {
+        CheckpointInfo info = checkpointService.checkpoint();
+        return info != null ? ApiResponse.success(info) : ApiResponse.error("Nothing changed since the last checkpoint");
+    }
+
+    /// the given checkpoint, or the latest without one - e.g. after a crash
+    @PostMapping("/checkpoints/restore")
+    public ApiResponse<SimulationState> restoreCheckpoint(@RequestParam(required = false) Long sequence) {
+        simulationService.stopSimulation(); // kill all threads before restoring
+        try {
+            checkpointService.restore(sequence);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+        simulationService.recompileTopology(); // routes of the loaded graph
+        simulationService.broadcastState();
+        return ApiResponse.success(simulationService.getState());
+    }
+
+    // ==================== Time Travel ====================
+
+    @GetMapping("/replay")
+    public ApiResponse<ReplayStatus> getReplayStatus() {
+        return ApiResponse.success(replayService.getStatus());
+    }
+
+    /// time in epoch ms, anywhere from the oldest checkpoint on
+    @PostMapping("/replay/seek")
+    public ApiResponse<ReplayStatus> seekReplay(@RequestParam long time) {
+        try {
+            return ApiResponse.success(replayService.seek(time));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @PostMapping("/replay/play")
+    public ApiResponse<ReplayStatus> playReplay(@RequestParam(defaultValue = "1.0") double speed) {
+        try {
+            return ApiResponse.success(replayService.play(speed));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @PostMapping("/replay/pause")
+    public ApiResponse<ReplayStatus> pauseReplay() {
+        return ApiResponse.success(replayService.pause());
+    }
+
+    @PostMapping("/replay/stop")
+    public ApiResponse<SimulationState> stopReplay() {
+        return ApiResponse.success(replayService.stop());
+    }
+
     @PostMapping("/restore-live")
     public ApiResponse<SimulationState> restoreLiveState() {
         SimulationState state = simulationService.restoreLiveState();
@@ -0,0 +1,13 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for batch processing: batchSize products per cycle (1 = one at
+ * a time), batchTimeoutMs to wait for a full batch (0 = start with what's there)
+ */
+@Data
+public class BatchRequest {
+    private int batchSize;
+    private int batchTimeoutMs;
+}
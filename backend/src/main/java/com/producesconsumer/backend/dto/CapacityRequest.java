@@ -0,0 +1,13 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for bounding a queue: capacity 0 = unbounded,
+ * overflowPolicy "block" | "drop" | "reroute" (null keeps the current one)
+ */
+@Data
+public class CapacityRequest {
+    private int capacity;
+    private String overflowPolicy;
+}
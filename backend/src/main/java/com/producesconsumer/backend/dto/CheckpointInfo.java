@@ -0,0 +1,39 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.Checkpoint;
+import lombok.Data;
+
+/**
+ * One checkpoint of the current chain: what it holds and its size on disk
+ */
+@Data
+public class CheckpointInfo {
+    private long sequence;
+    private long base;
+    private boolean full;
+    private String timestamp;
+    private long capturedAt;
+    private long logPosition;
+    private int queues; // queues stored, all for a full checkpoint, changed ones for a delta
+    private int machines;
+    private int connections;
+    private int removed; // entities removed since the previous checkpoint
+    private long bytes;
+
+    public static CheckpointInfo of(Checkpoint checkpoint, long bytes) {
+        CheckpointInfo info = new CheckpointInfo();
+        info.setSequence(checkpoint.getSequence());
+        info.setBase(checkpoint.getBase());
+        info.setFull(checkpoint.isFull());
+        info.setTimestamp(checkpoint.getTimestamp());
+        info.setCapturedAt(checkpoint.getCapturedAt());
+        info.setLogPosition(checkpoint.getLogPosition());
+        info.setQueues(checkpoint.getState().getQueues().size());
+        info.setMachines(checkpoint.getState().getMachines().size());
+        info.setConnections(checkpoint.getState().getConnections().size());
+        info.setRemoved(checkpoint.getRemovedQueueIds().size() + checkpoint.getRemovedMachineIds().size()
+                + checkpoint.getRemovedConnectionIds().size());
+        info.setBytes(bytes);
+        return info;
+    }
+}
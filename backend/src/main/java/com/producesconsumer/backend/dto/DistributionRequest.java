@@ -0,0 +1,23 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Request DTO for a duration distribution: type "fixed" | "uniform" |
+ * "exponential" | "normal" | "log-normal" | "erlang" | "empirical", with the
+ * parameters that type uses (all in ms). Empirical samples come inline or
+ * from samplesFile, a file under simulation.samples.dir
+ */
+@Data
+public class DistributionRequest {
+    private String type;
+    private double mean;
+    private double stdDev;
+    private double min;
+    private double max;
+    private int shape;
+    private List<Double> samples;
+    private String samplesFile;
+}
@@ -0,0 +1,15 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * SSE fan-out health: connected clients and events lost to slow ones
+ */
+@Data
+public class EventStreamStats {
+    private int subscribers;
+    private long droppedEvents;
+    private long disconnectedSubscribers;
+    private String overflowPolicy;
+    private int bufferSize;
+}
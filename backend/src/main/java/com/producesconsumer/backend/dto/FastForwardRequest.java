@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for running the discrete-event engine ahead in virtual time
+ */
+@Data
+public class FastForwardRequest {
+    private long durationMs;
+}
@@ -0,0 +1,15 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Result of a fast-forward run: how much virtual time passed and what it cost
+ */
+@Data
+public class FastForwardResult {
+    private long simulatedMs;
+    private long wallMs;
+    private long eventsProcessed;
+    private int productsGenerated;
+    private long productsCompleted; // reached a sink
+}
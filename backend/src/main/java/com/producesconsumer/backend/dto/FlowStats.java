@@ -0,0 +1,15 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Where products enter and leave the line: per-source arrivals and
+ * per-sink completions
+ */
+@Data
+public class FlowStats {
+    private List<SourceStats> sources;
+    private List<SinkStats> sinks;
+}
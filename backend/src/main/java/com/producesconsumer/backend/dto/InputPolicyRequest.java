@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for choosing how a machine picks among its input queues
+ */
+@Data
+public class InputPolicyRequest {
+    private String policy;
+}
@@ -0,0 +1,53 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.LatencyHistogram;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueRole;
+import com.producesconsumer.backend.model.SimulationState;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Latency percentiles across the line: wait per queue, service time per
+ * machine, system time per sink and end to end (all sinks together)
+ */
+@Data
+public class LatencyReport {
+    private LatencySummary endToEnd;
+    private List<LatencySummary> queues;
+    private List<LatencySummary> machines;
+    private List<LatencySummary> sinks;
+
+    public static LatencyReport of(SimulationState state) {
+        List<LatencySummary> queues = new ArrayList<>();
+        List<LatencySummary> sinks = new ArrayList<>();
+        LatencyHistogram endToEnd = new LatencyHistogram();
+        for (Queue queue : state.getQueues()) {
+            if (QueueRole.of(queue) == QueueRole.SINK) {
+                LatencyHistogram systemTimes = queue.getSystemTimeStats().getHistogram();
+                sinks.add(LatencySummary.of(queue.getId(), systemTimes));
+                endToEnd.add(systemTimes);
+            } else {
+                queues.add(LatencySummary.of(queue.getId(), queue.getWaitStats().getHistogram()));
+            }
+        }
+        List<LatencySummary> machines = new ArrayList<>();
+        for (Machine machine : state.getMachines()) {
+            machines.add(LatencySummary.of(machine.getId(), machine.getServiceTimeStats().getHistogram()));
+        }
+        queues.sort(Comparator.comparing(LatencySummary::getId));
+        machines.sort(Comparator.comparing(LatencySummary::getId));
+        sinks.sort(Comparator.comparing(LatencySummary::getId));
+
+        LatencyReport report = new LatencyReport();
+        report.setEndToEnd(LatencySummary.of(null, endToEnd));
+        report.setQueues(queues);
+        report.setMachines(machines);
+        report.setSinks(sinks);
+        return report;
+    }
+}
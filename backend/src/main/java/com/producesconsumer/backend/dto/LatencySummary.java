@@ -0,0 +1,31 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.LatencyHistogram;
+import lombok.Data;
+
+/**
+ * Percentiles of one latency histogram; id is the queue, machine or sink
+ * it belongs to (null for the end-to-end total)
+ */
+@Data
+public class LatencySummary {
+    private String id;
+    private long count;
+    private double meanMs;
+    private double p50Ms;
+    private double p95Ms;
+    private double p99Ms;
+    private double maxMs;
+
+    public static LatencySummary of(String id, LatencyHistogram histogram) {
+        LatencySummary summary = new LatencySummary();
+        summary.setId(id);
+        summary.setCount(histogram.getCount());
+        summary.setMeanMs(summary.getCount() == 0 ? 0 : histogram.getTotalNanos() / 1e6 / summary.getCount());
+        summary.setP50Ms(histogram.getValueAtPercentile(50) / 1e6);
+        summary.setP95Ms(histogram.getValueAtPercentile(95) / 1e6);
+        summary.setP99Ms(histogram.getValueAtPercentile(99) / 1e6);
+        summary.setMaxMs(histogram.getMaxNanos() / 1e6);
+        return summary;
+    }
+}
@@ -0,0 +1,24 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Products and server time of one machine since the last reset, and rates
+ * and utilization per window; times are server-ms, so a machine with 3
+ * servers accrues 3 ms per ms
+ */
+@Data
+public class MachineMetrics {
+    private String machineId;
+    private int servers;
+    private int busyServers;
+    private long started;
+    private long finished;
+    private double processingMs;
+    private double blockedMs;
+    private double idleMs;
+    private double utilization;
+    private List<WindowRates> windows;
+}
@@ -0,0 +1,19 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Live throughput and utilization of the line; the bottleneck is the
+ * machine with the highest utilization over the shortest window (null
+ * while nothing has run)
+ */
+@Data
+public class MetricsReport {
+    private boolean running;
+    private List<Integer> windowSeconds;
+    private String bottleneckMachineId;
+    private List<QueueMetrics> queues;
+    private List<MachineMetrics> machines;
+}
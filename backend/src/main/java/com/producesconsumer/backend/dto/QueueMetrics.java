@@ -0,0 +1,18 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Arrivals and departures of one queue, totals and per window
+ */
+@Data
+public class QueueMetrics {
+    private String queueId;
+    private String role;
+    private int depth;
+    private long arrivals;
+    private long departures;
+    private List<WindowRates> windows;
+}
@@ -0,0 +1,37 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.WaitTimeStats;
+import lombok.Data;
+
+/**
+ * Per-queue wait times: served = products taken so far, mean/max over those,
+ * headWaitMs = how long the product at the head has been waiting now,
+ * dropped = products discarded because the queue was full
+ */
+@Data
+public class QueueStats {
+    private String queueId;
+    private int depth;
+    private int capacity;
+    private long dropped;
+    private long served;
+    private double meanWaitMs;
+    private double maxWaitMs;
+    private double headWaitMs;
+
+    public static QueueStats of(Queue queue, long now) {
+        WaitTimeStats waits = queue.getWaitStats();
+        QueueStats stats = new QueueStats();
+        stats.setQueueId(queue.getId());
+        stats.setDepth(queue.getProductCount());
+        stats.setCapacity(queue.getCapacity());
+        stats.setDropped(queue.getDroppedCount());
+        stats.setServed(waits.getServed());
+        stats.setMeanWaitMs(waits.getMeanWaitMs());
+        stats.setMaxWaitMs(waits.getMaxWaitMs());
+        long headAt = queue.getHeadEnqueuedAt();
+        stats.setHeadWaitMs(headAt == Long.MAX_VALUE || headAt == 0 ? 0 : Math.max(0, now - headAt) / 1e6);
+        return stats;
+    }
+}
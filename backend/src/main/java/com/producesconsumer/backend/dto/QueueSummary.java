@@ -0,0 +1,34 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueRole;
+import lombok.Data;
+
+/**
+ * Queue as sent in state deltas - position, depth, bounds and role, without
+ * the products; completedCount counts products that left at a sink
+ */
+@Data
+public class QueueSummary {
+    private String id;
+    private double x;
+    private double y;
+    private int productCount;
+    private int capacity;
+    private String overflowPolicy;
+    private String role;
+    private long completedCount;
+
+    public static QueueSummary of(Queue queue) {
+        QueueSummary summary = new QueueSummary();
+        summary.setId(queue.getId());
+        summary.setX(queue.getX());
+        summary.setY(queue.getY());
+        summary.setProductCount(queue.getProductCount());
+        summary.setCapacity(queue.getCapacity());
+        summary.setOverflowPolicy(queue.getOverflowPolicy());
+        summary.setRole(QueueRole.of(queue).displayName());
+        summary.setCompletedCount(queue.getCompletedCount());
+        return summary;
+    }
+}
@@ -0,0 +1,30 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Where a time-travel replay stands and the span it can seek within
+ */
+@Data
+public class ReplayStatus {
+    private boolean active; // a replay has been sought to and not stopped
+    private boolean playing;
+    private long time; // epoch ms the replayed state is at, -1 while not active
+    private double speed; // replayed ms per wall ms
+    private long position; // event log position replay continues from
+    private long from; // oldest checkpoint the kept log replays from, -1 without one
+    private long to; // latest logged time
+
+    public static ReplayStatus of(boolean active, boolean playing, long time, double speed, long position,
+            long from, long to) {
+        ReplayStatus status = new ReplayStatus();
+        status.setActive(active);
+        status.setPlaying(playing);
+        status.setTime(time);
+        status.setSpeed(speed);
+        status.setPosition(position);
+        status.setFrom(from);
+        status.setTo(to);
+        return status;
+    }
+}
@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for a queue's role: "buffer" | "source" | "sink"
+ */
+@Data
+public class RoleRequest {
+    private String role;
+}
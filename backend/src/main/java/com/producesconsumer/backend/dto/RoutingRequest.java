@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for choosing a machine's output routing strategy
+ */
+@Data
+public class RoutingRequest {
+    private String strategy;
+}
@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for the random seed of the next run (null = unseeded)
+ */
+@Data
+public class SeedRequest {
+    private Long seed;
+}
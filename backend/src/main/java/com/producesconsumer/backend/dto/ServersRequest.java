@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for the number of products a machine processes in parallel
+ */
+@Data
+public class ServersRequest {
+    private int servers;
+}
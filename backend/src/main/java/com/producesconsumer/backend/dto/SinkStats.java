@@ -0,0 +1,33 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.WaitTimeStats;
+import lombok.Data;
+
+/**
+ * Completions at one sink: system time is from creation at a source to
+ * arrival here; throughput is measured between the first and the last
+ * completion, so it is in simulated time for a fast-forward
+ */
+@Data
+public class SinkStats {
+    private String queueId;
+    private long completed;
+    private double meanSystemTimeMs;
+    private double maxSystemTimeMs;
+    private double throughputPerMinute;
+
+    public static SinkStats of(Queue sink) {
+        WaitTimeStats systemTimes = sink.getSystemTimeStats();
+        SinkStats stats = new SinkStats();
+        stats.setQueueId(sink.getId());
+        stats.setCompleted(sink.getCompletedCount());
+        stats.setMeanSystemTimeMs(systemTimes.getMeanWaitMs());
+        stats.setMaxSystemTimeMs(systemTimes.getMaxWaitMs());
+        long span = sink.getLastCompletedAt() - sink.getFirstCompletedAt();
+        if (stats.getCompleted() > 1 && span > 0) {
+            stats.setThroughputPerMinute((stats.getCompleted() - 1) * 60e9 / span);
+        }
+        return stats;
+    }
+}
@@ -7,5 +7,8 @@ public class SnapshotInfo {
     String id;
     String label;
     String timestamp;
+    String format; // "binary" or "json", null = an older file found on disk
+    String status; // "saving", "saved" or "failed" for snapshots taken since startup
+    long bytes; // file size once saved
     //and any other data useful for the frontend snapshot picker
 }
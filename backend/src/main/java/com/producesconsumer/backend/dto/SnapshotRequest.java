@@ -8,4 +8,5 @@ import lombok.Data;
 @Data
 public class SnapshotRequest {
     private String label;
+    private String format; // "binary" or "json", null = simulation.snapshot.format
 }
@@ -0,0 +1,33 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.TimeDistribution;
+import com.producesconsumer.backend.strategy.TimeDistributionType;
+import lombok.Data;
+
+/**
+ * Arrivals at one source: generated so far, dropped because the source was
+ * full, and the arrival process in effect
+ */
+@Data
+public class SourceStats {
+    private String queueId;
+    private long generated;
+    private long dropped;
+    private int depth;
+    private String arrivalType;
+    private double meanInterarrivalMs;
+
+    /// arrivals = the distribution in effect for this source
+    public static SourceStats of(Queue source, TimeDistribution arrivals) {
+        TimeDistributionType type = TimeDistributionType.fromName(arrivals.getType());
+        SourceStats stats = new SourceStats();
+        stats.setQueueId(source.getId());
+        stats.setGenerated(source.getGeneratedCount());
+        stats.setDropped(source.getDroppedCount());
+        stats.setDepth(source.getProductCount());
+        stats.setArrivalType(type.displayName());
+        stats.setMeanInterarrivalMs(type.meanOf(arrivals));
+        return stats;
+    }
+}
@@ -0,0 +1,39 @@
+package com.producesconsumer.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes since the previous delta - seq increases by exactly one per delta,
+ * so a client that sees a gap must resync from /state/sync
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class StateDelta {
+    private long seq;
+    private List<QueueSummary> queues = new ArrayList<>(); // added or changed
+    private List<String> removedQueueIds = new ArrayList<>();
+    private List<Machine> machines = new ArrayList<>(); // added or changed
+    private List<String> removedMachineIds = new ArrayList<>();
+    private List<Connection> connections = new ArrayList<>(); // added
+    private List<String> removedConnectionIds = new ArrayList<>();
+    @JsonProperty("isRunning")
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    private boolean running;
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    private int totalProductsGenerated;
+
+    @JsonIgnore
+    public boolean hasEntityChanges() {
+        return !(queues.isEmpty() && removedQueueIds.isEmpty()
+                && machines.isEmpty() && removedMachineIds.isEmpty()
+                && connections.isEmpty() && removedConnectionIds.isEmpty());
+    }
+}
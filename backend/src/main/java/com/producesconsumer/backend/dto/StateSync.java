@@ -0,0 +1,13 @@
+package com.producesconsumer.backend.dto;
+
+import com.producesconsumer.backend.model.SimulationState;
+import lombok.Data;
+
+/**
+ * Full state tagged with the sequence number of the last delta it includes
+ */
+@Data
+public class StateSync {
+    private long seq;
+    private SimulationState state;
+}
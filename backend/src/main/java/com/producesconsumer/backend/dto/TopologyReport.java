@@ -0,0 +1,22 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Validation findings of the compiled routing topology, plus the queues
+ * products enter and leave the line at. None of the findings stops a run,
+ * they point at parts of the line that will never see a product or where
+ * products can circulate
+ */
+@Data
+public class TopologyReport {
+    private long version;
+    private List<String> sources;
+    private List<String> sinks;
+    private List<String> machinesWithoutInputs;
+    private List<String> machinesWithoutOutputs;
+    private List<List<String>> cycles;
+    private List<String> unreachableQueues;
+}
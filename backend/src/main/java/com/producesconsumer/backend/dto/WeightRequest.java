@@ -0,0 +1,11 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Request DTO for setting a connection's weighted-routing share
+ */
+@Data
+public class WeightRequest {
+    private int weight;
+}
@@ -0,0 +1,19 @@
+package com.producesconsumer.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Rates over one sliding window, measured across spanMs (shorter than the
+ * window until the run is that old). For a queue in/out are arrivals and
+ * departures; for a machine products started and finished, plus the share
+ * of its server time spent processing (utilization) and blocked
+ */
+@Data
+public class WindowRates {
+    private int seconds;
+    private long spanMs;
+    private double inPerMinute;
+    private double outPerMinute;
+    private double utilization;
+    private double blockedShare;
+}
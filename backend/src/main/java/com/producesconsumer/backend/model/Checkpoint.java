@@ -0,0 +1,66 @@
+package com.producesconsumer.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One link of a checkpoint chain. A full checkpoint holds every entity; a
+ * delta holds only the entities added or changed since the checkpoint
+ * before it, plus the ids of those removed since. Any checkpoint is its
+ * chain's base with every delta up to it applied in order. The simulation
+ * scalars (running, generated count, seed, arrivals) are always complete
+ */
+@Data
+public class Checkpoint {
+    private long sequence;
+    private long base; // sequence of the full checkpoint the chain starts at (itself if full)
+    private boolean full;
+    private String timestamp;
+    private long capturedAt; // epoch ms of the cut
+    private long logPosition; // event log position at the cut, replay continues from here
+    private List<String> removedQueueIds = new ArrayList<>();
+    private List<String> removedMachineIds = new ArrayList<>();
+    private List<String> removedConnectionIds = new ArrayList<>();
+
+    // the entities, stored through SnapshotCodec rather than the header
+    @JsonIgnore
+    private SimulationState state;
+
+    public Checkpoint() {
+        this.timestamp = Instant.now().toString();
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !full && state.getQueues().isEmpty() && state.getMachines().isEmpty()
+                && state.getConnections().isEmpty() && removedQueueIds.isEmpty()
+                && removedMachineIds.isEmpty() && removedConnectionIds.isEmpty();
+    }
+
+    /// bring the target to this checkpoint: a full one replaces everything, a
+    /// delta removes, then adds or replaces. The target shares the entity
+    /// objects with this checkpoint, so deep copy before letting anything move them
+    public void applyTo(SimulationState target) {
+        if (full) {
+            target.clear();
+        }
+        removedConnectionIds.forEach(target::removeConnection);
+        removedMachineIds.forEach(target::removeMachine);
+        removedQueueIds.forEach(target::removeQueue);
+        state.getQueues().forEach(target::addQueue);
+        state.getMachines().forEach(target::addMachine);
+        for (Connection connection : state.getConnections()) {
+            target.removeConnection(connection.getId()); // re-indexed if its ends changed
+            target.addConnection(connection);
+        }
+        target.setSimulationId(state.getSimulationId());
+        target.setRunning(state.isRunning());
+        target.setTotalProductsGenerated(state.getTotalProductsGenerated());
+        target.setArrivalDistribution(state.getArrivalDistribution());
+        target.setRandomSeed(state.getRandomSeed());
+    }
+}
@@ -0,0 +1,146 @@
+package com.producesconsumer.backend.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers what the previous checkpoint saw, so the next one only copies
+ * what changed since. A queue's products only change through its arrival
+ * and departure counters, so a queue whose counters, depth and settings
+ * are unchanged (and that is still the same object) is skipped without
+ * looking at its products. Machines and connections are small and are
+ * compared by value. Not thread-safe: one checkpointer drives it
+ */
+public class CheckpointTracker {
+
+    private record QueueMark(Queue queue, long arrivals, long departures, int depth) {
+        static QueueMark of(Queue queue) {
+            return new QueueMark(queue, queue.getArrivalCount(), queue.getDepartureCount(), queue.getProductCount());
+        }
+
+        boolean sameAs(QueueMark other) {
+            return other != null && queue == other.queue && arrivals == other.arrivals
+                    && departures == other.departures && depth == other.depth;
+        }
+    }
+
+    private final Map<String, QueueMark> queueMarks = new HashMap<>();
+    private final Map<String, Queue> queueSettings = new HashMap<>();
+    private final Map<String, Machine> machines = new HashMap<>();
+    private final Map<String, Connection> connections = new HashMap<>();
+    private String simulationId;
+    private boolean started;
+
+    /// the next capture is a full checkpoint, e.g. after a write failed and
+    /// the chain no longer matches what was seen
+    public void reset() {
+        queueMarks.clear();
+        queueSettings.clear();
+        machines.clear();
+        connections.clear();
+        simulationId = null;
+        started = false;
+    }
+
+    /// full on the first capture, after a reset or for a new simulation,
+    /// otherwise only what changed. The state is read at one cut (null =
+    /// nothing moves concurrently), together with the event log position
+    /// there; product copies are made after it
+    public Checkpoint capture(SimulationState live, CutBarrier cut, boolean forceFull, LongSupplier logPosition) {
+        Checkpoint checkpoint = new Checkpoint();
+        SimulationState entities = new SimulationState();
+        Map<String, QueueMark> marks = new HashMap<>();
+        Map<Queue, Product[]> queued = new LinkedHashMap<>();
+        List<Machine> machineCopies = new ArrayList<>();
+        List<Connection> connectionCopies = new ArrayList<>();
+        boolean full = forceFull || !started || !Objects.equals(simulationId, live.getSimulationId());
+
+        Runnable read = () -> {
+            for (Queue queue : live.getQueues()) {
+                QueueMark mark = QueueMark.of(queue);
+                marks.put(queue.getId(), mark);
+                Queue settings = SimulationState.copyQueueFields(queue);
+                if (full || !mark.sameAs(queueMarks.get(queue.getId()))
+                        || !sameSettings(settings, queueSettings.get(queue.getId()))) {
+                    queued.put(settings, queue.getProducts().toArray(new Product[0]));
+                }
+            }
+            live.getMachines().forEach(machine -> machineCopies.add(SimulationState.deepCopyMachine(machine)));
+            live.getConnections().forEach(connection ->
+                    connectionCopies.add(SimulationState.deepCopyConnection(connection)));
+            entities.setSimulationId(live.getSimulationId());
+            entities.setRunning(live.isRunning());
+            entities.setTotalProductsGenerated(live.getTotalProductsGenerated());
+            checkpoint.setCapturedAt(System.currentTimeMillis());
+            checkpoint.setLogPosition(logPosition.getAsLong());
+        };
+        if (cut == null) {
+            read.run();
+        } else {
+            cut.cut(read);
+        }
+
+        // Deep copy the products of changed queues outside the pause
+        queued.forEach((copy, products) -> {
+            for (Product product : products) {
+                copy.getProducts().add(SimulationState.deepCopyProduct(product));
+            }
+            copy.setProductCount(products.length);
+            queueSettings.put(copy.getId(), SimulationState.copyQueueFields(copy));
+        });
+        entities.setQueues(queued.keySet());
+        for (Machine machine : machineCopies) {
+            if (full || !machine.equals(machines.get(machine.getId()))) {
+                entities.addMachine(machine);
+            }
+        }
+        for (Connection connection : connectionCopies) {
+            if (full || !connection.equals(connections.get(connection.getId()))) {
+                entities.addConnection(connection);
+            }
+        }
+        entities.setArrivalDistribution(live.getArrivalDistribution() == null
+                ? null : live.getArrivalDistribution().copy());
+        entities.setRandomSeed(live.getRandomSeed());
+
+        if (!full) {
+            queueMarks.keySet().stream().filter(id -> !marks.containsKey(id))
+                    .forEach(checkpoint.getRemovedQueueIds()::add);
+            Set<String> machineIds = machineCopies.stream().map(Machine::getId).collect(Collectors.toSet());
+            machines.keySet().stream().filter(id -> !machineIds.contains(id))
+                    .forEach(checkpoint.getRemovedMachineIds()::add);
+            Set<String> connectionIds = connectionCopies.stream().map(Connection::getId).collect(Collectors.toSet());
+            connections.keySet().stream().filter(id -> !connectionIds.contains(id))
+                    .forEach(checkpoint.getRemovedConnectionIds()::add);
+        }
+
+        // what this checkpoint saw is what the next one is compared against
+        queueMarks.clear();
+        queueMarks.putAll(marks);
+        queueSettings.keySet().retainAll(marks.keySet());
+        machines.clear();
+        machineCopies.forEach(machine -> machines.put(machine.getId(), machine));
+        connections.clear();
+        connectionCopies.forEach(connection -> connections.put(connection.getId(), connection));
+        simulationId = live.getSimulationId();
+        started = true;
+
+        checkpoint.setFull(full);
+        checkpoint.setState(entities);
+        return checkpoint;
+    }
+
+    private static boolean sameSettings(Queue a, Queue b) {
+        return b != null && a.getX() == b.getX() && a.getY() == b.getY() && a.getCapacity() == b.getCapacity()
+                && Objects.equals(a.getOverflowPolicy(), b.getOverflowPolicy())
+                && Objects.equals(a.getRole(), b.getRole())
+                && Objects.equals(a.getArrivalDistribution(), b.getArrivalDistribution());
+    }
+}
@@ -12,4 +12,5 @@ public class Connection {
     private String sourceType; // "queue" or "machine"
     private String targetId;
     private String targetType; // "queue" or "machine"
+    private int weight = 1; // share under weighted routing (machine -> queue) or weighted-fair input (queue -> machine)
 }
@@ -0,0 +1,87 @@
+package com.producesconsumer.backend.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Quiesce barrier for consistent snapshots. Every product move (queue to
+ * machine, machine to queue, source to queue) runs between enter() and
+ * exit(); cut() holds off new moves, waits for the ones in flight and then
+ * runs the capture, so the capture sees each product in exactly one place.
+ * Moves never block each other: entering is one atomic add on a per-thread
+ * stripe, and only waits while a cut is in progress. A move must not wait
+ * for anything while inside, nor enter while holding a lock another move
+ * needs, or a cut would never drain
+ */
+public final class CutBarrier {
+    private static final int STRIPES = 64;
+    private static final int PAD = 16; // longs per stripe, 128 bytes so no two share a cache line
+
+    // moves in flight, per stripe; a thread always hits the same stripe, so
+    // each stripe stays >= 0 and the sum is 0 only when nothing is in flight
+    private final AtomicLongArray inFlight = new AtomicLongArray(STRIPES * PAD);
+    private volatile boolean cutting;
+    private final ReentrantLock cuts = new ReentrantLock(); // one cut at a time
+    private final LatencyHistogram pauses = new LatencyHistogram();
+    private volatile long lastPauseNanos;
+
+    public void enter() {
+        int stripe = stripe();
+        inFlight.incrementAndGet(stripe);
+        while (cutting) {
+            // step back out so the cut can drain, and wait for it to finish
+            inFlight.decrementAndGet(stripe);
+            while (cutting) {
+                Thread.yield(); // lets a virtual thread hand its carrier to the ones draining
+            }
+            inFlight.incrementAndGet(stripe);
+        }
+    }
+
+    public void exit() {
+        inFlight.decrementAndGet(stripe());
+    }
+
+    /// run the capture with no move in flight; the pause moves see is timed
+    public void cut(Runnable capture) {
+        cuts.lock();
+        try {
+            long start = System.nanoTime();
+            cutting = true;
+            try {
+                while (inFlightCount() != 0) {
+                    Thread.onSpinWait();
+                }
+                capture.run();
+            } finally {
+                cutting = false;
+                lastPauseNanos = System.nanoTime() - start;
+                pauses.record(lastPauseNanos);
+            }
+        } finally {
+            cuts.unlock();
+        }
+    }
+
+    public long getLastPauseNanos() {
+        return lastPauseNanos;
+    }
+
+    /// every pause so far
+    public LatencyHistogram getPauses() {
+        return pauses;
+    }
+
+    private long inFlightCount() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += inFlight.get(i * PAD);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58) * PAD; // top 6 bits, STRIPES = 64
+    }
+}
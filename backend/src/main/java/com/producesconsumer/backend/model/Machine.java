@@ -1,6 +1,14 @@
 package com.producesconsumer.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Machine element in the simulation
@@ -10,10 +18,54 @@ public class Machine {
     private String id;
     private double x;
     private double y;
-    private String state; // "idle" or "processing"
-    private int productCount;
-    private int processingTime; // in milliseconds
+    private String state; // "idle", "processing" or "blocked", derived from the server counts
+    private int productCount; // products taken from an input and not yet handed on (in service, batching or blocked)
+    private int processingTime; // in milliseconds, the mean when a distribution is set
+    private TimeDistribution processingTimeDistribution; // null = always processingTime
     private String currentProductColor;
     private String inputQueueId;
     private String outputQueueId;
+    private String routingStrategy; // output selection, see RoutingStrategyType (null = random)
+    private String inputPolicy; // input selection, see InputPolicyType (null = fixed-order)
+    private int batchSize; // products taken and processed together per cycle (0 or 1 = one at a time)
+    private int batchTimeoutMs; // how long to wait for a full batch once one product is in (0 = start with what's there)
+    private int currentBatchSize; // products in the cycle being processed
+    private int servers; // products processed in parallel, one per server (0 or 1 = a single server)
+    private int busyServers; // servers currently holding a product
+    private long unroutedCount; // finished products discarded because the machine has no output (wire it to a sink)
+
+    // the products behind productCount, in the order they were taken; kept in
+    // step with it by the machine's ServerPool, so a snapshot carries them
+    @Setter(AccessLevel.NONE)
+    private final List<Product> heldProducts = new CopyOnWriteArrayList<>();
+
+    // service time per product, start to end of its cycle (time blocked on a
+    // full output excluded)
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final WaitTimeStats serviceTimeStats = new WaitTimeStats();
+
+    // processing / blocked / idle server time and products started and finished
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final UtilizationStats utilization = new UtilizationStats();
+
+    /// a server started on the product now
+    public void recordServiceStart(Product product, long now) {
+        product.setServiceStartedAt(now);
+        utilization.recordStarted();
+    }
+
+    /// the product's service ended now, record how long it took
+    public void recordServiceEnd(Product product, long now) {
+        product.setServiceEndedAt(now);
+        utilization.recordFinished();
+        if (product.getServiceStartedAt() != 0) {
+            serviceTimeStats.record(Math.max(0, now - product.getServiceStartedAt()));
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package com.producesconsumer.backend.model;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Entities by id that iterate in the order their ids were first added, so
+ * the canvas and snapshots list them the same way on every run. A hash map
+ * serves lookups; a skip list keyed by an insertion sequence serves
+ * iteration. Replacing an entity keeps its place. Reads never lock, writes
+ * (edits, loads) are serialized so the two maps move together
+ */
+final class OrderedIndex<T> {
+
+    private record Entry<T>(long order, T value) {
+    }
+
+    private final Map<String, Entry<T>> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, T> inOrder = new ConcurrentSkipListMap<>();
+    private long nextOrder; // guarded by this
+
+    T get(String id) {
+        Entry<T> entry = byId.get(id);
+        return entry == null ? null : entry.value();
+    }
+
+    /// weakly consistent view in insertion order
+    Collection<T> values() {
+        return inOrder.values();
+    }
+
+    synchronized T put(String id, T value) {
+        Entry<T> previous = byId.get(id);
+        long order = previous != null ? previous.order() : nextOrder++;
+        byId.put(id, new Entry<>(order, value));
+        inOrder.put(order, value);
+        return previous == null ? null : previous.value();
+    }
+
+    synchronized T remove(String id) {
+        Entry<T> removed = byId.remove(id);
+        if (removed == null) {
+            return null;
+        }
+        inOrder.remove(removed.order());
+        return removed.value();
+    }
+
+    synchronized void clear() {
+        byId.clear();
+        inOrder.clear();
+    }
+
+    /// same entities by id, the order they were added in aside
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OrderedIndex<?> other)) {
+            return false;
+        }
+        if (byId.size() != other.byId.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Entry<T>> entry : byId.entrySet()) {
+            Object theirs = other.get(entry.getKey());
+            if (theirs == null || !Objects.equals(entry.getValue().value(), theirs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (Map.Entry<String, Entry<T>> entry : byId.entrySet()) {
+            hash += entry.getKey().hashCode() ^ Objects.hashCode(entry.getValue().value());
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return inOrder.values().toString();
+    }
+}
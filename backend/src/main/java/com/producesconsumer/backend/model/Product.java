@@ -1,12 +1,36 @@
 package com.producesconsumer.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
- * Product with unique color - pure data model
+ * Product with unique color - pure data model. The lifecycle stamps are
+ * overwritten at every hop (queue, machine), so tracking them never allocates
  */
 @Data
 public class Product {
     private String id;
     private String color;
+    // System.nanoTime() (virtual time in fast-forward) when it entered its
+    // current queue, 0 = unknown (e.g. loaded from a snapshot file)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long enqueuedAt;
+    // when it entered the line at a source, same clock as enqueuedAt; a sink
+    // measures the system time against it (0 = unknown)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long createdAt;
+    // when it left its last queue, and started/finished its last machine
+    // service (0 = not yet)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long dequeuedAt;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long serviceStartedAt;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long serviceEndedAt;
 }
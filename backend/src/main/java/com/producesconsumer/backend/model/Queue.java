@@ -1,20 +1,319 @@
 package com.producesconsumer.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Queue element in the simulation - products are held in a per-queue
+ * lock-free FIFO (a deque, so untouched products can go back in front) so unrelated queues never contend with each other.
+ * A positive capacity bounds it; producers then go through offer() and
+ * apply the queue's overflow policy when it is full. A sink stores
+ * nothing: products offered to it are counted with their system time
+ */
 @Data
 public class Queue {
     private String id;
     private double x;
     private double y;
-    private int productCount;
-    private List<Product> products;
+    private ConcurrentLinkedDeque<Product> products;
+    private int capacity; // 0 = unbounded
+    private String overflowPolicy; // see QueueOverflow (null = block)
+    private String role; // see QueueRole (null = source if Q0, else buffer)
+    private TimeDistribution arrivalDistribution; // sources only, null = the simulation-wide default
+
+    // ConcurrentLinkedDeque.size() is O(n), so the depth is tracked separately
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicInteger depth = new AtomicInteger();
+
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final WaitTimeStats waitStats = new WaitTimeStats();
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder dropped = new LongAdder();
+
+    // products put into / taken out of this queue, for arrival and departure rates
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder arrived = new LongAdder();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder departed = new LongAdder();
+
+    // products generated into this queue (sources)
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder generated = new LongAdder();
+
+    // products that left the line here (sinks): system time from creation,
+    // plus first/last completion for the throughput
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LongAdder completed = new LongAdder();
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final WaitTimeStats systemTimeStats = new WaitTimeStats();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicLong firstCompletedAt = new AtomicLong();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicLong lastCompletedAt = new AtomicLong();
+    // role cached so the offer path doesn't parse it per product
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile boolean sink;
 
     public Queue() {
-        this.products = new CopyOnWriteArrayList<>();
-        this.productCount = 0;
+        this.products = new ConcurrentLinkedDeque<>();
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+        this.sink = QueueRole.fromName(role) == QueueRole.SINK;
+    }
+
+    public int getProductCount() {
+        return depth.get();
+    }
+
+    public void setProductCount(int productCount) {
+        depth.set(productCount);
+    }
+
+    /// append a product at the tail regardless of capacity, returns the new depth
+    public int enqueue(Product product) {
+        return enqueue(product, System.nanoTime());
+    }
+
+    /// append stamped with the given time (virtual time for the discrete engine)
+    public int enqueue(Product product, long now) {
+        if (sink) {
+            complete(product, now);
+            return depth.get();
+        }
+        // count it before a consumer can take it, as offer does, so the depth never dips below zero
+        int count = depth.incrementAndGet();
+        product.setEnqueuedAt(now);
+        products.offer(product);
+        arrived.increment();
+        return count;
+    }
+
+    /// append unless the queue is at capacity, returns false (and leaves the
+    /// product alone) if it is full
+    public boolean offer(Product product) {
+        return offer(product, System.nanoTime());
+    }
+
+    public boolean offer(Product product, long now) {
+        if (sink) {
+            complete(product, now); // a sink is never full
+            return true;
+        }
+        int limit = capacity;
+        if (limit > 0) {
+            // reserve a slot first so concurrent producers can't overshoot
+            int current;
+            do {
+                current = depth.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!depth.compareAndSet(current, current + 1));
+        } else {
+            depth.incrementAndGet();
+        }
+        product.setEnqueuedAt(now);
+        products.offer(product);
+        arrived.increment();
+        return true;
+    }
+
+    @JsonIgnore
+    public boolean isFull() {
+        if (sink) {
+            return false;
+        }
+        int limit = capacity;
+        return limit > 0 && depth.get() >= limit;
+    }
+
+    /// a product was discarded because this queue was full
+    public void recordDrop() {
+        dropped.increment();
+    }
+
+    @JsonIgnore
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /// products that entered / left this queue so far (a sink's arrivals are its completions)
+    @JsonIgnore
+    public long getArrivalCount() {
+        return arrived.sum();
+    }
+
+    @JsonIgnore
+    public long getDepartureCount() {
+        return departed.sum();
+    }
+
+    /// a product was generated into this source
+    public void recordGenerated() {
+        generated.increment();
+    }
+
+    @JsonIgnore
+    public long getGeneratedCount() {
+        return generated.sum();
+    }
+
+    /// products that left the line at this sink (sent with the queue so the canvas can show it)
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /// first and last completion at this sink, same clock as the stamps (0 = none yet)
+    @JsonIgnore
+    public long getFirstCompletedAt() {
+        return firstCompletedAt.get();
+    }
+
+    @JsonIgnore
+    public long getLastCompletedAt() {
+        return lastCompletedAt.get();
+    }
+
+    private void complete(Product product, long now) {
+        arrived.increment();
+        completed.increment();
+        if (product.getCreatedAt() != 0) {
+            systemTimeStats.record(Math.max(0, now - product.getCreatedAt()));
+        }
+        firstCompletedAt.compareAndSet(0, now);
+        lastCompletedAt.accumulateAndGet(now, Math::max);
+    }
+
+    /// take the product at the head (FIFO), or null if the queue is empty
+    public Product dequeue() {
+        return dequeue(System.nanoTime());
+    }
+
+    /// take the head and record how long it waited, measured against the given time
+    public Product dequeue(long now) {
+        Product product = products.poll();
+        if (product != null) {
+            depth.decrementAndGet();
+            departed.increment();
+            product.setDequeuedAt(now);
+            if (product.getEnqueuedAt() != 0) {
+                waitStats.record(Math.max(0, now - product.getEnqueuedAt()));
+            }
+        }
+        return product;
+    }
+
+    /// move up to max products from the head into the given collection in one
+    /// operation (one depth update for the lot), returns how many were moved
+    public int drainTo(Collection<Product> into, int max, long now) {
+        int moved = 0;
+        Product product;
+        while (moved < max && (product = products.poll()) != null) {
+            product.setDequeuedAt(now);
+            if (product.getEnqueuedAt() != 0) {
+                waitStats.record(Math.max(0, now - product.getEnqueuedAt()));
+            }
+            into.add(product);
+            moved++;
+        }
+        if (moved > 0) {
+            depth.addAndGet(-moved);
+            departed.add(moved);
+        }
+        return moved;
+    }
+
+    /// put products taken from the head back in front, in the order given and
+    /// regardless of capacity (a consumer stopped before starting them); they
+    /// keep their enqueue stamp, and no longer count as departed
+    public void returnToHead(List<Product> returned) {
+        depth.addAndGet(returned.size());
+        for (int i = returned.size() - 1; i >= 0; i--) {
+            products.offerFirst(returned.get(i));
+        }
+        departed.add(-returned.size());
+    }
+
+    /// move the sink's completion times by shift, when fast-forward stamps are
+    /// rebased onto the live clock
+    public void shiftCompletionTimes(long shift) {
+        firstCompletedAt.updateAndGet(at -> at == 0 ? 0 : at + shift);
+        lastCompletedAt.updateAndGet(at -> at == 0 ? 0 : at + shift);
+    }
+
+    /// enqueue time of the product at the head, Long.MAX_VALUE if empty
+    @JsonIgnore
+    public long getHeadEnqueuedAt() {
+        Product head = products.peek();
+        return head == null ? Long.MAX_VALUE : head.getEnqueuedAt();
+    }
+
+    /// drop every product and reset the depth and all counters
+    public void clear() {
+        products.clear();
+        depth.set(0);
+        waitStats.reset();
+        dropped.reset();
+        arrived.reset();
+        departed.reset();
+        generated.reset();
+        completed.reset();
+        systemTimeStats.reset();
+        firstCompletedAt.set(0);
+        lastCompletedAt.set(0);
     }
 }
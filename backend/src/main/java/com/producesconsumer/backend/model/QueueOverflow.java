@@ -0,0 +1,27 @@
+package com.producesconsumer.backend.model;
+
+/**
+ * What a producer does when the queue it routes to is at capacity
+ * ("block", "drop", "reroute")
+ */
+public enum QueueOverflow {
+    BLOCK, // wait for space; the producer stops taking input, so back-pressure travels upstream
+    DROP, // discard the product and count it on the queue
+    REROUTE; // send it to another output of the producer that has space, block if none has
+
+    /// null or blank means BLOCK
+    public static QueueOverflow fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return BLOCK;
+        }
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public static QueueOverflow of(Queue queue) {
+        return fromName(queue.getOverflowPolicy());
+    }
+
+    public String displayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,38 @@
+package com.producesconsumer.backend.model;
+
+/**
+ * What a queue is in the line ("buffer", "source", "sink")
+ */
+public enum QueueRole {
+    BUFFER, // holds products between machines
+    SOURCE, // products arrive here from outside, each source with its own arrival process
+    SINK; // products leave the line here; they are counted with their system time, not stored
+
+    /// id of the queue that was the only source before roles existed
+    public static final String LEGACY_SOURCE_ID = "Q0";
+
+    /// null or blank means BUFFER
+    public static QueueRole fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return BUFFER;
+        }
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    /// role of a queue; one saved without a role is a source if it is Q0
+    public static QueueRole of(Queue queue) {
+        if (queue.getRole() == null) {
+            return defaultFor(queue.getId());
+        }
+        return fromName(queue.getRole());
+    }
+
+    /// role a new queue gets, Q0 stays the inlet it always was
+    public static QueueRole defaultFor(String queueId) {
+        return LEGACY_SOURCE_ID.equals(queueId) ? SOURCE : BUFFER;
+    }
+
+    public String displayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
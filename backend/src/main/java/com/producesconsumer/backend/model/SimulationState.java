@@ -1,35 +1,241 @@
 package com.producesconsumer.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * Complete simulation state - pure data model
+ * Entities are stored in hash indexes keyed by id that iterate in insertion
+ * order, with connections also indexed by source and target id, so lookups
+ * and edits are O(1) (O(log n) to keep the order) and adjacency queries are
+ * O(degree). Mutate through the add/remove methods
+ * so the indexes stay consistent; the collection getters are read-only views
  */
 @Slf4j
 @Data
 public class SimulationState {
-    private List<Queue> queues;
-    private List<Machine> machines;
-    private List<Connection> connections;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final OrderedIndex<Queue> queues = new OrderedIndex<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final OrderedIndex<Machine> machines = new OrderedIndex<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final OrderedIndex<Connection> connections = new OrderedIndex<>();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Map<String, Set<Connection>> connectionsBySource = new ConcurrentHashMap<>();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Map<String, Set<Connection>> connectionsByTarget = new ConcurrentHashMap<>();
+    // numbers taken by "Q<n>" ids, so the lowest free one is found without re-parsing every id
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final BitSet usedQueueNumbers = new BitSet();
+
     @JsonProperty("isRunning")
     private boolean isRunning;
     private String simulationId;
-    private int totalProductsGenerated; // Count all products that entered Q0
+    // Count all products that entered a source; generators of several sources bump it concurrently
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger totalProductsGenerated = new AtomicInteger();
+    private TimeDistribution arrivalDistribution; // default gap between arrivals at a source, null = uniform 2000-2500 ms
+    private Long randomSeed; // seeds every arrival and processing-time stream, null = a different run each time
 
     public SimulationState() {
-        this.queues = new ArrayList<>();
-        this.machines = new ArrayList<>();
-        this.connections = new ArrayList<>();
         this.isRunning = false;
-        this.totalProductsGenerated = 0;
+    }
+
+    public int getTotalProductsGenerated() {
+        return totalProductsGenerated.get();
+    }
+
+    public void setTotalProductsGenerated(int total) {
+        totalProductsGenerated.set(total);
+    }
+
+    /// one more product entered the line
+    public void countProductGenerated() {
+        totalProductsGenerated.incrementAndGet();
+    }
+
+    // ==================== Queues ====================
+
+    public Collection<Queue> getQueues() {
+        return Collections.unmodifiableCollection(queues.values());
+    }
+
+    public void setQueues(Collection<Queue> queues) {
+        this.queues.clear();
+        synchronized (usedQueueNumbers) {
+            usedQueueNumbers.clear();
+        }
+        queues.forEach(this::addQueue);
+    }
+
+    public Queue getQueue(String id) {
+        return id == null ? null : queues.get(id);
+    }
+
+    public void addQueue(Queue queue) {
+        queues.put(queue.getId(), queue);
+        int number = queueNumber(queue.getId());
+        if (number >= 0) {
+            synchronized (usedQueueNumbers) {
+                usedQueueNumbers.set(number);
+            }
+        }
+    }
+
+    /// remove a queue and every connection touching it
+    public Queue removeQueue(String id) {
+        Queue removed = queues.remove(id);
+        if (removed != null) {
+            int number = queueNumber(id);
+            if (number >= 0) {
+                synchronized (usedQueueNumbers) {
+                    usedQueueNumbers.clear(number);
+                }
+            }
+            removeConnectionsOf(id);
+        }
+        return removed;
+    }
+
+    /// lowest n for which "Q<n>" is not taken
+    public int nextFreeQueueNumber() {
+        synchronized (usedQueueNumbers) {
+            return usedQueueNumbers.nextClearBit(0);
+        }
+    }
+
+    private static int queueNumber(String id) {
+        if (id == null || !id.startsWith("Q")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(id.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ==================== Machines ====================
+
+    public Collection<Machine> getMachines() {
+        return Collections.unmodifiableCollection(machines.values());
+    }
+
+    public void setMachines(Collection<Machine> machines) {
+        this.machines.clear();
+        machines.forEach(this::addMachine);
+    }
+
+    public Machine getMachine(String id) {
+        return id == null ? null : machines.get(id);
+    }
+
+    public void addMachine(Machine machine) {
+        machines.put(machine.getId(), machine);
+    }
+
+    /// remove a machine and every connection touching it
+    public Machine removeMachine(String id) {
+        Machine removed = machines.remove(id);
+        if (removed != null) {
+            removeConnectionsOf(id);
+        }
+        return removed;
+    }
+
+    // ==================== Connections ====================
+
+    public Collection<Connection> getConnections() {
+        return Collections.unmodifiableCollection(connections.values());
+    }
+
+    public void setConnections(Collection<Connection> connections) {
+        this.connections.clear();
+        connectionsBySource.clear();
+        connectionsByTarget.clear();
+        connections.forEach(this::addConnection);
+    }
+
+    public Connection getConnection(String id) {
+        return id == null ? null : connections.get(id);
+    }
+
+    public void addConnection(Connection connection) {
+        connections.put(connection.getId(), connection);
+        connectionsBySource.computeIfAbsent(connection.getSourceId(), k -> ConcurrentHashMap.newKeySet())
+                .add(connection);
+        connectionsByTarget.computeIfAbsent(connection.getTargetId(), k -> ConcurrentHashMap.newKeySet())
+                .add(connection);
+    }
+
+    public Connection removeConnection(String id) {
+        Connection removed = connections.remove(id);
+        if (removed != null) {
+            unindex(connectionsBySource, removed.getSourceId(), removed);
+            unindex(connectionsByTarget, removed.getTargetId(), removed);
+        }
+        return removed;
+    }
+
+    /// connections starting at the given element
+    public Collection<Connection> getConnectionsFrom(String sourceId) {
+        Set<Connection> outgoing = connectionsBySource.get(sourceId);
+        return outgoing == null ? Set.of() : Collections.unmodifiableSet(outgoing);
+    }
+
+    /// connections ending at the given element
+    public Collection<Connection> getConnectionsTo(String targetId) {
+        Set<Connection> incoming = connectionsByTarget.get(targetId);
+        return incoming == null ? Set.of() : Collections.unmodifiableSet(incoming);
+    }
+
+    private void removeConnectionsOf(String elementId) {
+        List<Connection> attached = new ArrayList<>(getConnectionsFrom(elementId));
+        attached.addAll(getConnectionsTo(elementId));
+        attached.forEach(c -> removeConnection(c.getId()));
+    }
+
+    private static void unindex(Map<String, Set<Connection>> index, String key, Connection connection) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /// drop every queue, machine and connection
+    public void clear() {
+        setQueues(List.of());
+        setMachines(List.of());
+        setConnections(List.of());
     }
 
     /**
@@ -51,26 +257,19 @@ public class SimulationState {
         }
 
         // Deep copy queues
-        this.queues = snapshotState.getQueues().stream()
-                .sorted(Comparator.comparingInt(q -> {
-                    try {
-                        return Integer.parseInt(q.getId().replace("Q", ""));
-                    } catch (NumberFormatException e) {
-                        return Integer.MAX_VALUE;
-                    }
-                }))
-                .map(this::deepCopyQueue)
-                .collect(Collectors.toCollection(ArrayList::new));
+        setQueues(snapshotState.getQueues().stream()
+                .map(SimulationState::deepCopyQueue)
+                .collect(Collectors.toList()));
 
         // Deep copy machines
-        this.machines = snapshotState.getMachines().stream()
-                .map(this::deepCopyMachine)
-                .collect(Collectors.toCollection(ArrayList::new));
+        setMachines(snapshotState.getMachines().stream()
+                .map(SimulationState::deepCopyMachine)
+                .collect(Collectors.toList()));
 
         // Deep copy connections
-        this.connections = snapshotState.getConnections().stream()
-                .map(this::deepCopyConnection)
-                .collect(Collectors.toCollection(ArrayList::new));
+        setConnections(snapshotState.getConnections().stream()
+                .map(SimulationState::deepCopyConnection)
+                .collect(Collectors.toList()));
 
         if (preserveRunningState) {
             this.isRunning = snapshotState.isRunning();
@@ -80,7 +279,9 @@ public class SimulationState {
         }
 
         // Copy totalProductsGenerated
-        this.totalProductsGenerated = snapshotState.getTotalProductsGenerated();
+        this.totalProductsGenerated.set(snapshotState.getTotalProductsGenerated());
+        this.arrivalDistribution = copyOf(snapshotState.getArrivalDistribution());
+        this.randomSeed = snapshotState.getRandomSeed();
 
         this.simulationId = snapshot.getId();
     }
@@ -96,6 +297,16 @@ public class SimulationState {
      * Save to snapshot with option to preserve running state
      */
     public SimulationSnapshot saveToSnapshot(String label, boolean preserveRunningState) {
+        return saveToSnapshot(label, preserveRunningState, null);
+    }
+
+    /**
+     * Save to snapshot as of one instant while products keep moving: the cut
+     * holds moves off only while the entities and the product references are
+     * taken, the products themselves are copied once it has reopened (null =
+     * nothing moves concurrently)
+     */
+    public SimulationSnapshot saveToSnapshot(String label, boolean preserveRunningState, CutBarrier cut) {
         SimulationSnapshot snapshot = new SimulationSnapshot();
         snapshot.setLabel(label != null ? label : this.simulationId);
         snapshot.setId(this.simulationId);
@@ -109,44 +320,71 @@ public class SimulationState {
             stateCopy.setRunning(false);
         }
 
-        // Deep copy current data
-        stateCopy.setQueues(this.queues.stream()
-                .map(this::deepCopyQueue)
-                .collect(Collectors.toCollection(ArrayList::new)));
-
-        stateCopy.setMachines(this.machines.stream()
-                .map(this::deepCopyMachine)
-                .collect(Collectors.toCollection(ArrayList::new)));
+        // Queue fields and product references, machines (with the products in
+        // their hands), connections and the generated count, all at the cut
+        Map<Queue, Product[]> queued = new LinkedHashMap<>();
+        Runnable capture = () -> {
+            for (Queue queue : this.queues.values()) {
+                queued.put(copyQueueFields(queue), queue.getProducts().toArray(new Product[0]));
+            }
+            stateCopy.setMachines(this.machines.values().stream()
+                    .map(SimulationState::deepCopyMachine)
+                    .collect(Collectors.toList()));
+            stateCopy.setConnections(this.connections.values().stream()
+                    .map(SimulationState::deepCopyConnection)
+                    .collect(Collectors.toList()));
+            stateCopy.setTotalProductsGenerated(getTotalProductsGenerated());
+        };
+        if (cut == null) {
+            capture.run();
+        } else {
+            cut.cut(capture);
+        }
 
-        stateCopy.setConnections(this.connections.stream()
-                .map(this::deepCopyConnection)
-                .collect(Collectors.toCollection(ArrayList::new)));
+        // Deep copy the products outside the pause
+        queued.forEach((copy, products) -> {
+            for (Product product : products) {
+                copy.getProducts().add(deepCopyProduct(product));
+            }
+            copy.setProductCount(products.length);
+        });
+        stateCopy.setQueues(queued.keySet());
 
-        // Copy totalProductsGenerated
-        stateCopy.setTotalProductsGenerated(this.totalProductsGenerated);
+        stateCopy.setArrivalDistribution(copyOf(this.arrivalDistribution));
+        stateCopy.setRandomSeed(this.randomSeed);
 
         snapshot.setState(stateCopy);
         return snapshot;
     }
 
-    private Queue deepCopyQueue(Queue original) {
-        Queue copy = new Queue();
-        copy.setId(original.getId());
-        copy.setX(original.getX());
-        copy.setY(original.getY());
-        copy.setProductCount(original.getProductCount());
+    public static Queue deepCopyQueue(Queue original) {
+        Queue copy = copyQueueFields(original);
 
         // Deep copy products within queue
         if (original.getProducts() != null) {
             List<Product> productsCopy = original.getProducts().stream()
-                    .map(this::deepCopyProduct)
+                    .map(SimulationState::deepCopyProduct)
                     .collect(Collectors.toList());
             copy.getProducts().addAll(productsCopy);
         }
         return copy;
     }
 
-    private Machine deepCopyMachine(Machine original) {
+    /// everything but the products
+    public static Queue copyQueueFields(Queue original) {
+        Queue copy = new Queue();
+        copy.setId(original.getId());
+        copy.setX(original.getX());
+        copy.setY(original.getY());
+        copy.setProductCount(original.getProductCount());
+        copy.setCapacity(original.getCapacity());
+        copy.setOverflowPolicy(original.getOverflowPolicy());
+        copy.setRole(original.getRole());
+        copy.setArrivalDistribution(copyOf(original.getArrivalDistribution()));
+        return copy;
+    }
+
+    public static Machine deepCopyMachine(Machine original) {
         Machine copy = new Machine();
         copy.setId(original.getId());
         copy.setX(original.getX());
@@ -154,26 +392,48 @@ public class SimulationState {
         copy.setState(original.getState());
         copy.setProductCount(original.getProductCount());
         copy.setProcessingTime(original.getProcessingTime());
+        copy.setProcessingTimeDistribution(copyOf(original.getProcessingTimeDistribution()));
         copy.setCurrentProductColor(original.getCurrentProductColor());
         copy.setInputQueueId(original.getInputQueueId());
         copy.setOutputQueueId(original.getOutputQueueId());
+        copy.setRoutingStrategy(original.getRoutingStrategy());
+        copy.setInputPolicy(original.getInputPolicy());
+        copy.setBatchSize(original.getBatchSize());
+        copy.setBatchTimeoutMs(original.getBatchTimeoutMs());
+        copy.setCurrentBatchSize(original.getCurrentBatchSize());
+        copy.setServers(original.getServers());
+        copy.setBusyServers(original.getBusyServers());
+        copy.setUnroutedCount(original.getUnroutedCount());
+        for (Product product : original.getHeldProducts()) {
+            copy.getHeldProducts().add(deepCopyProduct(product));
+        }
         return copy;
     }
 
-    private Connection deepCopyConnection(Connection original) {
+    private static TimeDistribution copyOf(TimeDistribution original) {
+        return original == null ? null : original.copy();
+    }
+
+    public static Connection deepCopyConnection(Connection original) {
         Connection copy = new Connection();
         copy.setId(original.getId());
         copy.setSourceId(original.getSourceId());
         copy.setSourceType(original.getSourceType());
         copy.setTargetId(original.getTargetId());
         copy.setTargetType(original.getTargetType());
+        copy.setWeight(original.getWeight());
         return copy;
     }
 
-    private Product deepCopyProduct(Product original) {
+    public static Product deepCopyProduct(Product original) {
         Product copy = new Product();
         copy.setId(original.getId());
         copy.setColor(original.getColor());
+        copy.setEnqueuedAt(original.getEnqueuedAt());
+        copy.setCreatedAt(original.getCreatedAt());
+        copy.setDequeuedAt(original.getDequeuedAt());
+        copy.setServiceStartedAt(original.getServiceStartedAt());
+        copy.setServiceEndedAt(original.getServiceEndedAt());
         return copy;
     }
 }
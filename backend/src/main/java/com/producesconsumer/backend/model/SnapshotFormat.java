@@ -0,0 +1,33 @@
+package com.producesconsumer.backend.model;
+
+/**
+ * How a snapshot is written to disk ("binary", "json") - binary is the compact
+ * streamed layout of SnapshotCodec, json the readable export
+ */
+public enum SnapshotFormat {
+    BINARY("snap"),
+    JSON("json");
+
+    private final String extension;
+
+    SnapshotFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /// null or blank means BINARY
+    public static SnapshotFormat fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return BINARY;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /// file name extension, without the dot
+    public String extension() {
+        return extension;
+    }
+
+    public String displayName() {
+        return name().toLowerCase();
+    }
+}
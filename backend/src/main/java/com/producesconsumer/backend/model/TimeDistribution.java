@@ -0,0 +1,58 @@
+package com.producesconsumer.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Random duration in milliseconds - a machine's processing time or the gap
+ * between arrivals. type is "fixed", "uniform", "exponential", "normal",
+ * "log-normal", "erlang" or "empirical"; which parameters matter depends on
+ * it (see TimeDistributionType). min/max clamp every sample when set
+ */
+@Data
+public class TimeDistribution {
+    private String type;
+    private double mean; // fixed, exponential, normal, log-normal, erlang
+    private double stdDev; // normal, log-normal
+    private double min; // uniform range / lower clamp
+    private double max; // uniform range / upper clamp (0 = none)
+    private int shape; // erlang phases (k)
+    private String samplesFile; // empirical: file the samples were read from, if any
+    // empirical observations, shared immutably between copies; kept out of
+    // the JSON so machine SSE deltas don't carry them
+    @JsonIgnore
+    private List<Double> samples = List.of();
+
+    @JsonProperty("sampleCount")
+    public int getSampleCount() {
+        return samples.size();
+    }
+
+    public void setSamples(List<Double> samples) {
+        this.samples = samples == null ? List.of() : List.copyOf(samples);
+    }
+
+    public TimeDistribution copy() {
+        TimeDistribution copy = new TimeDistribution();
+        copy.setType(type);
+        copy.setMean(mean);
+        copy.setStdDev(stdDev);
+        copy.setMin(min);
+        copy.setMax(max);
+        copy.setShape(shape);
+        copy.setSamplesFile(samplesFile);
+        copy.samples = samples; // already immutable
+        return copy;
+    }
+
+    public static TimeDistribution uniform(double min, double max) {
+        TimeDistribution distribution = new TimeDistribution();
+        distribution.setType("uniform");
+        distribution.setMin(min);
+        distribution.setMax(max);
+        return distribution;
+    }
+}
@@ -0,0 +1,109 @@
+package com.producesconsumer.backend.model;
+
+import java.util.List;
+
+/**
+ * One entry of the event log: a product entering a queue, products leaving
+ * one from its head, a product put back at its head, a queue emptied, or a
+ * machine's new state. Queue entries are relative and have to be applied in
+ * order from a state that matches the log position (the log holds each
+ * queue's entries in the order the changes were made); machine entries
+ * carry the machine's whole state, so applying one twice is harmless
+ *
+ * @param position where the entry sits in the log
+ * @param time     wall clock (epoch ms) when it was logged
+ * @param id       queue or machine id
+ */
+public record Transition(long position, long time, Type type, String id,
+        String productId, String color, int count, String state, int busyServers, int batchSize) {
+
+    public enum Type {
+        // the log stores the ordinal, new types go last
+        ENQUEUED, DEQUEUED, MACHINE, RETURNED, CLEARED
+    }
+
+    public static Transition enqueued(long time, String queueId, String productId, String color) {
+        return new Transition(-1, time, Type.ENQUEUED, queueId, productId, color, 1, null, 0, 0);
+    }
+
+    /// count products taken from the head of the queue
+    public static Transition dequeued(long time, String queueId, int count) {
+        return new Transition(-1, time, Type.DEQUEUED, queueId, null, null, count, null, 0, 0);
+    }
+
+    /// one product put back at the head of the queue
+    public static Transition returned(long time, String queueId, String productId, String color) {
+        return new Transition(-1, time, Type.RETURNED, queueId, productId, color, 1, null, 0, 0);
+    }
+
+    public static Transition cleared(long time, String queueId) {
+        return new Transition(-1, time, Type.CLEARED, queueId, null, null, 0, null, 0, 0);
+    }
+
+    /// count = the products the machine holds, color = its current product's
+    public static Transition machine(long time, Machine machine) {
+        return new Transition(-1, time, Type.MACHINE, machine.getId(), null, machine.getCurrentProductColor(),
+                machine.getProductCount(), machine.getState(), machine.getBusyServers(),
+                machine.getCurrentBatchSize());
+    }
+
+    public Transition at(long position) {
+        return new Transition(position, time, type, id, productId, color, count, state, busyServers, batchSize);
+    }
+
+    /// replay this entry onto the state; returns the queue or machine it
+    /// changed, null if that no longer exists there
+    public Object applyTo(SimulationState target) {
+        switch (type) {
+            case ENQUEUED -> {
+                Queue queue = target.getQueue(id);
+                if (queue != null) {
+                    queue.enqueue(product());
+                }
+                return queue;
+            }
+            case RETURNED -> {
+                Queue queue = target.getQueue(id);
+                if (queue != null) {
+                    queue.returnToHead(List.of(product()));
+                }
+                return queue;
+            }
+            case CLEARED -> {
+                Queue queue = target.getQueue(id);
+                if (queue != null) {
+                    queue.clear();
+                }
+                return queue;
+            }
+            case DEQUEUED -> {
+                Queue queue = target.getQueue(id);
+                // FIFO, so the head is what left
+                for (int i = 0; queue != null && i < count; i++) {
+                    if (queue.dequeue() == null) {
+                        break;
+                    }
+                }
+                return queue;
+            }
+            default -> {
+                Machine machine = target.getMachine(id);
+                if (machine != null) {
+                    machine.setState(state);
+                    machine.setProductCount(count);
+                    machine.setBusyServers(busyServers);
+                    machine.setCurrentBatchSize(batchSize);
+                    machine.setCurrentProductColor(color);
+                }
+                return machine;
+            }
+        }
+    }
+
+    private Product product() {
+        Product product = new Product();
+        product.setId(productId);
+        product.setColor(color);
+        return product;
+    }
+}
@@ -0,0 +1,82 @@
+package com.producesconsumer.backend.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How a machine's servers spent their time - processing, blocked on a full
+ * output or idle, in server-nanoseconds since the last reset - plus products
+ * started and finished. The product counters are adders bumped by the
+ * servers without locking; the time split changes only on the server
+ * pool's state transitions, which already hold the pool's lock
+ */
+public class UtilizationStats {
+    private final LongAdder started = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+
+    // guarded by this
+    private long lastChange; // 0 = not accounting yet
+    private int processing;
+    private int blocked;
+    private int idle;
+    private long processingNanos;
+    private long blockedNanos;
+    private long idleNanos;
+
+    /// split of the time between now and the next change
+    public synchronized void update(long now, int servers, int busy, int blocked) {
+        accrue(now);
+        this.blocked = Math.min(blocked, busy);
+        this.processing = busy - this.blocked;
+        this.idle = Math.max(0, servers - busy);
+    }
+
+    /// totals up to now, including the interval still running
+    public synchronized Totals totals(long now) {
+        long elapsed = lastChange == 0 ? 0 : Math.max(0, now - lastChange);
+        return new Totals(processingNanos + elapsed * processing,
+                blockedNanos + elapsed * blocked,
+                idleNanos + elapsed * idle);
+    }
+
+    public void recordStarted() {
+        started.increment();
+    }
+
+    public void recordFinished() {
+        finished.increment();
+    }
+
+    public long getStarted() {
+        return started.sum();
+    }
+
+    public long getFinished() {
+        return finished.sum();
+    }
+
+    public synchronized void reset() {
+        started.reset();
+        finished.reset();
+        lastChange = 0;
+        processing = 0;
+        blocked = 0;
+        idle = 0;
+        processingNanos = 0;
+        blockedNanos = 0;
+        idleNanos = 0;
+    }
+
+    private void accrue(long now) {
+        if (lastChange != 0) {
+            long elapsed = Math.max(0, now - lastChange);
+            processingNanos += elapsed * processing;
+            blockedNanos += elapsed * blocked;
+            idleNanos += elapsed * idle;
+        }
+        lastChange = now;
+    }
+
+    /// server-nanoseconds spent in each state
+    public record Totals(long processingNanos, long blockedNanos, long idleNanos) {
+    }
+}
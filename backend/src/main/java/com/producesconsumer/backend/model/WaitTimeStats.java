@@ -0,0 +1,41 @@
+package com.producesconsumer.backend.model;
+
+/**
+ * Time products spent waiting in a queue, recorded on dequeue (also used for
+ * service and system times). Backed by a LatencyHistogram, so concurrent
+ * consumers of the same queue never contend on one counter and percentiles
+ * come for free
+ */
+public class WaitTimeStats {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    public void record(long waitNanos) {
+        histogram.record(waitNanos);
+    }
+
+    public long getServed() {
+        return histogram.getCount();
+    }
+
+    public double getMeanWaitMs() {
+        long count = histogram.getCount();
+        return count == 0 ? 0 : histogram.getTotalNanos() / 1e6 / count;
+    }
+
+    public double getMaxWaitMs() {
+        return histogram.getMaxNanos() / 1e6;
+    }
+
+    /// wait at the given percentile (0-100)
+    public double getPercentileMs(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public void reset() {
+        histogram.reset();
+    }
+}
@@ -0,0 +1,8 @@
+package com.producesconsumer.backend.observer;
+
+import com.producesconsumer.backend.model.Machine;
+
+public interface MachineObserver {
+    /// the machine's state, held products or current product changed
+    void onMachineChanged(Machine machine);
+}
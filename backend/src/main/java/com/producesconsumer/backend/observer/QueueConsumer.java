@@ -0,0 +1,12 @@
+package com.producesconsumer.backend.observer;
+
+import com.producesconsumer.backend.model.Queue;
+
+/// a consumer subscribed to specific queues, woken only when one of them
+/// receives a product
+public interface QueueConsumer {
+    /// signal the consumer that a product arrived in the given queue
+    /// returns true if the consumer was idle and has been woken, false if it
+    /// is busy and will poll its inputs on its own
+    boolean wakeUp(Queue queue);
+}
@@ -0,0 +1,23 @@
+package com.producesconsumer.backend.observer;
+
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+
+import java.util.List;
+
+/// records queue changes in the order they happened to each queue: every
+/// call is made under the queue's monitor together with the change itself,
+/// unlike QueueObserver, which hears about changes after the fact and can
+/// hear two changes to one queue the other way round. Calls must be quick
+/// and must not take other locks
+public interface QueueJournal {
+    void enqueued(Queue queue, Product product);
+
+    /// products taken from the head, in the order they left
+    void dequeued(Queue queue, List<Product> products);
+
+    /// products put back in front, the first one given ending up at the head
+    void returned(Queue queue, List<Product> products);
+
+    void cleared(Queue queue);
+}
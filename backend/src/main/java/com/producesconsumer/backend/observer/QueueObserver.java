@@ -3,10 +3,23 @@ package com.producesconsumer.backend.observer;
 import com.producesconsumer.backend.model.Product;
 import com.producesconsumer.backend.model.Queue;
 
+import java.util.List;
+
 public interface QueueObserver {
     void onProductAdded(Queue queue, Product product);
 
     void onProductRemoved(Queue queue, Product product);
 
+    /// several products taken in one operation (batch machines); observers
+    /// that only care that the queue changed can react once
+    default void onProductsRemoved(Queue queue, List<Product> products) {
+        products.forEach(product -> onProductRemoved(queue, product));
+    }
+
+    /// products a consumer took and never started went back to the head, in order
+    default void onProductsReturned(Queue queue, List<Product> products) {
+        products.forEach(product -> onProductAdded(queue, product));
+    }
+
     void onQueueEmpty(Queue queue);
 }
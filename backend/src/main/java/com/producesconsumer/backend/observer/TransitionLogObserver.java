@@ -0,0 +1,67 @@
+package com.producesconsumer.backend.observer;
+
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.Transition;
+import com.producesconsumer.backend.service.EventLog;
+import com.producesconsumer.backend.service.QueueService;
+import com.producesconsumer.backend.service.SimulationService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Appends every queue and machine transition of the live line to the event
+ * log. Queue changes are journaled under the queue's monitor together with
+ * the change, so the log holds each queue's changes in the order they were
+ * made, and inside the mover's cut section, so a checkpoint's log position
+ * splits them exactly. Only there with simulation.eventlog.enabled=true:
+ * journaling puts every queue move under that monitor, which the lock-free
+ * queues avoid otherwise; without it a replay seeks to checkpoints only
+ */
+@Component
+@ConditionalOnProperty(name = "simulation.eventlog.enabled", havingValue = "true")
+public class TransitionLogObserver implements QueueJournal, MachineObserver {
+
+    private final EventLog eventLog;
+
+    public TransitionLogObserver(EventLog eventLog, QueueService queueService, SimulationService simulationService) {
+        this.eventLog = eventLog;
+        queueService.setJournal(this);
+        simulationService.registerMachineObserver(this);
+    }
+
+    @Override
+    public void enqueued(Queue queue, Product product) {
+        eventLog.append(Transition.enqueued(System.currentTimeMillis(), queue.getId(),
+                product.getId(), product.getColor()));
+    }
+
+    /// one entry for the whole batch
+    @Override
+    public void dequeued(Queue queue, List<Product> products) {
+        eventLog.append(Transition.dequeued(System.currentTimeMillis(), queue.getId(), products.size()));
+    }
+
+    /// one entry per product, last first, each going in front of the one before
+    @Override
+    public void returned(Queue queue, List<Product> products) {
+        long now = System.currentTimeMillis();
+        for (int i = products.size() - 1; i >= 0; i--) {
+            Product product = products.get(i);
+            eventLog.append(Transition.returned(now, queue.getId(), product.getId(), product.getColor()));
+        }
+    }
+
+    @Override
+    public void cleared(Queue queue) {
+        eventLog.append(Transition.cleared(System.currentTimeMillis(), queue.getId()));
+    }
+
+    @Override
+    public void onMachineChanged(Machine machine) {
+        eventLog.append(Transition.machine(System.currentTimeMillis(), machine));
+    }
+}
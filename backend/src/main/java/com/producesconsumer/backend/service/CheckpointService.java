@@ -0,0 +1,328 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.CheckpointInfo;
+import com.producesconsumer.backend.model.Checkpoint;
+import com.producesconsumer.backend.model.CheckpointTracker;
+import com.producesconsumer.backend.model.SimulationSnapshot;
+import com.producesconsumer.backend.model.SimulationState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Periodic checkpoints of a running line: a full base checkpoint, then
+ * deltas holding only what changed since the checkpoint before, each
+ * captured at a consistent cut and written to its own file. Once a chain
+ * grows past its limit the oldest half of its deltas is folded into a new
+ * base, so recovery never reads more than max-chain deltas; checkpoints
+ * older than the base can then no longer be reconstructed. The chain on
+ * disk is read back at startup, so the last checkpoint before a crash can
+ * be restored. Each checkpoint notes the event log position at its cut;
+ * log segments older than the base are dropped with it
+ */
+@Service
+@Slf4j
+public class CheckpointService {
+
+    private static final String EXTENSION = ".ckpt";
+
+    private final SimulationService simulationService;
+    private final QueueService queueService;
+    private final EventLog eventLog;
+    private final String checkpointsDir;
+    private final int maxChain;
+    private final ScheduledExecutorService checkpointer;
+
+    private final CheckpointTracker tracker = new CheckpointTracker(); // guarded by this
+    private final List<Checkpoint> chain = new ArrayList<>(); // guarded by this, base first
+    private final Map<Long, Long> sizes = new HashMap<>(); // guarded by this, bytes per sequence
+    private long nextSequence = 1; // guarded by this
+
+    private final Timer fullCaptureTimer;
+    private final Timer deltaCaptureTimer;
+    private final Timer writeTimer;
+
+    public CheckpointService(SimulationService simulationService,
+            QueueService queueService,
+            EventLog eventLog,
+            MeterRegistry meterRegistry,
+            @Value("${simulation.checkpoint.interval-ms:5000}") long intervalMs,
+            @Value("${simulation.checkpoint.max-chain:20}") int maxChain,
+            @Value("${simulation.checkpoint.dir:checkpoints}") String checkpointsDir) {
+        this.simulationService = simulationService;
+        this.queueService = queueService;
+        this.eventLog = eventLog;
+        this.checkpointsDir = checkpointsDir;
+        this.maxChain = Math.max(1, maxChain);
+        this.fullCaptureTimer = captureTimer(meterRegistry, "full");
+        this.deltaCaptureTimer = captureTimer(meterRegistry, "delta");
+        this.writeTimer = Timer.builder("simulation.checkpoint.write")
+                .description("Encoding a checkpoint and writing it to disk")
+                .register(meterRegistry);
+        Gauge.builder("simulation.checkpoint.chain", this, CheckpointService::chainLength)
+                .description("Checkpoints a restore may have to read, the base included")
+                .register(meterRegistry);
+        readChain();
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMs > 0) {
+            checkpointer.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            log.info("Checkpointing every {} ms into {}, at most {} deltas per chain",
+                    intervalMs, checkpointsDir, this.maxChain);
+        }
+    }
+
+    private static Timer captureTimer(MeterRegistry meterRegistry, String kind) {
+        return Timer.builder("simulation.checkpoint.capture")
+                .description("Reading the live state into a checkpoint, cut pause included")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        checkpointer.shutdown();
+        checkpointer.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /// only a running line changes on its own
+    private void tick() {
+        try {
+            if (simulationService.getState().isRunning()) {
+                checkpoint();
+            }
+        } catch (Exception e) {
+            log.error("Error taking checkpoint: {}", e.getMessage(), e);
+        }
+    }
+
+    /// take the next checkpoint now; null if nothing changed since the last one
+    public synchronized CheckpointInfo checkpoint() {
+        SimulationState state = simulationService.getState();
+        boolean full = chain.isEmpty();
+        long start = System.nanoTime();
+        Checkpoint checkpoint = tracker.capture(state, queueService.getCutBarrier(), full, eventLog::position);
+        (checkpoint.isFull() ? fullCaptureTimer : deltaCaptureTimer)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (checkpoint.isEmpty()) {
+            return null;
+        }
+        checkpoint.setSequence(nextSequence++);
+        checkpoint.setBase(checkpoint.isFull() ? checkpoint.getSequence() : chain.get(0).getSequence());
+        try {
+            write(checkpoint);
+        } catch (IOException e) {
+            // the chain lacks what the tracker saw, so start over from a full one
+            tracker.reset();
+            log.error("Checkpoint {} could not be written: {}", checkpoint.getSequence(), e.getMessage());
+            return null;
+        }
+        if (checkpoint.isFull()) {
+            List<Checkpoint> previous = new ArrayList<>(chain);
+            chain.clear();
+            chain.add(checkpoint);
+            delete(previous);
+            eventLog.discardBefore(checkpoint.getLogPosition());
+        } else {
+            chain.add(checkpoint);
+            if (chain.size() - 1 > maxChain) {
+                compact();
+            }
+        }
+        return CheckpointInfo.of(checkpoint, sizes.getOrDefault(checkpoint.getSequence(), 0L));
+    }
+
+    /// fold the base and the oldest half of the deltas into a new base at the
+    /// last delta folded; it replaces that delta's file, then the older files go
+    private void compact() {
+        int last = chain.size() - 1 - maxChain / 2;
+        SimulationState folded = new SimulationState();
+        for (int i = 0; i <= last; i++) {
+            chain.get(i).applyTo(folded);
+        }
+        Checkpoint base = new Checkpoint();
+        base.setSequence(chain.get(last).getSequence());
+        base.setBase(base.getSequence());
+        base.setFull(true);
+        base.setTimestamp(chain.get(last).getTimestamp());
+        base.setCapturedAt(chain.get(last).getCapturedAt());
+        base.setLogPosition(chain.get(last).getLogPosition());
+        base.setState(folded);
+        try {
+            write(base);
+        } catch (IOException e) {
+            log.error("Checkpoint chain could not be compacted: {}", e.getMessage());
+            return; // the longer chain still restores
+        }
+        List<Checkpoint> superseded = new ArrayList<>(chain.subList(0, last));
+        chain.subList(0, last + 1).clear();
+        chain.add(0, base);
+        for (Checkpoint delta : chain) {
+            delta.setBase(base.getSequence());
+        }
+        delete(superseded);
+        eventLog.discardBefore(base.getLogPosition());
+        log.info("Checkpoint chain compacted into base {}", base.getSequence());
+    }
+
+    public synchronized List<CheckpointInfo> getCheckpoints() {
+        return chain.stream()
+                .map(checkpoint -> CheckpointInfo.of(checkpoint, sizes.getOrDefault(checkpoint.getSequence(), 0L)))
+                .toList();
+    }
+
+    /// the state as of the given checkpoint (null = the latest): its base with
+    /// every delta up to it applied
+    public synchronized SimulationSnapshot reconstruct(Long sequence) {
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("No checkpoints taken yet");
+        }
+        long target = sequence != null ? sequence : chain.get(chain.size() - 1).getSequence();
+        SimulationState state = new SimulationState();
+        for (Checkpoint checkpoint : chain) {
+            if (checkpoint.getSequence() > target) {
+                break;
+            }
+            checkpoint.applyTo(state);
+            if (checkpoint.getSequence() == target) {
+                SimulationSnapshot snapshot = new SimulationSnapshot();
+                snapshot.setId(state.getSimulationId());
+                snapshot.setLabel("checkpoint-" + target);
+                snapshot.setTimestamp(checkpoint.getTimestamp());
+                snapshot.setState(state);
+                return snapshot;
+            }
+        }
+        throw new IllegalArgumentException("No checkpoint " + target + " in the current chain");
+    }
+
+    /// load the given checkpoint (null = the latest) into the simulation, paused
+    public SimulationSnapshot restore(Long sequence) {
+        SimulationSnapshot snapshot = reconstruct(sequence);
+        simulationService.getState().loadFromSnapshot(snapshot); // deep copies, so the chain stays untouched
+        log.info("Restored {}", snapshot.getLabel());
+        return snapshot;
+    }
+
+    /// the latest checkpoint captured at or before the given time whose log
+    /// is still kept, null if none is
+    public synchronized Checkpoint latestAt(long timeMillis) {
+        Checkpoint latest = null;
+        long kept = eventLog.start();
+        for (Checkpoint checkpoint : chain) {
+            if (checkpoint.getCapturedAt() <= timeMillis && checkpoint.getLogPosition() >= kept) {
+                latest = checkpoint;
+            }
+        }
+        return latest;
+    }
+
+    private int chainLength() {
+        synchronized (this) {
+            return chain.size();
+        }
+    }
+
+    /// stream into a temp file and rename, so a crash never leaves a torn checkpoint
+    private void write(Checkpoint checkpoint) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(Path.of(checkpointsDir));
+            Path file = fileOf(checkpoint.getSequence());
+            Path temp = Path.of(checkpointsDir, checkpoint.getSequence() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                SnapshotCodec.writeCheckpoint(checkpoint, out);
+            }
+            sizes.put(checkpoint.getSequence(), Files.size(temp));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void delete(List<Checkpoint> checkpoints) {
+        for (Checkpoint checkpoint : checkpoints) {
+            sizes.remove(checkpoint.getSequence());
+            try {
+                Files.deleteIfExists(fileOf(checkpoint.getSequence()));
+            } catch (IOException e) {
+                log.warn("Checkpoint {} could not be deleted: {}", checkpoint.getSequence(), e.getMessage());
+            }
+        }
+    }
+
+    /// the latest base on disk and the deltas after it, stopping at the first
+    /// file that can't be read since no later delta applies without it. New
+    /// checkpoints are numbered after every file found, readable or not
+    private synchronized void readChain() {
+        Path dir = Path.of(checkpointsDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).sorted().toList();
+        } catch (IOException e) {
+            log.error("Checkpoints in {} could not be listed: {}", checkpointsDir, e.getMessage());
+            return;
+        }
+        for (Path file : files) {
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+        }
+        for (Path file : files) {
+            try (InputStream in = Files.newInputStream(file)) {
+                Checkpoint checkpoint = SnapshotCodec.readCheckpoint(in);
+                if (checkpoint.isFull()) {
+                    chain.clear();
+                } else if (chain.isEmpty()) {
+                    continue; // its base is gone
+                }
+                chain.add(checkpoint);
+                sizes.put(checkpoint.getSequence(), Files.size(file));
+            } catch (IOException e) {
+                log.error("Checkpoint {} could not be read, the chain ends before it: {}", file, e.getMessage());
+                break;
+            }
+        }
+        if (!chain.isEmpty()) {
+            log.info("Checkpoint chain {}..{} found in {}", chain.get(0).getSequence(),
+                    chain.get(chain.size() - 1).getSequence(), checkpointsDir);
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /// zero-padded so the files list in sequence order
+    private Path fileOf(long sequence) {
+        return Path.of(checkpointsDir, String.format("%019d", sequence) + EXTENSION);
+    }
+}
@@ -0,0 +1,629 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.CutBarrier;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueOverflow;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+import com.producesconsumer.backend.strategy.InputPolicy;
+import com.producesconsumer.backend.strategy.InputPolicyType;
+import com.producesconsumer.backend.strategy.RoutingStrategy;
+import com.producesconsumer.backend.strategy.RoutingStrategyType;
+import com.producesconsumer.backend.strategy.TimeSampler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+/**
+ * Discrete-event engine - drives the same queue/machine graph as the threaded
+ * MachineRunners from a single event calendar ordered by virtual time.
+ * speed = 0 runs as fast as possible (state is mutated directly, one
+ * STATE_UPDATE at the end); speed > 0 paces virtual time against the wall
+ * clock (2.0 = twice real time) and publishes the usual SSE events
+ */
+@Slf4j
+public class DiscreteEventEngine implements Runnable {
+
+    private enum EventType { ARRIVAL, SERVICE_COMPLETE, BATCH_TIMEOUT }
+
+    // how often an idle live engine looks for a rewiring
+    private static final long IDLE_POLL_MS = 50;
+
+    private record Event(long time, long seq, EventType type, Machine machine, InputGenerator source,
+            List<Product> products)
+            implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(seq, other.seq); // FIFO for ties
+        }
+    }
+
+    /// finished products waiting for room in a full BLOCK queue, the first one
+    /// is the one held, the rest of the batch is routed after it; machine is
+    /// null for an arrival held back at the source
+    private record Blocked(Machine machine, List<Product> products) {
+    }
+
+    /// the input a product in service was taken from, and when (take order)
+    private record Taken(Queue from, long order) {
+    }
+
+    private final SimulationState state;
+    private final Supplier<RoutingTopology> topology;
+    // arrival process per source queue id, kept in step with the topology's sources
+    private final Map<String, InputGenerator> generators = new HashMap<>();
+    private final QueueService queueService;
+    private final SimulationService simulationService;
+    private final double speed;
+    private final long horizon;
+
+    private final PriorityQueue<Event> calendar = new PriorityQueue<>();
+    // busy servers per machine, created on first use
+    private final Map<String, ServerPool> pools = new HashMap<>();
+    // per machine, keyed by machine id + strategy name so a change takes effect
+    private final Map<String, RoutingStrategy> routers = new HashMap<>();
+    private final Map<String, InputPolicy> inputPolicies = new HashMap<>();
+    // processing-time draws, one seeded stream per machine
+    private final Map<String, TimeSampler> samplers = new HashMap<>();
+    // producers held by a full queue, by queue id, released FIFO as it drains
+    private final Map<String, ArrayDeque<Blocked>> blockedOn = new HashMap<>();
+    // pending batch timeout per machine; a timeout whose time no longer matches is stale
+    private final Map<String, Long> batchDeadlines = new HashMap<>();
+    // products in service, so a run that ends can put them back
+    private final Map<Product, Taken> inService = new IdentityHashMap<>();
+    private long takes = 0;
+    private long clock = 0;
+    // System.nanoTime() when the run started, virtual stamps count from it so
+    // they share the live clock's origin
+    private long origin;
+    private long seq = 0;
+    private long eventsProcessed = 0;
+    private long topologyVersion;
+    private volatile boolean running = true;
+    private final TaskThread thread = new TaskThread();
+
+    public DiscreteEventEngine(SimulationState state,
+            Supplier<RoutingTopology> topology,
+            QueueService queueService,
+            SimulationService simulationService,
+            double speed,
+            long horizon) {
+        this.state = state;
+        this.topology = topology;
+        this.queueService = queueService;
+        this.simulationService = simulationService;
+        this.speed = speed;
+        this.horizon = horizon;
+    }
+
+    public void stop() {
+        running = false;
+        thread.interrupt(); // out of the pacing sleep
+    }
+
+    /// after stop: true once the engine has released what its machines held
+    /// and left its loop
+    public boolean awaitStopped(long timeoutMs) {
+        return thread.awaitExit(timeoutMs);
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    @Override
+    public void run() {
+        thread.enter();
+        try {
+            simulate();
+        } finally {
+            thread.exit();
+        }
+    }
+
+    private void simulate() {
+        log.info("Discrete-event engine started (speed: {}, horizon: {} ms)",
+                speed > 0 ? speed + "x" : "max", horizon == Long.MAX_VALUE ? "none" : horizon);
+
+        // every event is one section of the cut barrier: a snapshot falls
+        // between two events, never into one that moved products halfway
+        CutBarrier cut = queueService.getCutBarrier();
+        origin = System.nanoTime();
+
+        // machines may already have products waiting from a previous run
+        cut.enter();
+        try {
+            topologyVersion = topology.get().getVersion();
+            syncSources();
+            startIdleMachines();
+        } finally {
+            cut.exit();
+        }
+
+        try {
+            // fast-forward ends when nothing is left to happen; a live line with an
+            // empty calendar (no sources yet, or drained) waits to be rewired
+            while (running && (isLive() || !calendar.isEmpty())) {
+                if (calendar.isEmpty()) {
+                    Thread.sleep(IDLE_POLL_MS);
+                    cut.enter();
+                    try {
+                        if (topology.get().getVersion() != topologyVersion) {
+                            topologyChanged();
+                        }
+                        startIdleMachines(); // products may have been put into an input by hand
+                    } finally {
+                        cut.exit();
+                    }
+                    continue;
+                }
+                Event event = calendar.peek();
+                if (event.time() > horizon) {
+                    clock = horizon;
+                    break;
+                }
+                if (isLive()) {
+                    // wall-clock pacing: virtual ms / speed = real ms
+                    long wait = (long) ((event.time() - clock) / speed);
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                    if (!running) {
+                        break;
+                    }
+                }
+                cut.enter();
+                try {
+                    calendar.poll();
+                    clock = event.time();
+                    eventsProcessed++;
+
+                    switch (event.type()) {
+                        case ARRIVAL -> handleArrival(event.source());
+                        case SERVICE_COMPLETE -> {
+                            long endedAt = stampNow();
+                            for (Product product : event.products()) {
+                                event.machine().recordServiceEnd(product, endedAt);
+                                inService.remove(product);
+                            }
+                            handleServiceComplete(event.machine(), event.products());
+                        }
+                        case BATCH_TIMEOUT -> handleBatchTimeout(event.machine(), event.time());
+                    }
+                    if (topology.get().getVersion() != topologyVersion) {
+                        topologyChanged();
+                    }
+                } finally {
+                    cut.exit();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        cut.enter();
+        try {
+            releaseHeld();
+            if (!isLive()) {
+                rebaseStamps();
+            }
+        } finally {
+            cut.exit();
+        }
+
+        log.info("Discrete-event engine stopped at virtual time {} ms after {} events", clock, eventsProcessed);
+    }
+
+    /// rewired or resized while running; new inputs may already hold products
+    /// and blocked producers may have somewhere to go
+    private void topologyChanged() {
+        topologyVersion = topology.get().getVersion();
+        syncSources();
+        retryBlocked();
+        startIdleMachines();
+    }
+
+    /// nothing may vanish with the engine when a run ends (horizon or stop):
+    /// products in service go back to the head of the input they were taken
+    /// from, earliest in front; finished products blocked on a full queue,
+    /// and arrivals held at a full source, are let into that queue over its
+    /// capacity. Every machine is left with idle servers holding nothing
+    private void releaseHeld() {
+        List<Map.Entry<Product, Taken>> unfinished = new ArrayList<>(inService.entrySet());
+        unfinished.sort(Comparator.comparingLong((Map.Entry<Product, Taken> entry) -> entry.getValue().order())
+                .reversed());
+        for (Map.Entry<Product, Taken> entry : unfinished) {
+            Queue from = entry.getValue().from();
+            if (isLive()) {
+                queueService.returnProductsToQueue(from, List.of(entry.getKey()));
+            } else {
+                from.returnToHead(List.of(entry.getKey()));
+            }
+        }
+        inService.clear();
+        calendar.clear();
+
+        for (Map.Entry<String, ArrayDeque<Blocked>> entry : blockedOn.entrySet()) {
+            Queue queue = state.getQueue(entry.getKey());
+            for (Blocked blocked : entry.getValue()) {
+                if (queue == null) {
+                    // the queue was deleted: a machine's products count as unrouted,
+                    // an arrival at a deleted source is gone with it
+                    if (blocked.machine() != null) {
+                        poolOf(blocked.machine()).unrouted(blocked.products());
+                    }
+                    continue;
+                }
+                for (Product product : blocked.products()) {
+                    if (isLive()) {
+                        queueService.addProductToQueue(queue, product);
+                    } else {
+                        queue.enqueue(product, virtualNanos());
+                    }
+                }
+            }
+        }
+        blockedOn.clear();
+
+        for (ServerPool pool : pools.values()) {
+            pool.reset();
+        }
+    }
+
+    private void startIdleMachines() {
+        for (Machine machine : state.getMachines()) {
+            while (tryStartService(machine)) {
+                // one start per idle server
+            }
+        }
+    }
+
+    private boolean isLive() {
+        return speed > 0;
+    }
+
+    private void schedule(long delay, EventType type, Machine machine, List<Product> products) {
+        calendar.add(new Event(clock + delay, seq++, type, machine, null, products));
+    }
+
+    private void scheduleArrival(InputGenerator generator) {
+        calendar.add(new Event(clock + generator.nextDelay(), seq++, EventType.ARRIVAL, null, generator, null));
+    }
+
+    /// start an arrival process for every new source, forget removed ones
+    /// (their pending arrivals are then ignored)
+    private void syncSources() {
+        Map<String, InputGenerator> previous = new HashMap<>(generators);
+        generators.clear();
+        for (Queue source : topology.get().sources()) {
+            InputGenerator generator = previous.get(source.getId());
+            if (generator == null || generator.getTargetQueue() != source) {
+                generator = new InputGenerator(source, queueService, state);
+                generators.put(source.getId(), generator);
+                scheduleArrival(generator);
+            } else {
+                generators.put(source.getId(), generator);
+            }
+        }
+    }
+
+    private void handleArrival(InputGenerator generator) {
+        Queue sourceQueue = generator.getTargetQueue();
+        if (generators.get(sourceQueue.getId()) != generator) {
+            return; // no longer a source
+        }
+        Product product = generator.nextProduct(stampNow());
+        if (!offer(sourceQueue, product)) {
+            if (QueueOverflow.of(sourceQueue) == QueueOverflow.DROP) {
+                drop(sourceQueue, product);
+            } else {
+                // the source is full: arrivals pause until a machine takes from it
+                block(sourceQueue, new Blocked(null, List.of(product)));
+                return;
+            }
+        }
+        scheduleArrival(generator);
+    }
+
+    /// route each product of the finished batch on its own
+    private void handleServiceComplete(Machine machine, List<Product> products) {
+        RoutingTopology routes = topology.get();
+        Queue[] outputs = routes.outputsOf(machine.getId());
+        if (outputs.length == 0) {
+            poolOf(machine).unrouted(products);
+        } else {
+            int[] weights = routes.outputWeightsOf(machine.getId());
+            for (int i = 0; i < products.size(); i++) {
+                Queue target = routerOf(machine).select(outputs, weights);
+                if (deliver(target, outputs, products.get(i))) {
+                    poolOf(machine).handedOn(products.get(i));
+                } else {
+                    // stays occupied, and so takes no input, until the target drains
+                    block(target, new Blocked(machine, List.copyOf(products.subList(i, products.size()))));
+                    poolOf(machine).blocked();
+                    if (isLive()) {
+                        simulationService.broadcastMachineUpdate(machine);
+                    }
+                    return;
+                }
+            }
+        }
+        finishService(machine);
+    }
+
+    /// a partial batch waited long enough, start it with what is there
+    private void handleBatchTimeout(Machine machine, long deadline) {
+        if (batchDeadlines.remove(machine.getId(), deadline)) {
+            tryStartService(machine, true);
+        }
+    }
+
+    private void finishService(Machine machine) {
+        poolOf(machine).finished();
+        if (isLive()) {
+            simulationService.broadcastMachineUpdate(machine);
+        }
+        tryStartService(machine);
+    }
+
+    private ServerPool poolOf(Machine machine) {
+        return pools.computeIfAbsent(machine.getId(), id -> new ServerPool(machine));
+    }
+
+    private RoutingStrategy routerOf(Machine machine) {
+        RoutingStrategyType type = RoutingStrategyType.fromName(machine.getRoutingStrategy());
+        return routers.computeIfAbsent(machine.getId() + "/" + type, key -> type.create());
+    }
+
+    /// fixed processingTime, or a draw from the machine's distribution
+    private long processingTimeOf(Machine machine) {
+        TimeDistribution distribution = machine.getProcessingTimeDistribution();
+        if (distribution == null) {
+            return machine.getProcessingTime();
+        }
+        TimeSampler sampler = samplers.get(machine.getId());
+        if (sampler == null || sampler.getDistribution() != distribution) {
+            sampler = new TimeSampler(distribution, TimeSampler.random(state.getRandomSeed(), machine.getId()));
+            samplers.put(machine.getId(), sampler);
+        }
+        return sampler.next();
+    }
+
+    private InputPolicy inputPolicyOf(Machine machine) {
+        InputPolicyType type = InputPolicyType.fromName(machine.getInputPolicy());
+        return inputPolicies.computeIfAbsent(machine.getId() + "/" + type, key -> type.create());
+    }
+
+    /// virtual clock as a queue timestamp on System.nanoTime()'s origin; +1 ms
+    /// keeps a run that starts at a 0 nanoTime clear of the "unknown" stamp
+    private long virtualNanos() {
+        return origin + (clock + 1) * 1_000_000;
+    }
+
+    /// virtual time ran ahead of the wall clock: shift the stamps of the
+    /// products still queued so they keep their age but read against
+    /// System.nanoTime() now, and a live run after this one measures their
+    /// wait and system time correctly (sink throughput spans likewise)
+    private void rebaseStamps() {
+        long shift = System.nanoTime() - virtualNanos();
+        for (Queue queue : state.getQueues()) {
+            queue.shiftCompletionTimes(shift);
+            for (Product product : queue.getProducts()) {
+                if (product.getEnqueuedAt() != 0) {
+                    product.setEnqueuedAt(product.getEnqueuedAt() + shift);
+                }
+                if (product.getCreatedAt() != 0) {
+                    product.setCreatedAt(product.getCreatedAt() + shift);
+                }
+            }
+        }
+    }
+
+    /// lifecycle stamp on the clock the queues use: the wall clock when live
+    /// (the queue service stamps with it), else the virtual clock
+    private long stampNow() {
+        return isLive() ? System.nanoTime() : virtualNanos();
+    }
+
+    /// offer to the target, applying its overflow policy if full; false means
+    /// the product has to wait for room in the target
+    private boolean deliver(Queue target, Queue[] outputs, Product product) {
+        if (offer(target, product)) {
+            return true;
+        }
+        QueueOverflow overflow = QueueOverflow.of(target);
+        if (overflow == QueueOverflow.DROP) {
+            drop(target, product);
+            return true;
+        }
+        if (overflow == QueueOverflow.REROUTE) {
+            for (Queue alternative : outputs) {
+                if (alternative != target && offer(alternative, product)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /// enqueue a product unless the queue is full and hand it to the first
+    /// idle consumer of that queue
+    private boolean offer(Queue queue, Product product) {
+        boolean added = isLive() ? queueService.offerProductToQueue(queue, product)
+                : queue.offer(product, virtualNanos());
+        if (!added) {
+            return false;
+        }
+        for (Machine consumer : topology.get().consumersOf(queue.getId())) {
+            if (tryStartService(consumer)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void drop(Queue queue, Product product) {
+        if (isLive()) {
+            queueService.dropProduct(queue, product);
+        } else {
+            queue.recordDrop();
+        }
+    }
+
+    private void block(Queue queue, Blocked blocked) {
+        blockedOn.computeIfAbsent(queue.getId(), id -> new ArrayDeque<>()).add(blocked);
+    }
+
+    /// a slot opened in the queue, let the longest-blocked producers in
+    private void releaseBlocked(Queue queue) {
+        ArrayDeque<Blocked> waiting = blockedOn.get(queue.getId());
+        while (waiting != null && !waiting.isEmpty() && !queue.isFull()) {
+            Blocked blocked = waiting.poll();
+            List<Product> products = blocked.products();
+            offer(queue, products.get(0));
+            if (blocked.machine() == null) {
+                InputGenerator generator = generators.get(queue.getId());
+                if (generator != null) {
+                    scheduleArrival(generator);
+                }
+            } else {
+                // the rest of the batch is routed afresh and may block again
+                poolOf(blocked.machine()).handedOn(products.get(0));
+                poolOf(blocked.machine()).unblocked();
+                handleServiceComplete(blocked.machine(), products.subList(1, products.size()));
+            }
+        }
+        if (waiting != null && waiting.isEmpty()) {
+            // offer() above can re-enter and replace the deque, only drop this one
+            blockedOn.remove(queue.getId(), waiting);
+        }
+    }
+
+    /// after a rewire or capacity change: release into queues that now have
+    /// room, re-route products blocked on queues that were deleted
+    private void retryBlocked() {
+        for (String queueId : new ArrayList<>(blockedOn.keySet())) {
+            Queue queue = state.getQueue(queueId);
+            if (queue != null) {
+                releaseBlocked(queue);
+                continue;
+            }
+            for (Blocked blocked : blockedOn.remove(queueId)) {
+                if (blocked.machine() != null) {
+                    poolOf(blocked.machine()).unblocked();
+                    handleServiceComplete(blocked.machine(), blocked.products());
+                }
+                // an arrival held at a deleted source is lost, the source is gone
+            }
+        }
+    }
+
+    /// start serving the next available product if the machine has an idle server,
+    /// returns true if service started
+    private boolean tryStartService(Machine machine) {
+        return tryStartService(machine, false);
+    }
+
+    /// start a server if the machine has an idle one - one product, or for a batch
+    /// machine up to batchSize; a partial batch waits for its batch timeout
+    /// unless timedOut. Returns true if service started
+    private boolean tryStartService(Machine machine, boolean timedOut) {
+        if (!poolOf(machine).hasIdleServer()) {
+            return false;
+        }
+        int batchSize = Math.max(1, machine.getBatchSize());
+        if (batchSize > 1 && machine.getBatchTimeoutMs() > 0 && !timedOut) {
+            int available = available(machine);
+            if (available == 0) {
+                return false;
+            }
+            if (available < batchSize) {
+                if (!batchDeadlines.containsKey(machine.getId())) {
+                    batchDeadlines.put(machine.getId(), clock + machine.getBatchTimeoutMs());
+                    schedule(machine.getBatchTimeoutMs(), EventType.BATCH_TIMEOUT, machine, null);
+                }
+                return false;
+            }
+        }
+        // single-threaded, so the chosen non-empty queues still hold the products
+        List<Product> batch = new ArrayList<>(batchSize);
+        List<Queue> takenFrom = new ArrayList<>();
+        while (batch.size() < batchSize) {
+            Queue from = nextInput(machine);
+            int before = batch.size();
+            if (from == null || take(from, batchSize - batch.size(), batch) == 0) {
+                break;
+            }
+            takenFrom.add(from);
+            for (Product product : batch.subList(before, batch.size())) {
+                inService.put(product, new Taken(from, takes++));
+            }
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        batchDeadlines.remove(machine.getId());
+        poolOf(machine).took(batch);
+        poolOf(machine).started(batch.get(0).getColor(), batch.size());
+        long startedAt = stampNow();
+        for (Product product : batch) {
+            machine.recordServiceStart(product, startedAt);
+        }
+        if (isLive()) {
+            simulationService.broadcastMachineUpdate(machine);
+            simulationService.broadcastMachineFlash(machine.getId());
+        }
+        schedule(processingTimeOf(machine), EventType.SERVICE_COMPLETE, machine, batch);
+        // only now, with this server marked busy, may a released producer
+        // trigger further starts
+        for (Queue from : takenFrom) {
+            releaseBlocked(from);
+        }
+        return true;
+    }
+
+    /// move up to max products from the queue into the batch
+    private int take(Queue from, int max, List<Product> batch) {
+        if (max == 1) {
+            Product product = isLive() ? queueService.removeProductFromQueue(from) : from.dequeue(virtualNanos());
+            if (product == null) {
+                return 0;
+            }
+            batch.add(product);
+            return 1;
+        }
+        return isLive() ? queueService.removeProductsFromQueue(from, max, batch)
+                : from.drainTo(batch, max, virtualNanos());
+    }
+
+    /// products waiting in all inputs of a machine
+    private int available(Machine machine) {
+        int available = 0;
+        for (Queue input : topology.get().inputsOf(machine.getId())) {
+            available += input.getProductCount();
+        }
+        return available;
+    }
+
+    private Queue nextInput(Machine machine) {
+        RoutingTopology routes = topology.get();
+        Queue[] inputs = routes.inputsOf(machine.getId());
+        int chosen = inputPolicyOf(machine).select(inputs, routes.inputWeightsOf(machine.getId()));
+        return chosen < 0 ? null : inputs[chosen];
+    }
+}
@@ -0,0 +1,269 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.LatencyReport;
+import com.producesconsumer.backend.dto.QueueSummary;
+import com.producesconsumer.backend.dto.StateDelta;
+import com.producesconsumer.backend.dto.StateSync;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SSE;
+import com.producesconsumer.backend.model.SimulationState;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalescing stage in front of EventService - changes are collected per
+ * entity and flushed once per frame as a BATCH holding one STATE_DELTA
+ * (only what changed since the previous delta, never the products) plus
+ * any machine flashes, and while running a LATENCY_SUMMARY every so often.
+ * Clients start from a STATE_SNAPSHOT and resync via the snapshot when they
+ * detect a gap in the delta sequence
+ */
+@Service
+@Slf4j
+public class EventBroadcaster {
+
+    private final EventService eventService;
+    private final ScheduledExecutorService ticker;
+
+    // pending changes, written by any thread
+    private volatile SimulationState state;
+    private final AtomicBoolean structureDirty = new AtomicBoolean();
+    private final Map<String, Machine> dirtyMachines = new ConcurrentHashMap<>();
+    private final Map<String, Queue> dirtyQueues = new ConcurrentHashMap<>();
+    private final Set<String> pendingFlashes = ConcurrentHashMap.newKeySet();
+
+    // what clients have seen so far, only touched under the monitor
+    private long seq = 0;
+    private final Map<String, QueueSummary> publishedQueues = new HashMap<>();
+    private final Map<String, Machine> publishedMachines = new HashMap<>();
+    private final Map<String, Connection> publishedConnections = new HashMap<>();
+    private boolean publishedRunning;
+    private int publishedTotal;
+    private final long latencySummaryNanos; // 0 = never
+    private long lastLatencySummary;
+
+    public EventBroadcaster(EventService eventService,
+            @Value("${simulation.broadcast.max-hz:30}") int maxHz,
+            @Value("${simulation.broadcast.latency-summary-ms:1000}") long latencySummaryMs) {
+        this.eventService = eventService;
+        this.latencySummaryNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencySummaryMs));
+        this.lastLatencySummary = System.nanoTime();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sse-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMs = Math.max(1, 1000 / Math.max(1, maxHz));
+        ticker.scheduleAtFixedRate(this::flush, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        log.info("SSE broadcaster flushing every {} ms", periodMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /// state structure may have changed (add/delete, drag, start/stop, snapshot load...)
+    /// the next frame diffs every entity
+    public void publishState(SimulationState state) {
+        this.state = state;
+        structureDirty.set(true);
+    }
+
+    /// machine state/color changed, only the latest per machine is kept
+    public void publishMachine(Machine machine) {
+        dirtyMachines.put(machine.getId(), machine);
+    }
+
+    /// machine started on a product
+    public void publishFlash(String machineId) {
+        pendingFlashes.add(machineId);
+    }
+
+    /// queue contents changed, only the latest per queue is kept
+    public void publishQueue(Queue queue) {
+        dirtyQueues.put(queue.getId(), queue);
+    }
+
+    /// full state tagged with the last delta sequence, sent on connect and on resync
+    /// (the state may already include later changes; deltas carry absolute values
+    /// so re-applying them is harmless). Before anything was published the
+    /// live state is adopted, so a client never syncs to an empty canvas
+    public synchronized StateSync snapshot(SimulationState live) {
+        if (state == null) {
+            publishState(live); // the next frame diffs it
+        }
+        StateSync sync = new StateSync();
+        sync.setSeq(seq);
+        sync.setState(state);
+        return sync;
+    }
+
+    /// drain everything collected since the last frame into one BATCH event
+    synchronized void flush() {
+        try {
+            List<SSE> frame = new ArrayList<>();
+
+            StateDelta delta = buildDelta();
+            if (delta != null) {
+                delta.setSeq(++seq);
+                frame.add(new SSE("STATE_DELTA", delta));
+            }
+            for (String machineId : pendingFlashes) {
+                pendingFlashes.remove(machineId);
+                frame.add(new SSE("MACHINE_FLASH", machineId));
+            }
+            SSE latency = latencySummary();
+            if (latency != null) {
+                frame.add(latency);
+            }
+
+            if (!frame.isEmpty()) {
+                eventService.publishEvent(new SSE("BATCH", frame));
+            }
+        } catch (Exception e) {
+            // e.g. the state lists were edited mid-diff; retry everything next frame
+            structureDirty.set(true);
+            log.error("Error flushing SSE frame: {}", e.getMessage(), e);
+        }
+    }
+
+    /// latency percentiles, at most once per summary period and only while running
+    private SSE latencySummary() {
+        SimulationState current = state;
+        long now = System.nanoTime();
+        if (latencySummaryNanos == 0 || current == null || !current.isRunning()
+                || now - lastLatencySummary < latencySummaryNanos) {
+            return null;
+        }
+        lastLatencySummary = now;
+        return new SSE("LATENCY_SUMMARY", LatencyReport.of(current));
+    }
+
+    private StateDelta buildDelta() {
+        SimulationState current = state;
+        if (current == null) {
+            return null;
+        }
+        StateDelta delta = new StateDelta();
+
+        if (structureDirty.getAndSet(false)) {
+            // full diff, a per-entity update is covered by it
+            dirtyMachines.clear();
+            dirtyQueues.clear();
+            diffQueues(current.getQueues(), delta);
+            diffMachines(current.getMachines(), delta);
+            diffConnections(current.getConnections(), delta);
+        } else {
+            // entities not published yet are new or already deleted, the
+            // structure diff that accompanies those edits covers them
+            drain(dirtyQueues).stream()
+                    .filter(queue -> publishedQueues.containsKey(queue.getId()))
+                    .forEach(queue -> diffQueue(queue, delta));
+            drain(dirtyMachines).stream()
+                    .filter(machine -> publishedMachines.containsKey(machine.getId()))
+                    .forEach(machine -> diffMachine(machine, delta));
+        }
+
+        boolean countersChanged = current.isRunning() != publishedRunning
+                || current.getTotalProductsGenerated() != publishedTotal;
+        if (!delta.hasEntityChanges() && !countersChanged) {
+            return null;
+        }
+        publishedRunning = current.isRunning();
+        publishedTotal = current.getTotalProductsGenerated();
+        delta.setRunning(publishedRunning);
+        delta.setTotalProductsGenerated(publishedTotal);
+        return delta;
+    }
+
+    private void diffQueues(Collection<Queue> queues, StateDelta delta) {
+        Set<String> live = new HashSet<>();
+        for (Queue queue : queues) {
+            live.add(queue.getId());
+            diffQueue(queue, delta);
+        }
+        publishedQueues.keySet().removeIf(id -> {
+            boolean removed = !live.contains(id);
+            if (removed) {
+                delta.getRemovedQueueIds().add(id);
+            }
+            return removed;
+        });
+    }
+
+    private void diffQueue(Queue queue, StateDelta delta) {
+        QueueSummary summary = QueueSummary.of(queue);
+        if (!summary.equals(publishedQueues.put(queue.getId(), summary))) {
+            delta.getQueues().add(summary);
+        }
+    }
+
+    private void diffMachines(Collection<Machine> machines, StateDelta delta) {
+        Set<String> live = new HashSet<>();
+        for (Machine machine : machines) {
+            live.add(machine.getId());
+            diffMachine(machine, delta);
+        }
+        publishedMachines.keySet().removeIf(id -> {
+            boolean removed = !live.contains(id);
+            if (removed) {
+                delta.getRemovedMachineIds().add(id);
+            }
+            return removed;
+        });
+    }
+
+    private void diffMachine(Machine machine, StateDelta delta) {
+        Machine copy = SimulationState.deepCopyMachine(machine);
+        if (!copy.equals(publishedMachines.put(machine.getId(), copy))) {
+            delta.getMachines().add(copy);
+        }
+    }
+
+    private void diffConnections(Collection<Connection> connections, StateDelta delta) {
+        Set<String> live = new HashSet<>();
+        for (Connection connection : connections) {
+            live.add(connection.getId());
+            Connection copy = SimulationState.deepCopyConnection(connection);
+            if (!copy.equals(publishedConnections.put(connection.getId(), copy))) {
+                delta.getConnections().add(copy); // new or re-weighted
+            }
+        }
+        publishedConnections.keySet().removeIf(id -> {
+            boolean removed = !live.contains(id);
+            if (removed) {
+                delta.getRemovedConnectionIds().add(id);
+            }
+            return removed;
+        });
+    }
+
+    private static <T> List<T> drain(Map<String, T> pending) {
+        List<T> drained = new ArrayList<>();
+        for (Map.Entry<String, T> entry : pending.entrySet()) {
+            // remove only if not replaced meanwhile, a newer value goes out next frame
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                drained.add(entry.getValue());
+            }
+        }
+        return drained;
+    }
+}
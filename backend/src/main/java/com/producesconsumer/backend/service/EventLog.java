@@ -0,0 +1,298 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.Transition;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of queue and machine transitions in memory-mapped segment
+ * files. Appending never locks: a writer reserves its bytes with one atomic
+ * add on the tail, fills them in and publishes the record by writing its
+ * length last, so readers stop at a record still being written. A record
+ * never spans segments - the writer that runs over a segment's end pads
+ * both sides and reserves again. Replay always reads on from a checkpoint's
+ * position, since queue entries are relative. Only the newest max-segments
+ * segments are kept, checkpoints or not; checkpoints drop older ones sooner.
+ * Positions only grow, across restarts too, so a checkpoint can name where
+ * the log continues from it
+ */
+@Service
+@Slf4j
+public class EventLog {
+
+    private static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final String EXTENSION = ".log";
+    // length, type, 3 spare, time; records are 8-byte aligned so the length stays atomic
+    private static final int HEADER = 16;
+    private static final byte PAD = 0;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong lastTime = new AtomicLong(-1);
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    public EventLog(@Value("${simulation.eventlog.dir:eventlog}") String dir,
+            @Value("${simulation.eventlog.segment-mb:64}") int segmentMb,
+            @Value("${simulation.eventlog.max-segments:16}") int maxSegments) {
+        this.dir = Path.of(dir);
+        this.segmentBytes = Math.max(1, segmentMb) << 20;
+        this.maxSegments = Math.max(2, maxSegments); // the one being written and the one before
+        recover();
+    }
+
+    /// flush the mapped pages, a crash of the process alone loses nothing anyway
+    @PreDestroy
+    public void shutdown() {
+        segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    /// where the next record goes
+    public long position() {
+        return tail.get();
+    }
+
+    /// position of the oldest record still kept
+    public long start() {
+        return segments.keySet().stream().min(Long::compare).orElse(tail.get() / segmentBytes) * segmentBytes;
+    }
+
+    /// latest time logged, -1 while nothing is
+    public long lastTime() {
+        return lastTime.get();
+    }
+
+    public void append(Transition transition) {
+        byte[] id = bytesOf(transition.id());
+        byte[] productId = bytesOf(transition.productId());
+        byte[] color = bytesOf(transition.color());
+        byte[] state = bytesOf(transition.state());
+        // four strings (short length + bytes each), then count, busy servers, batch size
+        int length = align(HEADER + 4 * 2 + sizeOf(id) + sizeOf(productId) + sizeOf(color) + sizeOf(state) + 3 * 4);
+
+        long position = reserve(length);
+        MappedByteBuffer segment = segment(position / segmentBytes);
+        int at = (int) (position % segmentBytes);
+        segment.put(at + 4, (byte) (transition.type().ordinal() + 1));
+        segment.putLong(at + 8, transition.time());
+        int field = at + HEADER;
+        field = putString(segment, field, id);
+        field = putString(segment, field, productId);
+        field = putString(segment, field, color);
+        field = putString(segment, field, state);
+        segment.putInt(field, transition.count());
+        segment.putInt(field + 4, transition.busyServers());
+        segment.putInt(field + 8, transition.batchSize());
+        LENGTH.setRelease(segment, at, length);
+        lastTime.accumulateAndGet(transition.time(), Math::max);
+    }
+
+    /// hand every complete record from the given position on to the visitor
+    /// until it returns false; returns the position to continue from (that of
+    /// the refused record, or the end of what is written so far)
+    public long read(long from, Predicate<Transition> visitor) {
+        long position = Math.max(from, start());
+        while (position < tail.get()) {
+            MappedByteBuffer segment = segments.get(position / segmentBytes);
+            if (segment == null) {
+                return position;
+            }
+            int at = (int) (position % segmentBytes);
+            int length = (int) LENGTH.getAcquire(segment, at);
+            if (length <= 0) {
+                return position; // still being written
+            }
+            byte type = segment.get(at + 4);
+            if (type != PAD && !visitor.test(decode(segment, at, position, type))) {
+                return position;
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    /// drop the segments wholly before the position, nothing will replay from there
+    public void discardBefore(long position) {
+        long first = position / segmentBytes;
+        for (Long number : List.copyOf(segments.keySet())) {
+            if (number < first) {
+                delete(number);
+            }
+        }
+    }
+
+    private void delete(long number) {
+        segments.remove(number);
+        try {
+            Files.deleteIfExists(fileOf(number));
+        } catch (IOException e) {
+            log.warn("Event log segment {} could not be deleted: {}", number, e.getMessage());
+        }
+    }
+
+    /// reserve length bytes inside one segment; a reservation that runs over
+    /// the end is padded out on both sides and tried again
+    private long reserve(int length) {
+        while (true) {
+            long position = tail.getAndAdd(length);
+            long end = (position / segmentBytes + 1) * segmentBytes;
+            if (position + length <= end) {
+                return position;
+            }
+            pad(position, (int) (end - position));
+            pad(end, (int) (position + length - end));
+        }
+    }
+
+    private void pad(long position, int length) {
+        MappedByteBuffer segment = segment(position / segmentBytes);
+        int at = (int) (position % segmentBytes);
+        segment.put(at + 4, PAD);
+        LENGTH.setRelease(segment, at, length);
+    }
+
+    private MappedByteBuffer segment(long number) {
+        MappedByteBuffer segment = segments.get(number);
+        if (segment == null) {
+            segment = segments.computeIfAbsent(number, this::map);
+            retain(number);
+        }
+        return segment;
+    }
+
+    /// keep the newest max-segments segments up to the given one
+    private void retain(long newest) {
+        if (segments.size() > maxSegments) {
+            discardBefore((newest - maxSegments + 1) * segmentBytes);
+        }
+    }
+
+    private MappedByteBuffer map(long number) {
+        try {
+            Files.createDirectories(dir);
+            try (RandomAccessFile file = new RandomAccessFile(fileOf(number).toFile(), "rw")) {
+                file.setLength(segmentBytes);
+                return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Event log segment " + number + " could not be mapped", e);
+        }
+    }
+
+    /// map the segments left by an earlier run and carry on after the last
+    /// complete record
+    private void recover() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Long> numbers;
+        try (Stream<Path> files = Files.list(dir)) {
+            numbers = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - EXTENSION.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException | NumberFormatException e) {
+            log.error("Event log in {} could not be listed: {}", dir, e.getMessage());
+            return;
+        }
+        if (numbers.isEmpty()) {
+            return;
+        }
+        numbers.forEach(number -> segments.computeIfAbsent(number, this::map));
+        long position = numbers.get(0) * segmentBytes;
+        long last = (numbers.get(numbers.size() - 1) + 1) * segmentBytes;
+        while (position < last) {
+            MappedByteBuffer segment = segments.get(position / segmentBytes);
+            int at = (int) (position % segmentBytes);
+            int length = segment == null ? 0 : (int) LENGTH.getAcquire(segment, at);
+            if (length <= 0) {
+                break;
+            }
+            if (segment.get(at + 4) != PAD) {
+                lastTime.accumulateAndGet(segment.getLong(at + 8), Math::max);
+            }
+            position += length;
+        }
+        // records written past a hole left by the crash, in this segment or
+        // the later ones, would otherwise show through to a reader before the
+        // new ones land on them
+        long current = position / segmentBytes;
+        MappedByteBuffer torn = segments.get(current);
+        if (torn != null) {
+            for (int at = (int) (position % segmentBytes); at < segmentBytes; at += 8) {
+                if (torn.getLong(at) != 0) {
+                    torn.putLong(at, 0);
+                }
+            }
+        }
+        numbers.stream().filter(number -> number > current).forEach(this::delete);
+        tail.set(position);
+        retain(current);
+        log.info("Event log recovered from {}, continuing at {}", dir, position);
+    }
+
+    private Transition decode(MappedByteBuffer segment, int at, long position, byte type) {
+        long time = segment.getLong(at + 8);
+        int field = at + HEADER;
+        String[] strings = new String[4];
+        for (int i = 0; i < strings.length; i++) {
+            short size = segment.getShort(field);
+            field += 2;
+            if (size >= 0) {
+                byte[] bytes = new byte[size];
+                segment.get(field, bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                field += size;
+            }
+        }
+        return new Transition(position, time, Transition.Type.values()[type - 1], strings[0], strings[1],
+                strings[2], segment.getInt(field), strings[3], segment.getInt(field + 4), segment.getInt(field + 8));
+    }
+
+    private static int putString(MappedByteBuffer segment, int at, byte[] bytes) {
+        segment.putShort(at, (short) (bytes == null ? -1 : bytes.length));
+        if (bytes == null) {
+            return at + 2;
+        }
+        segment.put(at + 2, bytes);
+        return at + 2 + bytes.length;
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private Path fileOf(long number) {
+        return dir.resolve(String.format("%010d", number) + EXTENSION);
+    }
+}
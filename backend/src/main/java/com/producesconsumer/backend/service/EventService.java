@@ -1,29 +1,143 @@
 package com.producesconsumer.backend.service;
 
+import com.producesconsumer.backend.dto.EventStreamStats;
 import com.producesconsumer.backend.model.SSE;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Event service for Server-Sent Events
+ * Every subscriber gets its own bounded buffer drained on its own worker, so a
+ * slow client only ever loses its own events and never stalls the publisher
+ * or the other clients
  */
 @Service
 @Slf4j
 public class EventService {
-    
-    private final Sinks.Many<SSE> eventSink = Sinks.many().multicast().onBackpressureBuffer();
 
+    /// what to do when a subscriber's buffer is full
+    public enum OverflowPolicy {
+        DROP_OLDEST, // discard the oldest buffered event
+        LATEST, // keep only the newest event; the client sees a delta gap and resyncs
+        DISCONNECT // terminate the subscriber, the browser reconnects and starts from a snapshot
+    }
+
+    // no warm-up buffering and no shared buffer: events are handed straight to
+    // the per-subscriber buffers below
+    private final Sinks.Many<SSE> eventSink = Sinks.many().multicast().directBestEffort();
+
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder disconnectedSubscribers = new LongAdder();
+
+    private final MeterRegistry meterRegistry;
+    private final Timer emitTimer;
+
+    public EventService(@Value("${simulation.sse.buffer-size:256}") int bufferSize,
+            @Value("${simulation.sse.overflow-policy:drop-oldest}") String overflowPolicy,
+            MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        this.meterRegistry = meterRegistry;
+        this.emitTimer = Timer.builder("simulation.sse.emit")
+                .description("Handing one event to every subscriber buffer")
+                .register(meterRegistry);
+        Gauge.builder("simulation.sse.subscribers", subscribers, AtomicInteger::get)
+                .description("Connected SSE clients")
+                .register(meterRegistry);
+        FunctionCounter.builder("simulation.sse.dropped", droppedEvents, LongAdder::sum)
+                .description("Events discarded from full subscriber buffers")
+                .register(meterRegistry);
+        FunctionCounter.builder("simulation.sse.disconnected", disconnectedSubscribers, LongAdder::sum)
+                .description("Subscribers cut off for falling behind")
+                .register(meterRegistry);
+    }
+
+    /// raw stream without per-subscriber buffering (in-process consumers)
     public Flux<SSE> getEventStream() {
         return eventSink.asFlux();
     }
 
-    public void publishEvent(SSE event) {
+    /// stream for one remote client: bounded buffer + overflow policy, delivered
+    /// on a virtual thread of its own so a blocking write never holds up the
+    /// publisher or another client
+    public Flux<SSE> subscribe() {
+        Flux<SSE> buffered = switch (overflowPolicy) {
+            case DROP_OLDEST -> eventSink.asFlux()
+                    .onBackpressureBuffer(bufferSize, dropped -> droppedEvents.increment(),
+                            BufferOverflowStrategy.DROP_OLDEST);
+            case LATEST -> eventSink.asFlux()
+                    .onBackpressureLatest()
+                    // the operator discards each event a newer one replaced
+                    .doOnDiscard(SSE.class, dropped -> droppedEvents.increment());
+            case DISCONNECT -> eventSink.asFlux()
+                    .onBackpressureBuffer(bufferSize, dropped -> droppedEvents.increment(),
+                            BufferOverflowStrategy.ERROR)
+                    .doOnError(e -> {
+                        disconnectedSubscribers.increment();
+                        log.warn("SSE subscriber too slow, disconnecting: {}", e.getMessage());
+                    });
+        };
+        return Flux.defer(() -> {
+            Scheduler worker = Schedulers.fromExecutorService(
+                    Executors.newSingleThreadExecutor(Thread.ofVirtual().name("sse-subscriber").factory()),
+                    "sse-subscriber");
+            return buffered
+                    .publishOn(worker, 1)
+                    .doOnSubscribe(s -> subscribers.incrementAndGet())
+                    .doFinally(signal -> {
+                        subscribers.decrementAndGet();
+                        worker.dispose();
+                    });
+        });
+    }
+
+    /// serialized so concurrent publishers never fail with FAIL_NON_SERIALIZED;
+    /// cheap since emitting only enqueues into the subscriber buffers
+    public synchronized void publishEvent(SSE event) {
+        long start = System.nanoTime();
         Sinks.EmitResult result = eventSink.tryEmitNext(event);
+        emitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         log.debug("SSE Event: {} - Result: {}", event.getType(), result);
+        if (result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            return; // nobody watching
+        }
         if (result.isFailure()) {
-            log.error("Failed to publish SSE event: {}", event.getType());
+            // rare, so the tagged counter is looked up only here
+            Counter.builder("simulation.sse.emit.failures")
+                    .tag("result", result.name())
+                    .register(meterRegistry)
+                    .increment();
+            log.error("Failed to publish SSE event: {} ({})", event.getType(), result);
         }
     }
+
+    public EventStreamStats getStats() {
+        EventStreamStats stats = new EventStreamStats();
+        stats.setSubscribers(subscribers.get());
+        stats.setDroppedEvents(droppedEvents.sum());
+        stats.setDisconnectedSubscribers(disconnectedSubscribers.sum());
+        stats.setOverflowPolicy(overflowPolicy.name());
+        stats.setBufferSize(bufferSize);
+        return stats;
+    }
 }
@@ -1,52 +1,105 @@
 package com.producesconsumer.backend.service;
 
+import com.producesconsumer.backend.model.CutBarrier;
 import com.producesconsumer.backend.model.Product;
 import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueOverflow;
 import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+import com.producesconsumer.backend.strategy.TimeSampler;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
+/**
+ * Arrival process of one source queue - products enter the line here at
+ * gaps drawn from the source's arrival distribution
+ */
 @Slf4j
 public class InputGenerator implements Runnable {
     private final Queue targetQueue;
     private final QueueService queueService;
     private final SimulationState state; // Reference to update total count
     private volatile boolean running = true;
-    private final Random random = new Random();
+    // products come every 2-2.5 second (faster than machines can process)
+    private static final TimeDistribution DEFAULT_ARRIVALS = TimeDistribution.uniform(2000, 2500);
+    private final RandomGenerator random;
+    private TimeSampler sampler;
+    private final TaskThread thread = new TaskThread();
 
     public InputGenerator(Queue targetQueue, QueueService queueService, SimulationState state) {
         this.targetQueue = targetQueue;
         this.queueService = queueService;
         this.state = state;
+        this.random = TimeSampler.random(state.getRandomSeed(), "arrivals/" + targetQueue.getId());
+    }
+
+    public Queue getTargetQueue() {
+        return targetQueue;
     }
 
     public void stop() {
         running = false;
+        thread.interrupt(); // out of the gap before the next arrival
+    }
+
+    /// after stop: true once the generator has let in the arrival it held
+    /// and left its loop
+    public boolean awaitStopped(long timeoutMs) {
+        return thread.awaitExit(timeoutMs);
     }
 
     @Override
     public void run() {
+        thread.enter();
+        try {
+            generate();
+        } finally {
+            thread.exit();
+        }
+    }
+
+    private void generate() {
+        Product held = null; // an arrival waiting for room in a full source
         while (running && !Thread.currentThread().isInterrupted()) {
             try {
-                // Generate products every 2-2.5 second (faster than machines can process)
-                int delay = 2000 + random.nextInt(500);
-                Thread.sleep(delay);
+                Thread.sleep(nextDelay());
 
                 if (!running)
                     break;
 
-                // Product random creation
-                Product product = new Product();
-                product.setId("PROD-" + System.nanoTime());
-                product.setColor(getNextColor());
-
-                // Increment total products generated counter BEFORE adding to queue
-                // so that any SSE events have the updated count
-                state.setTotalProductsGenerated(state.getTotalProductsGenerated() + 1);
-
-                // Put product in target queue (this publishes QUEUE_EVENT)
-                queueService.addProductToQueue(targetQueue, product);
+                // an arrival counts as generated in the same cut section that puts
+                // it into the source (or drops it there), so a snapshot never sees
+                // the count without the product. A full bounded source holds the
+                // generator, and the arrival with it, until a machine takes from it
+                // (nowhere to reroute to); every retry is a cut section of its own
+                Product product = newProduct(System.nanoTime());
+                held = product;
+                CutBarrier cut = queueService.getCutBarrier();
+                boolean landed = false;
+                while (!landed && running) {
+                    cut.enter();
+                    try {
+                        // Put product in target queue (this publishes QUEUE_EVENT)
+                        if (queueService.offerProductToQueue(targetQueue, product)) {
+                            countGenerated();
+                            landed = true;
+                        } else if (QueueOverflow.of(targetQueue) == QueueOverflow.DROP) {
+                            countGenerated();
+                            queueService.dropProduct(targetQueue, product);
+                            landed = true;
+                        }
+                    } finally {
+                        cut.exit();
+                    }
+                    if (!landed) {
+                        queueService.awaitSpace(targetQueue, 250);
+                    }
+                }
+                if (!landed) {
+                    break;
+                }
+                held = null;
 
                 log.info("Generated Product {} into Queue {} (Total: {})",
                         product.getId(), targetQueue.getId(), state.getTotalProductsGenerated());
@@ -56,7 +109,65 @@ public class InputGenerator implements Runnable {
                 break;
             }
         }
-        log.info("InputGenerator Stopped");
+        if (held != null) {
+            admit(held);
+        }
+        log.info("InputGenerator for {} stopped", targetQueue.getId());
+    }
+
+    /// stopped while holding an arrival for a full source: it is let in over
+    /// the source's capacity, as the discrete engine does at its horizon, so
+    /// it is neither lost nor left uncounted
+    private void admit(Product product) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            queueService.addProductToQueue(targetQueue, product);
+            countGenerated();
+        } finally {
+            cut.exit();
+        }
+        log.info("Arrival {} held at full source {} let in on stop", product.getId(), targetQueue.getId());
+    }
+
+    /// delay before the next arrival in ms, drawn from the source's own
+    /// distribution, else the simulation-wide one (a change takes effect from
+    /// the next arrival)
+    public long nextDelay() {
+        TimeDistribution distribution = arrivalDistributionOf(targetQueue, state);
+        if (sampler == null || sampler.getDistribution() != distribution) {
+            sampler = new TimeSampler(distribution, random);
+        }
+        return sampler.next();
+    }
+
+    /// arrival distribution in effect for a source
+    public static TimeDistribution arrivalDistributionOf(Queue source, SimulationState state) {
+        if (source.getArrivalDistribution() != null) {
+            return source.getArrivalDistribution();
+        }
+        return state.getArrivalDistribution() != null ? state.getArrivalDistribution() : DEFAULT_ARRIVALS;
+    }
+
+    /// create the next product with a rotating color, born at the given time,
+    /// and count it for the source and the simulation
+    public Product nextProduct(long now) {
+        Product product = newProduct(now);
+        countGenerated();
+        return product;
+    }
+
+    private Product newProduct(long now) {
+        Product product = new Product();
+        product.setId("PROD-" + System.nanoTime());
+        product.setColor(getNextColor());
+        product.setCreatedAt(now);
+        return product;
+    }
+
+    private void countGenerated() {
+        targetQueue.recordGenerated();
+        state.countProductGenerated();
     }
 
     // 10 predefined visible colors
@@ -1,32 +1,44 @@
 package com.producesconsumer.backend.service;
 
 import com.producesconsumer.backend.model.Machine;
-import com.producesconsumer.backend.model.Product;
-import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.strategy.TimeSampler;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * Machine processing service - single responsibility: Machine thread execution
  * and processing logic
  */
+@Slf4j
 @Service
 public class MachineProcessingService {
 
+    // how long stopAll waits for a runner to leave its loop
+    private static final long STOP_TIMEOUT_MS = 5000;
+
     private final ExecutorService executorService;
-    private final Map<String, Future<?>> activeRunners = new ConcurrentHashMap<>(); // handles multiple threads
-    private final Map<String, MachineRunner> runnerObjects = new ConcurrentHashMap<>(); // handles multiple threads
-                                                                                        // accessing it at the same time
+    // one runner per server of a machine, keyed by machine id
+    private final Map<String, List<Server>> servers = new ConcurrentHashMap<>(); // handles multiple threads
+                                                                                // accessing it at the same time
+    private final Map<String, Supplier<RoutingTopology>> topologies = new ConcurrentHashMap<>();
+    // servers a resize took away, still finishing the product in hand
+    private final List<MachineRunner> retired = new CopyOnWriteArrayList<>();
 
     private final QueueService queueService;
     private final SimulationService simulationService;
 
+    private record Server(MachineRunner runner) {
+    }
+
     public MachineProcessingService(ExecutorService executorService,
             QueueService queueService,
             @Lazy SimulationService simulationService) {
@@ -36,40 +48,92 @@ public class MachineProcessingService {
     }
 
     /**
-     * Start processing on a machine (runs in separate thread)
+     * Start processing on a machine - one runner per server, all sharing the
+     * machine's inputs - routed by whatever topology the supplier returns at
+     * the time
      */
-    public void startProcessing(Machine machine, List<Queue> inputs, List<Queue> outputs) {
-        if (activeRunners.containsKey(machine.getId())) {
+    public synchronized void startProcessing(Machine machine, Supplier<RoutingTopology> topology) {
+        if (servers.containsKey(machine.getId())) {
             return;
         }
-        MachineRunner runner = new MachineRunner(
-                machine, inputs, outputs, queueService, simulationService);
-        runnerObjects.put(machine.getId(), runner);
-        Future<?> future = executorService.submit(runner);
-        activeRunners.put(machine.getId(), future);
+        ServerPool pool = new ServerPool(machine);
+        // copy-on-write so topologyChanged can iterate while a resize edits it
+        List<Server> started = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < ServerPool.serversOf(machine); i++) {
+            started.add(startServer(machine, pool, topology, i));
+        }
+        servers.put(machine.getId(), started);
+        topologies.put(machine.getId(), topology);
     }
 
     /**
-     * Stop processing on a machine
+     * Match a running machine's runners to its server count; removed servers
+     * finish the product in hand before they exit
      */
-    public void stopProcessing(Machine machine) {
-        Future<?> future = activeRunners.remove(machine.getId());
-        if (future != null) {
-            future.cancel(true);
+    public synchronized void resize(Machine machine) {
+        List<Server> running = servers.get(machine.getId());
+        if (running == null || running.isEmpty()) {
+            return;
         }
-        MachineRunner runner = runnerObjects.remove(machine.getId());
-        if (runner != null) {
-            runner.stop();
+        int target = ServerPool.serversOf(machine);
+        ServerPool pool = running.get(0).runner().getPool();
+        while (running.size() < target) {
+            running.add(startServer(machine, pool, topologies.get(machine.getId()), running.size()));
         }
+        retired.removeIf(runner -> runner.awaitStopped(0));
+        while (running.size() > target) {
+            MachineRunner runner = running.remove(running.size() - 1).runner();
+            runner.retire();
+            retired.add(runner);
+        }
+    }
+
+    private Server startServer(Machine machine, ServerPool pool, Supplier<RoutingTopology> topology, int index) {
+        Long seed = simulationService != null ? simulationService.getState().getRandomSeed() : null;
+        MachineRunner runner = new MachineRunner(machine, pool, topology, queueService, simulationService,
+                TimeSampler.random(seed, machine.getId() + "#" + index));
+        executorService.submit(runner);
+        return new Server(runner);
     }
 
     /**
-     * Stop all machine processing
+     * Stop processing on a machine
+     */
+    public synchronized void stopProcessing(Machine machine) {
+        topologies.remove(machine.getId());
+        List<Server> stopped = servers.remove(machine.getId());
+        if (stopped != null) {
+            stopped.forEach(MachineProcessingService::stop);
+        }
+    }
+
+    /**
+     * Let every runner re-read its routes after a topology swap
+     */
+    public void topologyChanged() {
+        servers.values().forEach(list -> list.forEach(server -> server.runner().topologyChanged()));
+    }
+
+    /**
+     * Stop all machine processing and wait for every runner, retiring ones
+     * included, to leave its loop - only then is what a machine holds settled
      */
     public void stopAll() {
-        activeRunners.values().forEach(future -> future.cancel(true));
-        runnerObjects.values().forEach(MachineRunner::stop);
-        activeRunners.clear();
-        runnerObjects.clear();
+        List<MachineRunner> stopped = new ArrayList<>(retired);
+        synchronized (this) {
+            servers.values().forEach(list -> list.forEach(server -> stopped.add(server.runner())));
+            servers.clear();
+            topologies.clear();
+            retired.clear();
+        }
+        stopped.forEach(MachineRunner::stop);
+        long stuck = stopped.stream().filter(runner -> !runner.awaitStopped(STOP_TIMEOUT_MS)).count();
+        if (stuck > 0) {
+            log.warn("{} machine runners did not stop within {} ms", stuck, STOP_TIMEOUT_MS);
+        }
+    }
+
+    private static void stop(Server server) {
+        server.runner().stop();
     }
 }
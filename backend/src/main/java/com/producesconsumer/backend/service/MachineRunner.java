@@ -1,97 +1,197 @@
 package com.producesconsumer.backend.service;
 
+import com.producesconsumer.backend.model.CutBarrier;
 import com.producesconsumer.backend.model.Machine;
 import com.producesconsumer.backend.model.Product;
 import com.producesconsumer.backend.model.Queue;
-import com.producesconsumer.backend.observer.QueueObserver;
+import com.producesconsumer.backend.model.QueueOverflow;
+import com.producesconsumer.backend.model.TimeDistribution;
+import com.producesconsumer.backend.observer.QueueConsumer;
+import com.producesconsumer.backend.strategy.InputPolicy;
+import com.producesconsumer.backend.strategy.InputPolicyType;
+import com.producesconsumer.backend.strategy.RoutingStrategy;
+import com.producesconsumer.backend.strategy.RoutingStrategyType;
+import com.producesconsumer.backend.strategy.TimeSampler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 @Slf4j
-public class MachineRunner implements Runnable, QueueObserver {
+public class MachineRunner implements Runnable, QueueConsumer {
+    // upper bound on a blocked producer's park, so capacity edits and
+    // deleted queues are noticed even without a removal signal
+    private static final long SPACE_RECHECK_MS = 250;
+
     private final Machine machine;
-    private final List<Queue> inputQueues;
-    private final List<Queue> outputQueues;
+    // shared with the machine's other servers, owns the reported state
+    private final ServerPool pool;
+    // routes are read from the current topology on every cycle, so a swap
+    // rewires the machine without restarting it
+    private final Supplier<RoutingTopology> topology;
+    private long topologyVersion = -1;
+    private Queue[] inputQueues = new Queue[0];
+    private int[] inputWeights = new int[0];
     private final QueueService queueService;
     private final SimulationService simulationService;
 
     private volatile boolean running = true;
-    private final Random random = new Random();
+    // set when the machine loses this server, it exits after the current cycle
+    private volatile boolean retiring = false;
+    private String routingName;
+    private RoutingStrategy router;
+    private String inputPolicyName;
+    private InputPolicy inputPolicy;
+    // this server's own stream, so draws never contend with other threads
+    private final RandomGenerator random;
+    private TimeSampler sampler;
+    // the input each product of the batch being filled came from, in step with it
+    private final List<Queue> batchOrigins = new ArrayList<>();
+    private final TaskThread thread = new TaskThread();
 
-    // Guarded Suspension
-    public final Object lock = new Object();
+    // Guarded Suspension (ReentrantLock rather than a monitor so a virtual
+    // thread parked here releases its carrier thread)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition productAvailable = lock.newCondition();
+    private boolean waiting = false; // guarded by lock
 
     public MachineRunner(Machine machine,
-            List<Queue> inputQueues,
-            List<Queue> outputQueues,
+            ServerPool pool,
+            Supplier<RoutingTopology> topology,
             QueueService queueService,
-            SimulationService simulationService) {
+            SimulationService simulationService,
+            RandomGenerator random) {
         this.machine = machine;
-        this.inputQueues = inputQueues;
-        this.outputQueues = outputQueues;
+        this.pool = pool;
+        this.random = random;
+        this.topology = topology;
         this.queueService = queueService;
         this.simulationService = simulationService;
     }
 
+    public ServerPool getPool() {
+        return pool;
+    }
+
     public void stop() {
         this.running = false;
-        synchronized (lock) {
-            lock.notify();
+        signal();
+        thread.interrupt(); // out of a processing sleep or a wait for space
+    }
+
+    /// after stop: true once this server has given back or delivered what it
+    /// held and left its run loop
+    public boolean awaitStopped(long timeoutMs) {
+        return thread.awaitExit(timeoutMs);
+    }
+
+    /// finish the product in hand, then exit (the machine was given fewer servers)
+    public void retire() {
+        this.retiring = true;
+        signal();
+    }
+
+    /// a new topology was swapped in, re-read the inputs even if suspended
+    public void topologyChanged() {
+        signal();
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            productAvailable.signal();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void run() {
+        thread.enter();
+        try {
+            serve();
+        } finally {
+            thread.exit();
+        }
+    }
+
+    private void serve() {
         log.info("Machine {} started", machine.getId());
-        // Listen to Q service for any product adds
-        queueService.registerObserver(this);
 
-        while (running) {
+        while (running && !retiring) {
             try {
-                // MACHINE CAN'T HAVE ZERO Qs as INPUT
-                if (inputQueues.isEmpty()) {
-                    log.warn("Machine {} has no input queues connected. Stopping.", machine.getId());
-                    running = false;
-                    break;
-                }
+                refreshInputs();
 
                 // Consumer Logic(fetch products)
-                Product productToProcess = fetchProductFromInput();
+                int batchSize = Math.max(1, machine.getBatchSize());
+                List<Product> batch = new ArrayList<>(batchSize);
+                batchOrigins.clear();
+                fillBatch(batch, batchSize);
 
-                if (productToProcess == null) {
-                    machine.setState("idle");
-
-                    synchronized (lock) {
-                        productToProcess = fetchProductFromInput();
-                        if (productToProcess == null && running) {
-                            lock.wait(); // Suspend
-                            continue; // woke up
+                if (batch.isEmpty()) {
+                    lock.lock();
+                    try {
+                        // a machine without inputs idles here until it gets rewired;
+                        // under the lock only look, so no wakeup slips in before the
+                        // await - taking stays outside since it may wait out a snapshot cut
+                        if (!hasInput() && running && !retiring
+                                && topology.get().getVersion() == topologyVersion) {
+                            waiting = true;
+                            try {
+                                productAvailable.await(); // Suspend
+                            } finally {
+                                waiting = false;
+                            }
                         }
+                    } finally {
+                        lock.unlock();
                     }
+                    continue; // woke up, products arrived meanwhile, rewired or stopped
                 }
 
-                if (!running)
+                if (batch.size() < batchSize && machine.getBatchTimeoutMs() > 0) {
+                    try {
+                        awaitFullBatch(batch, batchSize, machine.getBatchTimeoutMs());
+                    } catch (InterruptedException e) {
+                        giveBack(batch);
+                        throw e;
+                    }
+                }
+
+                if (!running) {
+                    giveBack(batch); // stopped while the batch was filling, none of it started
                     break;
+                }
 
-                // Processing
-                machine.setState("processing");
-                machine.setCurrentProductColor(productToProcess.getColor());
-                simulationService.broadcastMachineUpdate(machine); // SSE event for processing start
-                simulationService.broadcastMachineFlash(machine.getId());
+                // Processing (the whole batch in one cycle, one event pair for it)
+                pool.started(batch.get(0).getColor(), batch.size());
+                try {
+                    simulationService.broadcastMachineUpdate(machine); // SSE event for processing start
+                    simulationService.broadcastMachineFlash(machine.getId());
 
-                Thread.sleep(machine.getProcessingTime());
+                    long startedAt = System.nanoTime();
+                    for (Product product : batch) {
+                        machine.recordServiceStart(product, startedAt);
+                    }
+                    Thread.sleep(nextProcessingTime());
+                    long endedAt = System.nanoTime();
+                    for (Product product : batch) {
+                        machine.recordServiceEnd(product, endedAt);
+                    }
 
-                // Producer Logic(Send to next Q)
-                if (!outputQueues.isEmpty()) {
-                    Queue target = outputQueues.get(random.nextInt(outputQueues.size()));
-                    queueService.addProductToQueue(target, productToProcess);
-                } else {
-                    log.info("TBD{}{}", productToProcess.getId(), machine.getId());
+                    // Producer Logic(Send to next Q), each product is routed on its own
+                    for (Product product : batch) {
+                        deliver(product);
+                    }
+                } finally {
+                    pool.finished();
                 }
-                machine.setState("idle");
-                machine.setCurrentProductColor(null);
                 simulationService.broadcastMachineUpdate(machine); // SSE event for processing complete
 
             } catch (InterruptedException e) {
@@ -101,13 +201,233 @@ public class MachineRunner implements Runnable, QueueObserver {
                 log.warn("Machine {} error: {}", machine.getId(), e.getMessage());
             }
         }
-        queueService.unregisterObserver(this);
+        for (Queue queue : inputQueues) {
+            queueService.unsubscribe(queue.getId(), this);
+        }
         log.info("Machine {} stopped", machine.getId());
     }
 
+    /// pick up the inputs of a newly swapped topology and move the queue
+    /// subscriptions over, so only our own input Qs wake us
+    private void refreshInputs() {
+        RoutingTopology current = topology.get();
+        if (current.getVersion() == topologyVersion) {
+            return;
+        }
+        Queue[] inputs = current.inputsOf(machine.getId());
+        for (Queue queue : inputQueues) {
+            queueService.unsubscribe(queue.getId(), this);
+        }
+        for (Queue queue : inputs) {
+            queueService.subscribe(queue.getId(), this);
+        }
+        if (inputs.length == 0 && (topologyVersion < 0 || inputQueues.length > 0)) {
+            log.warn("Machine {} has no input queues connected, waiting to be rewired", machine.getId());
+        }
+        inputQueues = inputs;
+        inputWeights = current.inputWeightsOf(machine.getId());
+        topologyVersion = current.getVersion();
+    }
+
+    /// route a finished product with the topology current now, applying the
+    /// target's overflow policy if it is full. While blocked the machine takes
+    /// no input, which is what pushes back-pressure further upstream
+    private void deliver(Product product) throws InterruptedException {
+        boolean blocked = false;
+        try {
+            Queue target = null;
+            long routedWith = -1;
+            while (running) {
+                RoutingTopology routes = topology.get();
+                Queue[] outputs = routes.outputsOf(machine.getId());
+                if (outputs.length == 0) {
+                    // nowhere to go: counted on the machine instead of vanishing unseen
+                    unrouted(product);
+                    log.debug("Machine {} has no output, product {} discarded", machine.getId(), product.getId());
+                    return;
+                }
+                if (routes.getVersion() != routedWith) {
+                    // route once, and again only if the line was rewired while blocked
+                    target = router().select(outputs, routes.outputWeightsOf(machine.getId()));
+                    routedWith = routes.getVersion();
+                }
+                if (handOn(target, product)) {
+                    return;
+                }
+                QueueOverflow overflow = QueueOverflow.of(target);
+                if (overflow == QueueOverflow.DROP) {
+                    drop(target, product);
+                    return;
+                }
+                if (overflow == QueueOverflow.REROUTE) {
+                    for (Queue alternative : outputs) {
+                        if (alternative != target && handOn(alternative, product)) {
+                            return;
+                        }
+                    }
+                }
+                if (!blocked) {
+                    blocked = true;
+                    pool.blocked();
+                    simulationService.broadcastMachineUpdate(machine);
+                }
+                queueService.awaitSpace(target, SPACE_RECHECK_MS);
+            }
+        } finally {
+            if (blocked) {
+                pool.unblocked();
+            }
+        }
+    }
+
+    /// fixed processingTime, or a draw from the machine's distribution
+    private long nextProcessingTime() {
+        TimeDistribution distribution = machine.getProcessingTimeDistribution();
+        if (distribution == null) {
+            return machine.getProcessingTime();
+        }
+        if (sampler == null || sampler.getDistribution() != distribution) {
+            sampler = new TimeSampler(distribution, random);
+        }
+        return sampler.next();
+    }
+
+    /// strategy named on the machine, recreated only when the name changes
+    private RoutingStrategy router() {
+        String name = machine.getRoutingStrategy();
+        if (router == null || !Objects.equals(name, routingName)) {
+            router = RoutingStrategyType.fromName(name).create();
+            routingName = name;
+        }
+        return router;
+    }
+
+    /// input policy named on the machine, recreated only when the name changes
+    private InputPolicy inputPolicy() {
+        String name = machine.getInputPolicy();
+        if (inputPolicy == null || !Objects.equals(name, inputPolicyName)) {
+            inputPolicy = InputPolicyType.fromName(name).create();
+            inputPolicyName = name;
+        }
+        return inputPolicy;
+    }
+
+    // Every product move happens inside the cut barrier together with the
+    // change to what the machine holds, so a snapshot finds each product
+    // either in a queue or on a machine - never in both, never in neither
+
+    private Product take(Queue queue) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            Product product = queueService.removeProductFromQueue(queue);
+            if (product != null) {
+                pool.took(product);
+                batchOrigins.add(queue);
+            }
+            return product;
+        } finally {
+            cut.exit();
+        }
+    }
+
+    private int take(Queue queue, int max, List<Product> into) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            int moved = queueService.removeProductsFromQueue(queue, max, into);
+            pool.took(into.subList(into.size() - moved, into.size()));
+            for (int i = 0; i < moved; i++) {
+                batchOrigins.add(queue);
+            }
+            return moved;
+        } finally {
+            cut.exit();
+        }
+    }
+
+    /// false, with the product still held, if the queue is full
+    private boolean handOn(Queue queue, Product product) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            if (!queueService.offerProductToQueue(queue, product)) {
+                return false;
+            }
+            pool.handedOn(product);
+            return true;
+        } finally {
+            cut.exit();
+        }
+    }
+
+    private void drop(Queue queue, Product product) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            queueService.dropProduct(queue, product);
+            pool.handedOn(product);
+        } finally {
+            cut.exit();
+        }
+    }
+
+    /// put an unstarted batch back at the head of the inputs it came from, in
+    /// the order it was taken
+    private void giveBack(List<Product> batch) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            // latest run first, so what was taken first ends up in front
+            int to = batch.size();
+            while (to > 0) {
+                Queue origin = batchOrigins.get(to - 1);
+                int from = to - 1;
+                while (from > 0 && batchOrigins.get(from - 1) == origin) {
+                    from--;
+                }
+                queueService.returnProductsToQueue(origin, batch.subList(from, to));
+                pool.handedOn(batch.subList(from, to));
+                to = from;
+            }
+            batch.clear();
+            batchOrigins.clear();
+        } finally {
+            cut.exit();
+        }
+    }
+
+    private void unrouted(Product product) {
+        CutBarrier cut = queueService.getCutBarrier();
+        cut.enter();
+        try {
+            pool.unrouted(product);
+        } finally {
+            cut.exit();
+        }
+    }
+
+    /// whether any input holds a product, without taking it
+    private boolean hasInput() {
+        for (Queue queue : inputQueues) {
+            if (!queueService.isQueueEmpty(queue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Product fetchProductFromInput() {
+        int chosen = inputPolicy().select(inputQueues, inputWeights);
+        if (chosen >= 0) {
+            Product p = take(inputQueues[chosen]);
+            if (p != null) {
+                return p;
+            }
+        }
+        // another consumer of the chosen queue got there first, take whatever is left
         for (Queue queue : inputQueues) {
-            Product p = queueService.removeProductFromQueue(queue);
+            Product p = take(queue);
             if (p != null) {
                 return p;
             }
@@ -115,22 +435,73 @@ public class MachineRunner implements Runnable, QueueObserver {
         return null;
     }
 
-    @Override
-    public void onProductAdded(Queue queue, Product product) {
-        // Wake if product arrives in one of the input Qs
-        if (inputQueues.stream().anyMatch(q -> q.getId().equals(queue.getId()))) {
-            synchronized (lock) {
-                lock.notify();
+    /// take up to size products, following the input policy and falling back
+    /// to any non-empty input; each queue is drained in one operation
+    private void fillBatch(List<Product> batch, int size) {
+        if (size == 1) {
+            Product p = fetchProductFromInput();
+            if (p != null) {
+                batch.add(p);
+            }
+            return;
+        }
+        while (batch.size() < size) {
+            int chosen = inputPolicy().select(inputQueues, inputWeights);
+            if (chosen >= 0 && take(inputQueues[chosen], size - batch.size(), batch) > 0) {
+                continue;
+            }
+            boolean took = false;
+            for (Queue queue : inputQueues) {
+                if (batch.size() < size && take(queue, size - batch.size(), batch) > 0) {
+                    took = true;
+                }
+            }
+            if (!took) {
+                return;
             }
         }
     }
 
-    // IGNORE
-    @Override
-    public void onProductRemoved(Queue queue, Product product) {
+    /// a partial batch waits up to the machine's batch timeout for the rest,
+    /// then runs with whatever it has
+    private void awaitFullBatch(List<Product> batch, int size, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (running && batch.size() < size) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            refreshInputs();
+            fillBatch(batch, size);
+            lock.lock();
+            try {
+                if (batch.size() < size && running && !hasInput()) {
+                    waiting = true;
+                    try {
+                        productAvailable.awaitNanos(remaining);
+                    } finally {
+                        waiting = false;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     @Override
-    public void onQueueEmpty(Queue queue) {
+    public boolean wakeUp(Queue queue) {
+        // Only called for our own input Qs; claim the wakeup only if suspended
+        lock.lock();
+        try {
+            if (!waiting) {
+                return false;
+            }
+            waiting = false;
+            productAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 }
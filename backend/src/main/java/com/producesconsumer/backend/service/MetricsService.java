@@ -0,0 +1,276 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.MachineMetrics;
+import com.producesconsumer.backend.dto.MetricsReport;
+import com.producesconsumer.backend.dto.QueueMetrics;
+import com.producesconsumer.backend.dto.WindowRates;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueRole;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.UtilizationStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding-window rates over the queue and machine counters. The counters
+ * themselves are cumulative and updated lock-free on the hot paths; a
+ * sampler snapshots them at a fixed period while the simulation runs, and
+ * a window's rate is the difference between now and the oldest sample
+ * inside it. History starts over with every run. The same tick keeps one
+ * Micrometer depth gauge per existing queue
+ */
+@Service
+@Slf4j
+public class MetricsService {
+
+    // cumulative counters of one entity at one instant
+    private static final int ARRIVALS = 0, DEPARTURES = 1;
+    private static final int STARTED = 0, FINISHED = 1, PROCESSING = 2, BLOCKED = 3, IDLE = 4;
+
+    private record Sample(long at, Map<String, long[]> queues, Map<String, long[]> machines) {
+    }
+
+    private final SimulationService simulationService;
+    private final ScheduledExecutorService sampler;
+    private final List<Integer> windowSeconds;
+    private final int historySize;
+
+    private final ArrayDeque<Sample> history = new ArrayDeque<>(); // guarded by this
+    private boolean sampledRunning; // guarded by this
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Gauge> depthGauges = new HashMap<>(); // guarded by this
+
+    public MetricsService(SimulationService simulationService,
+            MeterRegistry meterRegistry,
+            @Value("${simulation.metrics.sample-ms:1000}") long sampleMs,
+            @Value("${simulation.metrics.windows-s:10,60,300}") int[] windows) {
+        this.simulationService = simulationService;
+        this.meterRegistry = meterRegistry;
+        FunctionCounter.builder("simulation.products.generated", simulationService.getState(),
+                        SimulationState::getTotalProductsGenerated)
+                .description("Products that entered the line at a source")
+                .register(meterRegistry);
+        this.windowSeconds = Arrays.stream(windows).filter(w -> w > 0).sorted().boxed().toList();
+        long periodMs = Math.max(10, sampleMs);
+        int longest = windowSeconds.isEmpty() ? 0 : windowSeconds.get(windowSeconds.size() - 1);
+        this.historySize = (int) (longest * 1000L / periodMs) + 2;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        log.info("Metrics sampled every {} ms over windows {} s", periodMs, windowSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    /// take one sample if running; a new run drops the previous run's history
+    synchronized void sample() {
+        try {
+            SimulationState state = simulationService.getState();
+            syncDepthGauges(state);
+            if (!state.isRunning()) {
+                sampledRunning = false;
+                return;
+            }
+            if (!sampledRunning) {
+                history.clear();
+                sampledRunning = true;
+            }
+            history.addLast(capture(state, System.nanoTime()));
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+        } catch (Exception e) {
+            log.error("Error sampling metrics: {}", e.getMessage(), e);
+        }
+    }
+
+    /// a depth gauge for every queue, dropped again once the queue is deleted;
+    /// the gauge reads the queue by id so a snapshot load that swaps the
+    /// queue objects is followed
+    private void syncDepthGauges(SimulationState state) {
+        for (Queue queue : state.getQueues()) {
+            depthGauges.computeIfAbsent(queue.getId(), id -> Gauge.builder("simulation.queue.depth",
+                            state, current -> depthOf(current, id))
+                    .description("Products waiting in the queue")
+                    .tag("queue", id)
+                    .register(meterRegistry));
+        }
+        depthGauges.entrySet().removeIf(entry -> {
+            boolean gone = state.getQueue(entry.getKey()) == null;
+            if (gone) {
+                meterRegistry.remove(entry.getValue());
+            }
+            return gone;
+        });
+    }
+
+    private static double depthOf(SimulationState state, String queueId) {
+        Queue queue = state.getQueue(queueId);
+        return queue == null ? Double.NaN : queue.getProductCount();
+    }
+
+    /// current totals with rates per window; once stopped, the windows end at
+    /// the last sample of the run so the rates don't decay while idle
+    public synchronized MetricsReport getMetrics() {
+        SimulationState state = simulationService.getState();
+        long now = System.nanoTime();
+        Sample end = state.isRunning() || history.isEmpty() ? capture(state, now) : history.peekLast();
+
+        List<QueueMetrics> queues = new ArrayList<>();
+        for (Queue queue : state.getQueues()) {
+            long[] counts = end.queues().getOrDefault(queue.getId(), new long[2]);
+            QueueMetrics metrics = new QueueMetrics();
+            metrics.setQueueId(queue.getId());
+            metrics.setRole(QueueRole.of(queue).displayName());
+            metrics.setDepth(queue.getProductCount());
+            metrics.setArrivals(counts[ARRIVALS]);
+            metrics.setDepartures(counts[DEPARTURES]);
+            metrics.setWindows(windowSeconds.stream()
+                    .map(seconds -> queueRates(queue.getId(), end, seconds))
+                    .toList());
+            queues.add(metrics);
+        }
+        queues.sort(Comparator.comparing(QueueMetrics::getQueueId));
+
+        List<MachineMetrics> machines = new ArrayList<>();
+        for (Machine machine : state.getMachines()) {
+            long[] counts = end.machines().getOrDefault(machine.getId(), new long[5]);
+            MachineMetrics metrics = new MachineMetrics();
+            metrics.setMachineId(machine.getId());
+            metrics.setServers(ServerPool.serversOf(machine));
+            metrics.setBusyServers(machine.getBusyServers());
+            metrics.setStarted(counts[STARTED]);
+            metrics.setFinished(counts[FINISHED]);
+            metrics.setProcessingMs(counts[PROCESSING] / 1e6);
+            metrics.setBlockedMs(counts[BLOCKED] / 1e6);
+            metrics.setIdleMs(counts[IDLE] / 1e6);
+            metrics.setUtilization(share(counts[PROCESSING], counts[PROCESSING] + counts[BLOCKED] + counts[IDLE]));
+            metrics.setWindows(windowSeconds.stream()
+                    .map(seconds -> machineRates(machine.getId(), end, seconds))
+                    .toList());
+            machines.add(metrics);
+        }
+        machines.sort(Comparator.comparing(MachineMetrics::getMachineId));
+
+        MetricsReport report = new MetricsReport();
+        report.setRunning(state.isRunning());
+        report.setWindowSeconds(windowSeconds);
+        report.setQueues(queues);
+        report.setMachines(machines);
+        report.setBottleneckMachineId(bottleneckOf(machines));
+        return report;
+    }
+
+    private WindowRates queueRates(String queueId, Sample end, int seconds) {
+        WindowRates rates = new WindowRates();
+        rates.setSeconds(seconds);
+        Sample start = startOf(end, seconds);
+        long[] from = start == null ? null : start.queues().get(queueId);
+        long[] to = end.queues().get(queueId);
+        if (from == null || to == null || end.at() <= start.at()) {
+            return rates; // new since the window started, or no history yet
+        }
+        long span = end.at() - start.at();
+        rates.setSpanMs(span / 1_000_000);
+        rates.setInPerMinute(perMinute(to[ARRIVALS] - from[ARRIVALS], span));
+        rates.setOutPerMinute(perMinute(to[DEPARTURES] - from[DEPARTURES], span));
+        return rates;
+    }
+
+    private WindowRates machineRates(String machineId, Sample end, int seconds) {
+        WindowRates rates = new WindowRates();
+        rates.setSeconds(seconds);
+        Sample start = startOf(end, seconds);
+        long[] from = start == null ? null : start.machines().get(machineId);
+        long[] to = end.machines().get(machineId);
+        if (from == null || to == null || end.at() <= start.at()) {
+            return rates;
+        }
+        long span = end.at() - start.at();
+        long processing = to[PROCESSING] - from[PROCESSING];
+        long blocked = to[BLOCKED] - from[BLOCKED];
+        long total = processing + blocked + (to[IDLE] - from[IDLE]);
+        rates.setSpanMs(span / 1_000_000);
+        rates.setInPerMinute(perMinute(to[STARTED] - from[STARTED], span));
+        rates.setOutPerMinute(perMinute(to[FINISHED] - from[FINISHED], span));
+        rates.setUtilization(share(processing, total));
+        rates.setBlockedShare(share(blocked, total));
+        return rates;
+    }
+
+    /// oldest sample no older than the window, null if there is none
+    private Sample startOf(Sample end, int seconds) {
+        long earliest = end.at() - TimeUnit.SECONDS.toNanos(seconds);
+        Iterator<Sample> samples = history.iterator();
+        while (samples.hasNext()) {
+            Sample sample = samples.next();
+            if (sample.at() >= earliest) {
+                return sample;
+            }
+        }
+        return null;
+    }
+
+    private String bottleneckOf(List<MachineMetrics> machines) {
+        String bottleneck = null;
+        double highest = 0;
+        for (MachineMetrics machine : machines) {
+            double utilization = machine.getWindows().isEmpty() || machine.getWindows().get(0).getSpanMs() == 0
+                    ? machine.getUtilization()
+                    : machine.getWindows().get(0).getUtilization();
+            if (utilization > highest) {
+                highest = utilization;
+                bottleneck = machine.getMachineId();
+            }
+        }
+        return bottleneck;
+    }
+
+    private static Sample capture(SimulationState state, long now) {
+        Map<String, long[]> queues = new HashMap<>();
+        for (Queue queue : state.getQueues()) {
+            queues.put(queue.getId(), new long[] { queue.getArrivalCount(), queue.getDepartureCount() });
+        }
+        Map<String, long[]> machines = new HashMap<>();
+        for (Machine machine : state.getMachines()) {
+            UtilizationStats utilization = machine.getUtilization();
+            UtilizationStats.Totals totals = utilization.totals(now);
+            machines.put(machine.getId(), new long[] { utilization.getStarted(), utilization.getFinished(),
+                    totals.processingNanos(), totals.blockedNanos(), totals.idleNanos() });
+        }
+        return new Sample(now, queues, machines);
+    }
+
+    private static double perMinute(long count, long spanNanos) {
+        return count * 60e9 / spanNanos;
+    }
+
+    private static double share(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+}
@@ -1,24 +1,90 @@
 package com.producesconsumer.backend.service;
 
+import com.producesconsumer.backend.model.CutBarrier;
+import com.producesconsumer.backend.model.LatencyHistogram;
 import com.producesconsumer.backend.model.Product;
 import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.observer.QueueConsumer;
+import com.producesconsumer.backend.observer.QueueJournal;
 import com.producesconsumer.backend.observer.QueueObserver;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /// manages all queue operations and observer notifications
 /// handles product addition/removal and notifies all registered observers
+/// products live in each queue's own lock-free buffer, so operations on
+/// different queues never contend on a shared monitor; what is left to time
+/// is the dispatch to consumers/observers and producers parked on full queues.
+/// With a journal set, each change and its journal entry are made together
+/// under the queue's own monitor, so the journal sees every queue's true order
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class QueueService {
 
     private final List<QueueObserver> observers = new CopyOnWriteArrayList<>();
+    private volatile QueueJournal journal; // null = changes are not journaled
+
+    // consumers indexed by the queue id they read from, so a product add only
+    // touches the machines that can actually take it (arrays are replaced on
+    // subscribe/unsubscribe, never mutated, so dispatch reads them lock-free)
+    private final Map<String, QueueConsumer[]> consumersByQueue = new ConcurrentHashMap<>();
+    // rotating start index per queue so wakeups are spread across idle consumers
+    private final Map<String, AtomicInteger> wakeCursors = new ConcurrentHashMap<>();
+    // producers parked on a full bounded queue, by queue id
+    private final Map<String, SpaceGate> spaceGates = new ConcurrentHashMap<>();
+
+    private static final class SpaceGate {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notFull = lock.newCondition();
+        final AtomicInteger waiters = new AtomicInteger();
+    }
+
+    // wakeup + observer notification per queue change, and time parked in awaitSpace
+    private final Timer addDispatch;
+    private final Timer removeDispatch;
+    private final Timer spaceWait;
+
+    // every product move runs inside it, so a snapshot can take a consistent cut
+    private final CutBarrier cutBarrier = new CutBarrier();
+
+    public QueueService(MeterRegistry meterRegistry) {
+        this.addDispatch = dispatchTimer(meterRegistry, "added");
+        this.removeDispatch = dispatchTimer(meterRegistry, "removed");
+        this.spaceWait = Timer.builder("simulation.queue.space.wait")
+                .description("Time producers spent parked on a full queue")
+                .register(meterRegistry);
+        FunctionTimer.builder("simulation.snapshot.pause", cutBarrier.getPauses(),
+                        LatencyHistogram::getCount, LatencyHistogram::getTotalNanos, TimeUnit.NANOSECONDS)
+                .description("Time product moves were held off while a snapshot took its cut")
+                .register(meterRegistry);
+    }
+
+    /// the barrier product moves go through (enter/exit around the queue
+    /// operation and the matching change on the machine or the source)
+    public CutBarrier getCutBarrier() {
+        return cutBarrier;
+    }
+
+    private static Timer dispatchTimer(MeterRegistry meterRegistry, String change) {
+        return Timer.builder("simulation.queue.dispatch")
+                .description("Consumer wakeup and observer notification per queue change")
+                .tag("change", change)
+                .register(meterRegistry);
+    }
 
     /// register an observer to be notified of queue changes
     public void registerObserver(QueueObserver observer) {
@@ -28,60 +94,193 @@ public class QueueService {
         }
     }
 
+    /// record every queue change from now on in the journal (null = stop);
+    /// observers are still notified after the fact as before
+    public void setJournal(QueueJournal journal) {
+        this.journal = journal;
+    }
+
     /// unregister an observer
     public void unregisterObserver(QueueObserver observer) {
         observers.remove(observer);
         log.debug("Observer unregistered. Total observers: {}", observers.size());
     }
 
-    /// add a product to a queue (thread-safe)
+    /// subscribe a consumer to products arriving in the given queue
+    public void subscribe(String queueId, QueueConsumer consumer) {
+        QueueConsumer[] consumers = consumersByQueue.compute(queueId, (id, current) -> {
+            if (current == null) {
+                return new QueueConsumer[] { consumer };
+            }
+            if (Arrays.asList(current).contains(consumer)) {
+                return current;
+            }
+            QueueConsumer[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = consumer;
+            return next;
+        });
+        log.debug("Consumer subscribed to queue {}. Total consumers: {}", queueId, consumers.length);
+    }
+
+    /// unsubscribe a consumer from the given queue
+    public void unsubscribe(String queueId, QueueConsumer consumer) {
+        consumersByQueue.computeIfPresent(queueId, (id, current) -> {
+            QueueConsumer[] next = Arrays.stream(current)
+                    .filter(c -> c != consumer)
+                    .toArray(QueueConsumer[]::new);
+            return next.length == 0 ? null : next;
+        });
+        log.debug("Consumer unsubscribed from queue {}", queueId);
+    }
+
+    /// add a product to a queue (thread-safe, lock-free unless journaled)
     /// notifies all observers of the change
-    public synchronized void addProductToQueue(Queue queue, Product product) {
+    public void addProductToQueue(Queue queue, Product product) {
         if (queue == null || product == null) {
             log.warn("Cannot add product: queue or product is null");
             return;
         }
 
         try {
-            // add product to queue (thread-safe list)
-            queue.getProducts().add(product);
+            // add product to queue (lock-free buffer, updates product count)
+            // ignoring capacity; producers that respect it use offerProductToQueue
+            QueueJournal journal = this.journal;
+            if (journal == null) {
+                queue.enqueue(product);
+            } else {
+                synchronized (queue) {
+                    queue.enqueue(product);
+                    journal.enqueued(queue, product);
+                }
+            }
+            announceAdded(queue, product);
+        } catch (Exception e) {
+            log.error("Error adding product to queue: {}", e.getMessage(), e);
+        }
+    }
 
-            // update product count
-            queue.setProductCount(queue.getProducts().size());
+    /// add a product unless the queue is at capacity
+    /// returns false, with nothing changed or notified, if it is full
+    public boolean offerProductToQueue(Queue queue, Product product) {
+        if (queue == null || product == null) {
+            log.warn("Cannot add product: queue or product is null");
+            return false;
+        }
+        boolean added;
+        QueueJournal journal = this.journal;
+        if (journal == null) {
+            added = queue.offer(product);
+        } else {
+            synchronized (queue) {
+                added = queue.offer(product);
+                if (added) {
+                    journal.enqueued(queue, product);
+                }
+            }
+        }
+        if (!added) {
+            return false;
+        }
+        try {
+            announceAdded(queue, product);
+        } catch (Exception e) {
+            log.error("Error adding product to queue: {}", e.getMessage(), e);
+        }
+        return true;
+    }
 
-            log.info("Product {} added to queue {}. New size: {}",
-                    product.getId(), queue.getId(), queue.getProductCount());
+    /// a producer discarded a product because the queue was full
+    public void dropProduct(Queue queue, Product product) {
+        queue.recordDrop();
+        log.info("Product {} dropped, queue {} is full ({})",
+                product.getId(), queue.getId(), queue.getCapacity());
+    }
 
-            // notify all observers (QueueEventObserver will publish SSE)
-            notifyObserversProductAdded(queue, product);
+    /// park until the queue has room or the timeout passes; callers re-check
+    /// in a loop, the timeout covers capacity edits and deleted queues
+    public void awaitSpace(Queue queue, long timeoutMs) throws InterruptedException {
+        SpaceGate gate = spaceGates.computeIfAbsent(queue.getId(), id -> new SpaceGate());
+        long start = System.nanoTime();
+        gate.lock.lock();
+        try {
+            gate.waiters.incrementAndGet();
+            try {
+                if (queue.isFull()) {
+                    gate.notFull.await(timeoutMs, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                gate.waiters.decrementAndGet();
+            }
+        } finally {
+            gate.lock.unlock();
+            spaceWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error adding product to queue: {}", e.getMessage(), e);
+    /// wake every producer parked on the queue (after a removal or a capacity change)
+    public void signalSpace(Queue queue) {
+        SpaceGate gate = spaceGates.get(queue.getId());
+        // waiters is raised before the full check, so a producer about to park
+        // either sees the freed slot or is counted here
+        if (gate == null || gate.waiters.get() == 0) {
+            return;
         }
+        gate.lock.lock();
+        try {
+            gate.notFull.signalAll();
+        } finally {
+            gate.lock.unlock();
+        }
+    }
+
+    private void announceAdded(Queue queue, Product product) {
+        log.info("Product {} added to queue {}. New size: {}",
+                product.getId(), queue.getId(), queue.getProductCount());
+
+        long start = System.nanoTime();
+        // wake one idle consumer of this queue
+        wakeOneConsumer(queue);
+
+        // notify all observers (QueueEventObserver will publish SSE)
+        notifyObserversProductAdded(queue, product);
+        addDispatch.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
     /// remove a product from queue
     /// notifies all observers of the change
     /// returns the removed product, or null if queue is empty
-    public synchronized Product removeProductFromQueue(Queue queue) {
-        if (queue == null || queue.getProducts().isEmpty()) {
-            if (queue != null) {
-                log.warn("Cannot remove product from queue {}: queue is empty", queue.getId());
-                notifyObserversQueueEmpty(queue);
-            }
+    public Product removeProductFromQueue(Queue queue) {
+        if (queue == null) {
             return null;
         }
 
         try {
-            // remove first product (FIFO)
-            Product product = queue.getProducts().remove(0);
-
-            // update product count
-            queue.setProductCount(queue.getProducts().size());
+            // remove first product (FIFO), null if another consumer got there first
+            Product product;
+            QueueJournal journal = this.journal;
+            if (journal == null) {
+                product = queue.dequeue();
+            } else {
+                synchronized (queue) {
+                    product = queue.dequeue();
+                    if (product != null) {
+                        journal.dequeued(queue, List.of(product));
+                    }
+                }
+            }
+            if (product == null) {
+                log.warn("Cannot remove product from queue {}: queue is empty", queue.getId());
+                notifyObserversQueueEmpty(queue);
+                return null;
+            }
 
             log.info("Product {} removed from queue {}. New size: {}",
                     product.getId(), queue.getId(), queue.getProductCount());
 
+            long start = System.nanoTime();
+            // a slot opened up for producers blocked on a bounded queue
+            signalSpace(queue);
+
             // notify all observers (QueueEventObserver will publish SSE)
             notifyObserversProductRemoved(queue, product);
 
@@ -89,6 +288,7 @@ public class QueueService {
             if (queue.getProducts().isEmpty()) {
                 notifyObserversQueueEmpty(queue);
             }
+            removeDispatch.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
             return product;
 
@@ -98,37 +298,147 @@ public class QueueService {
         }
     }
 
-    /// get next product without removing it (peek operation)
-    public synchronized Product peekQueue(Queue queue) {
-        if (queue == null || queue.getProducts().isEmpty()) {
-            return null;
+    /// remove up to max products from the head in one operation, appending them
+    /// to into; observers hear about the batch once
+    /// returns how many were removed (0 if the queue is empty)
+    public int removeProductsFromQueue(Queue queue, int max, List<Product> into) {
+        if (queue == null || max <= 0) {
+            return 0;
+        }
+        try {
+            int before = into.size();
+            int moved;
+            QueueJournal journal = this.journal;
+            if (journal == null) {
+                moved = queue.drainTo(into, max, System.nanoTime());
+            } else {
+                synchronized (queue) {
+                    moved = queue.drainTo(into, max, System.nanoTime());
+                    if (moved > 0) {
+                        journal.dequeued(queue, into.subList(before, before + moved));
+                    }
+                }
+            }
+            if (moved == 0) {
+                return 0;
+            }
+            log.info("{} products removed from queue {}. New size: {}",
+                    moved, queue.getId(), queue.getProductCount());
+
+            long start = System.nanoTime();
+            signalSpace(queue);
+            notifyObserversProductsRemoved(queue, into.subList(before, before + moved));
+            if (queue.getProducts().isEmpty()) {
+                notifyObserversQueueEmpty(queue);
+            }
+            removeDispatch.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return moved;
+        } catch (Exception e) {
+            log.error("Error removing products from queue: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /// put products a consumer took but never started back at the head of the
+    /// queue in their original order, e.g. a partial batch when the line stops
+    public void returnProductsToQueue(Queue queue, List<Product> products) {
+        if (queue == null || products.isEmpty()) {
+            return;
+        }
+        QueueJournal journal = this.journal;
+        if (journal == null) {
+            queue.returnToHead(products);
+        } else {
+            synchronized (queue) {
+                queue.returnToHead(products);
+                journal.returned(queue, products);
+            }
+        }
+        log.info("{} products returned to queue {}. New size: {}",
+                products.size(), queue.getId(), queue.getProductCount());
+        wakeOneConsumer(queue);
+        for (QueueObserver observer : observers) {
+            try {
+                observer.onProductsReturned(queue, products);
+            } catch (Exception e) {
+                log.error("Error notifying observer of product return: {}", e.getMessage(), e);
+            }
         }
-        return queue.getProducts().get(0);
+    }
+
+    /// journal a queue whose contents were changed without going through the
+    /// service (a fast-forward), as emptied and refilled with what it holds now
+    public void journalContents(Queue queue) {
+        QueueJournal journal = this.journal;
+        if (journal == null || queue == null) {
+            return;
+        }
+        synchronized (queue) {
+            journal.cleared(queue);
+            for (Product product : queue.getProducts()) {
+                journal.enqueued(queue, product);
+            }
+        }
+    }
+
+    /// get next product without removing it (peek operation)
+    public Product peekQueue(Queue queue) {
+        return queue == null ? null : queue.getProducts().peek();
     }
 
     /// check if queue is empty
-    public synchronized boolean isQueueEmpty(Queue queue) {
+    public boolean isQueueEmpty(Queue queue) {
         return queue == null || queue.getProducts().isEmpty();
     }
 
     /// get current queue size
-    public synchronized int getQueueSize(Queue queue) {
-        return queue == null ? 0 : queue.getProducts().size();
+    public int getQueueSize(Queue queue) {
+        return queue == null ? 0 : queue.getProductCount();
     }
 
     /// clear all products from a queue
-    public synchronized void clearQueue(Queue queue) {
+    public void clearQueue(Queue queue) {
         if (queue == null) {
             return;
         }
-        queue.getProducts().clear();
-        queue.setProductCount(0);
+        QueueJournal journal = this.journal;
+        if (journal == null) {
+            queue.clear();
+        } else {
+            synchronized (queue) {
+                queue.clear();
+                journal.cleared(queue);
+            }
+        }
+        signalSpace(queue);
         log.info("Queue {} cleared", queue.getId());
         notifyObserversQueueEmpty(queue);
     }
 
     /// private notification methods
 
+    /// wake exactly one idle consumer of the queue, starting from a rotating
+    /// position so the same machine is not always picked first
+    private void wakeOneConsumer(Queue queue) {
+        QueueConsumer[] consumers = consumersByQueue.get(queue.getId());
+        if (consumers == null) {
+            return;
+        }
+        int size = consumers.length;
+        int start = size == 1 ? 0
+                : Math.floorMod(wakeCursors.computeIfAbsent(queue.getId(), id -> new AtomicInteger())
+                        .getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            try {
+                if (consumers[(start + i) % size].wakeUp(queue)) {
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("Error waking consumer of queue {}: {}", queue.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
     /// notify all observers that a product was added
     private void notifyObserversProductAdded(Queue queue, Product product) {
         for (QueueObserver observer : observers) {
@@ -151,6 +461,16 @@ public class QueueService {
         }
     }
 
+    private void notifyObserversProductsRemoved(Queue queue, List<Product> products) {
+        for (QueueObserver observer : observers) {
+            try {
+                observer.onProductsRemoved(queue, products);
+            } catch (Exception e) {
+                log.error("Error notifying observer of product removal: {}", e.getMessage(), e);
+            }
+        }
+    }
+
     /// notify all observers that queue is empty
     private void notifyObserversQueueEmpty(Queue queue) {
         for (QueueObserver observer : observers) {
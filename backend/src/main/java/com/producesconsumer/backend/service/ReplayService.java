@@ -0,0 +1,184 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.CheckpointInfo;
+import com.producesconsumer.backend.dto.ReplayStatus;
+import com.producesconsumer.backend.model.Checkpoint;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SSE;
+import com.producesconsumer.backend.model.SimulationState;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time travel over the event log: seeking to a moment loads the latest
+ * checkpoint captured before it and rolls the logged transitions forward
+ * up to it; playing keeps rolling at a chosen speed and streams the
+ * changed queues and machines like a live line would. The live session is
+ * backed up on the first seek and comes back on stop. The log has no time
+ * index: its queue entries are relative (taken from the head, put back in
+ * front), so no record after a checkpoint can be skipped and an index point
+ * could only say where to stop, which the record times already do. A seek therefore costs one checkpoint reconstruction plus a
+ * linear read of the log from that checkpoint to the target, at most one
+ * checkpoint interval (simulation.checkpoint.interval-ms) of transitions,
+ * bounded by the kept segments. Seeking forward from the current replay
+ * time reads only the records in between. With the log off (the default,
+ * see simulation.eventlog.enabled) there is nothing to roll forward, and a
+ * seek shows the checkpoint itself.
+ */
+@Service
+@Slf4j
+public class ReplayService {
+
+    private static final long TICK_MS = 50;
+
+    private final CheckpointService checkpointService;
+    private final EventLog eventLog;
+    private final SimulationService simulationService;
+    private final EventBroadcaster eventBroadcaster;
+    private final EventService eventService;
+    private final ScheduledExecutorService player;
+
+    private long time = -1; // guarded by this, -1 = not replaying
+    private long position; // guarded by this
+    private double speed = 1.0; // guarded by this
+    private ScheduledFuture<?> playing; // guarded by this
+
+    public ReplayService(CheckpointService checkpointService, EventLog eventLog,
+            SimulationService simulationService, EventBroadcaster eventBroadcaster, EventService eventService) {
+        this.checkpointService = checkpointService;
+        this.eventLog = eventLog;
+        this.simulationService = simulationService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.eventService = eventService;
+        this.player = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        player.shutdownNow();
+    }
+
+    /// bring the simulation to the given moment, paused. Moving forward from
+    /// the current replay time rolls on from where it is unless a newer
+    /// checkpoint is closer; throws IllegalArgumentException before the
+    /// oldest checkpoint
+    public synchronized ReplayStatus seek(long timeMillis) {
+        Checkpoint checkpoint = checkpointService.latestAt(timeMillis);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("No checkpoint at or before " + Instant.ofEpochMilli(timeMillis));
+        }
+        halt();
+        simulationService.backupLiveState(); // save current session before replaying
+        simulationService.stopSimulation(); // kill all threads before replaying
+        // rolling on needs every entry since the current position still kept
+        if (time < 0 || timeMillis < time || position < checkpoint.getLogPosition()
+                || position < eventLog.start()) {
+            simulationService.getState().loadFromSnapshot(checkpointService.reconstruct(checkpoint.getSequence()));
+            position = checkpoint.getLogPosition();
+            simulationService.recompileTopology(); // routes of the loaded graph
+        }
+        rollTo(timeMillis, false);
+        time = timeMillis;
+        simulationService.broadcastState(); // send new state to all SSE clients
+        log.info("Replay at {} from checkpoint {}", Instant.ofEpochMilli(timeMillis), checkpoint.getSequence());
+        return status();
+    }
+
+    /// roll forward in real time scaled by speed until paused or the log ends
+    public synchronized ReplayStatus play(double speed) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Seek before playing");
+        }
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.speed = speed;
+        if (playing == null) {
+            playing = player.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+        return status();
+    }
+
+    public synchronized ReplayStatus pause() {
+        halt();
+        return status();
+    }
+
+    /// leave the replay and bring the live session back
+    public synchronized SimulationState stop() {
+        halt();
+        time = -1;
+        return simulationService.restoreLiveState();
+    }
+
+    public synchronized ReplayStatus getStatus() {
+        return status();
+    }
+
+    private synchronized void tick() {
+        try {
+            if (simulationService.getState().isRunning()) {
+                // the live session was restored behind the replay's back
+                halt();
+                time = -1;
+                return;
+            }
+            time += Math.round(TICK_MS * speed);
+            rollTo(time, true);
+            if (position >= eventLog.position()) {
+                halt();
+                eventService.publishEvent(new SSE("REPLAY_ENDED", status()));
+            }
+        } catch (Exception e) {
+            log.error("Error replaying: {}", e.getMessage(), e);
+            halt();
+        }
+    }
+
+    /// apply the logged transitions up to the given time onto the simulation
+    private void rollTo(long timeMillis, boolean publish) {
+        SimulationState state = simulationService.getState();
+        position = eventLog.read(position, transition -> {
+            if (transition.time() > timeMillis) {
+                return false;
+            }
+            Object changed = transition.applyTo(state);
+            if (publish && changed instanceof Queue queue) {
+                eventBroadcaster.publishQueue(queue);
+            } else if (publish && changed instanceof Machine machine) {
+                eventBroadcaster.publishMachine(machine);
+            }
+            return true;
+        });
+    }
+
+    private void halt() {
+        if (playing != null) {
+            playing.cancel(false);
+            playing = null;
+        }
+    }
+
+    private ReplayStatus status() {
+        List<CheckpointInfo> checkpoints = checkpointService.getCheckpoints();
+        long kept = eventLog.start();
+        long from = checkpoints.stream().filter(checkpoint -> checkpoint.getLogPosition() >= kept)
+                .mapToLong(CheckpointInfo::getCapturedAt).findFirst().orElse(-1);
+        long to = checkpoints.isEmpty() ? -1 : checkpoints.get(checkpoints.size() - 1).getCapturedAt();
+        return ReplayStatus.of(time >= 0, playing != null, time, speed, position, from,
+                Math.max(to, eventLog.lastTime()));
+    }
+}
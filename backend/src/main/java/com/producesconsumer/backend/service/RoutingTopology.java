@@ -0,0 +1,306 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.TopologyReport;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.QueueRole;
+import com.producesconsumer.backend.model.SimulationState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable routing table compiled from the connection graph in one pass -
+ * per machine input/output queue arrays and per queue consumer arrays, plus
+ * validation findings. Runners read the current instance on every cycle, so
+ * swapping in a recompiled topology rewires a running line
+ */
+public final class RoutingTopology {
+
+    private static final Queue[] NO_QUEUES = new Queue[0];
+    private static final Machine[] NO_MACHINES = new Machine[0];
+    private static final int[] NO_WEIGHTS = new int[0];
+
+    public static final RoutingTopology EMPTY = new RoutingTopology(0, NO_QUEUES, NO_QUEUES, Map.of(), Map.of(),
+            Map.of(), Map.of(), Map.of(), List.of(), List.of(), List.of(), List.of());
+
+    private final long version;
+    private final Queue[] sources;
+    private final Queue[] sinks;
+    private final Map<String, Queue[]> inputsByMachine;
+    private final Map<String, int[]> inputWeightsByMachine;
+    private final Map<String, Queue[]> outputsByMachine;
+    private final Map<String, int[]> outputWeightsByMachine;
+    private final Map<String, Machine[]> consumersByQueue;
+    private final List<String> machinesWithoutInputs;
+    private final List<String> machinesWithoutOutputs;
+    private final List<List<String>> cycles;
+    private final List<String> unreachableQueues;
+
+    private RoutingTopology(long version,
+            Queue[] sources,
+            Queue[] sinks,
+            Map<String, Queue[]> inputsByMachine,
+            Map<String, int[]> inputWeightsByMachine,
+            Map<String, Queue[]> outputsByMachine,
+            Map<String, int[]> outputWeightsByMachine,
+            Map<String, Machine[]> consumersByQueue,
+            List<String> machinesWithoutInputs,
+            List<String> machinesWithoutOutputs,
+            List<List<String>> cycles,
+            List<String> unreachableQueues) {
+        this.version = version;
+        this.sources = sources;
+        this.sinks = sinks;
+        this.inputsByMachine = inputsByMachine;
+        this.inputWeightsByMachine = inputWeightsByMachine;
+        this.outputsByMachine = outputsByMachine;
+        this.outputWeightsByMachine = outputWeightsByMachine;
+        this.consumersByQueue = consumersByQueue;
+        this.machinesWithoutInputs = machinesWithoutInputs;
+        this.machinesWithoutOutputs = machinesWithoutOutputs;
+        this.cycles = cycles;
+        this.unreachableQueues = unreachableQueues;
+    }
+
+    /**
+     * Compile the current graph. Connections are taken in creation order (C1,
+     * C2, ...) so input scan order is stable across recompiles
+     */
+    public static RoutingTopology compile(SimulationState state, long version) {
+        List<Connection> connections = new ArrayList<>(state.getConnections());
+        connections.sort(Comparator.comparingInt(RoutingTopology::connectionNumber));
+
+        Map<String, List<Queue>> inputs = new HashMap<>();
+        Map<String, List<Queue>> outputs = new HashMap<>();
+        Map<String, List<Integer>> inputWeights = new HashMap<>();
+        Map<String, List<Integer>> outputWeights = new HashMap<>();
+        Map<String, List<Machine>> consumers = new HashMap<>();
+        for (Connection connection : connections) {
+            Queue sourceQueue = state.getQueue(connection.getSourceId());
+            Machine targetMachine = state.getMachine(connection.getTargetId());
+            if (sourceQueue != null && targetMachine != null) {
+                inputs.computeIfAbsent(targetMachine.getId(), id -> new ArrayList<>()).add(sourceQueue);
+                inputWeights.computeIfAbsent(targetMachine.getId(), id -> new ArrayList<>())
+                        .add(Math.max(1, connection.getWeight()));
+                consumers.computeIfAbsent(sourceQueue.getId(), id -> new ArrayList<>()).add(targetMachine);
+                continue;
+            }
+            Machine sourceMachine = state.getMachine(connection.getSourceId());
+            Queue targetQueue = state.getQueue(connection.getTargetId());
+            if (sourceMachine != null && targetQueue != null) {
+                outputs.computeIfAbsent(sourceMachine.getId(), id -> new ArrayList<>()).add(targetQueue);
+                outputWeights.computeIfAbsent(sourceMachine.getId(), id -> new ArrayList<>())
+                        .add(Math.max(1, connection.getWeight()));
+            }
+        }
+
+        List<String> withoutInputs = new ArrayList<>();
+        List<String> withoutOutputs = new ArrayList<>();
+        for (Machine machine : state.getMachines()) {
+            if (!inputs.containsKey(machine.getId())) {
+                withoutInputs.add(machine.getId());
+            }
+            if (!outputs.containsKey(machine.getId())) {
+                withoutOutputs.add(machine.getId());
+            }
+        }
+        Collections.sort(withoutInputs);
+        Collections.sort(withoutOutputs);
+
+        Queue[] sources = queuesWithRole(state, QueueRole.SOURCE);
+        return new RoutingTopology(version,
+                sources,
+                queuesWithRole(state, QueueRole.SINK),
+                toArrays(inputs, NO_QUEUES),
+                toWeightArrays(inputWeights),
+                toArrays(outputs, NO_QUEUES),
+                toWeightArrays(outputWeights),
+                toArrays(consumers, NO_MACHINES),
+                List.copyOf(withoutInputs),
+                List.copyOf(withoutOutputs),
+                findCycles(state),
+                findUnreachableQueues(state, sources));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /// queues products arrive at from outside, by id (never null)
+    public Queue[] sources() {
+        return sources;
+    }
+
+    /// queues products leave the line at, by id (never null)
+    public Queue[] sinks() {
+        return sinks;
+    }
+
+    /// input queues of a machine, in scan order (never null)
+    public Queue[] inputsOf(String machineId) {
+        return inputsByMachine.getOrDefault(machineId, NO_QUEUES);
+    }
+
+    /// connection weights aligned with inputsOf (never null)
+    public int[] inputWeightsOf(String machineId) {
+        return inputWeightsByMachine.getOrDefault(machineId, NO_WEIGHTS);
+    }
+
+    /// output queues of a machine (never null)
+    public Queue[] outputsOf(String machineId) {
+        return outputsByMachine.getOrDefault(machineId, NO_QUEUES);
+    }
+
+    /// connection weights aligned with outputsOf (never null)
+    public int[] outputWeightsOf(String machineId) {
+        return outputWeightsByMachine.getOrDefault(machineId, NO_WEIGHTS);
+    }
+
+    /// machines reading from a queue (never null)
+    public Machine[] consumersOf(String queueId) {
+        return consumersByQueue.getOrDefault(queueId, NO_MACHINES);
+    }
+
+    public TopologyReport getReport() {
+        TopologyReport report = new TopologyReport();
+        report.setVersion(version);
+        report.setSources(Arrays.stream(sources).map(Queue::getId).toList());
+        report.setSinks(Arrays.stream(sinks).map(Queue::getId).toList());
+        report.setMachinesWithoutInputs(machinesWithoutInputs);
+        report.setMachinesWithoutOutputs(machinesWithoutOutputs);
+        report.setCycles(cycles);
+        report.setUnreachableQueues(unreachableQueues);
+        return report;
+    }
+
+    private static <T> Map<String, T[]> toArrays(Map<String, List<T>> lists, T[] empty) {
+        Map<String, T[]> arrays = new HashMap<>();
+        lists.forEach((id, list) -> arrays.put(id, list.toArray(empty)));
+        return Map.copyOf(arrays);
+    }
+
+    private static Map<String, int[]> toWeightArrays(Map<String, List<Integer>> lists) {
+        Map<String, int[]> arrays = new HashMap<>();
+        lists.forEach((id, list) -> arrays.put(id, list.stream().mapToInt(Integer::intValue).toArray()));
+        return Map.copyOf(arrays);
+    }
+
+    private static Queue[] queuesWithRole(SimulationState state, QueueRole role) {
+        return state.getQueues().stream()
+                .filter(queue -> QueueRole.of(queue) == role)
+                .sorted(Comparator.comparing(Queue::getId))
+                .toArray(Queue[]::new);
+    }
+
+    private static int connectionNumber(Connection connection) {
+        try {
+            return Integer.parseInt(connection.getId().substring(1));
+        } catch (RuntimeException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /// strongly connected components with more than one element (or a self loop),
+    /// i.e. rework loops products can circulate in (Tarjan, iterative)
+    private static List<List<String>> findCycles(SimulationState state) {
+        List<String> nodes = new ArrayList<>();
+        state.getQueues().forEach(q -> nodes.add(q.getId()));
+        state.getMachines().forEach(m -> nodes.add(m.getId()));
+
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Set<String> onStack = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        List<List<String>> cycles = new ArrayList<>();
+        int counter = 0;
+
+        for (String root : nodes) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            // explicit DFS stack of (node, remaining successors)
+            Deque<Map.Entry<String, Iterator<Connection>>> work = new ArrayDeque<>();
+            index.put(root, counter);
+            lowLink.put(root, counter++);
+            stack.push(root);
+            onStack.add(root);
+            work.push(Map.entry(root, state.getConnectionsFrom(root).iterator()));
+
+            while (!work.isEmpty()) {
+                String node = work.peek().getKey();
+                Iterator<Connection> successors = work.peek().getValue();
+                if (successors.hasNext()) {
+                    String next = successors.next().getTargetId();
+                    if (!index.containsKey(next)) {
+                        index.put(next, counter);
+                        lowLink.put(next, counter++);
+                        stack.push(next);
+                        onStack.add(next);
+                        work.push(Map.entry(next, state.getConnectionsFrom(next).iterator()));
+                    } else if (onStack.contains(next)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(next)));
+                    }
+                    continue;
+                }
+                work.pop();
+                if (!work.isEmpty()) {
+                    String parent = work.peek().getKey();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<String> component = new ArrayList<>();
+                    String member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(node));
+                    boolean selfLoop = state.getConnectionsFrom(node).stream()
+                            .anyMatch(c -> c.getTargetId().equals(node));
+                    if (component.size() > 1 || selfLoop) {
+                        Collections.sort(component);
+                        cycles.add(List.copyOf(component));
+                    }
+                }
+            }
+        }
+        return List.copyOf(cycles);
+    }
+
+    /// queues no product from any source can ever reach
+    private static List<String> findUnreachableQueues(SimulationState state, Queue[] sources) {
+        Set<String> reached = new HashSet<>();
+        Deque<String> frontier = new ArrayDeque<>();
+        for (Queue source : sources) {
+            reached.add(source.getId());
+            frontier.add(source.getId());
+        }
+        while (!frontier.isEmpty()) {
+            for (Connection connection : state.getConnectionsFrom(frontier.poll())) {
+                if (reached.add(connection.getTargetId())) {
+                    frontier.add(connection.getTargetId());
+                }
+            }
+        }
+        List<String> unreachable = new ArrayList<>();
+        for (Queue queue : state.getQueues()) {
+            if (!reached.contains(queue.getId())) {
+                unreachable.add(queue.getId());
+            }
+        }
+        Collections.sort(unreachable);
+        return List.copyOf(unreachable);
+    }
+}
@@ -0,0 +1,135 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+
+import java.util.List;
+
+/**
+ * Busy and blocked server counts of one machine, shared by the servers
+ * working it. The machine's reported state is derived from the counts:
+ * idle with no server busy, blocked when every busy server is holding
+ * finished products for a full queue, processing otherwise. Every change
+ * of the counts is also timed into the machine's utilization stats
+ */
+public final class ServerPool {
+
+    private final Machine machine;
+    private int busy; // guarded by this, includes blocked servers
+    private int blocked; // guarded by this
+
+    public ServerPool(Machine machine) {
+        this.machine = machine;
+        reset();
+    }
+
+    /// number of servers the machine is configured for (at least 1)
+    public static int serversOf(Machine machine) {
+        return Math.max(1, machine.getServers());
+    }
+
+    public synchronized int getBusy() {
+        return busy;
+    }
+
+    /// true if another server may start work
+    public synchronized boolean hasIdleServer() {
+        return busy < serversOf(machine);
+    }
+
+    /// a server started on a batch (a single product is a batch of 1)
+    public synchronized void started(String color, int batchSize) {
+        busy++;
+        machine.setCurrentProductColor(color);
+        machine.setCurrentBatchSize(batchSize);
+        publish();
+    }
+
+    /// a server is holding finished products for a full queue
+    public synchronized void blocked() {
+        blocked++;
+        publish();
+    }
+
+    public synchronized void unblocked() {
+        blocked = Math.max(0, blocked - 1);
+        publish();
+    }
+
+    /// a server handed off everything it held and is free again
+    public synchronized void finished() {
+        busy = Math.max(0, busy - 1);
+        if (busy == 0) {
+            machine.setCurrentProductColor(null);
+            machine.setCurrentBatchSize(0);
+        }
+        publish();
+    }
+
+    /// products taken from an input, held until handed on
+    public synchronized void took(Product product) {
+        machine.getHeldProducts().add(product);
+        countHeld();
+    }
+
+    public synchronized void took(List<Product> products) {
+        machine.getHeldProducts().addAll(products);
+        countHeld();
+    }
+
+    /// products put into an output (or dropped there, or given back), no longer held
+    public synchronized void handedOn(Product product) {
+        machine.getHeldProducts().remove(product);
+        countHeld();
+    }
+
+    public synchronized void handedOn(List<Product> products) {
+        machine.getHeldProducts().removeAll(products);
+        countHeld();
+    }
+
+    /// finished products discarded because the machine has no output
+    public synchronized void unrouted(Product product) {
+        unrouted(List.of(product));
+    }
+
+    public synchronized void unrouted(List<Product> products) {
+        machine.setUnroutedCount(machine.getUnroutedCount() + products.size());
+        handedOn(products);
+    }
+
+    /// back to all servers idle, e.g. when the machine's servers are restarted
+    public synchronized void reset() {
+        busy = 0;
+        blocked = 0;
+        markIdle(machine);
+    }
+
+    /// show a machine with no servers at work and nothing in hand; whatever it
+    /// held must have been put back first (SimulationService.returnHeldProducts)
+    public static void markIdle(Machine machine) {
+        machine.getUtilization().update(System.nanoTime(), serversOf(machine), 0, 0);
+        machine.setBusyServers(0);
+        machine.getHeldProducts().clear();
+        machine.setProductCount(0);
+        machine.setState("idle");
+        machine.setCurrentProductColor(null);
+        machine.setCurrentBatchSize(0);
+    }
+
+    private void countHeld() {
+        machine.setProductCount(machine.getHeldProducts().size());
+    }
+
+    private void publish() {
+        machine.getUtilization().update(System.nanoTime(), serversOf(machine), busy, blocked);
+        machine.setBusyServers(busy);
+        if (busy == 0) {
+            machine.setState("idle");
+        } else if (blocked >= busy) {
+            machine.setState("blocked");
+        } else {
+            machine.setState("processing");
+        }
+    }
+}
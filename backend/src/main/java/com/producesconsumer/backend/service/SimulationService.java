@@ -1,17 +1,33 @@
 package com.producesconsumer.backend.service;
 
+import com.producesconsumer.backend.dto.DistributionRequest;
+import com.producesconsumer.backend.dto.FastForwardResult;
+import com.producesconsumer.backend.dto.FlowStats;
+import com.producesconsumer.backend.dto.LatencyReport;
+import com.producesconsumer.backend.dto.QueueStats;
+import com.producesconsumer.backend.dto.SinkStats;
+import com.producesconsumer.backend.dto.SourceStats;
+import com.producesconsumer.backend.dto.TopologyReport;
 import com.producesconsumer.backend.model.*;
 import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.observer.MachineObserver;
 import com.producesconsumer.backend.observer.QueueEventObserver;
+import com.producesconsumer.backend.strategy.InputPolicyType;
+import com.producesconsumer.backend.strategy.RoutingStrategyType;
+import com.producesconsumer.backend.strategy.TimeDistributionType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Main simulation service - handles all state management and simulation control
@@ -21,22 +37,64 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SimulationService {
 
+    // how long stopSimulation waits for a generator or the engine to leave its loop
+    private static final long STOP_TIMEOUT_MS = 5000;
+
     private final EventService eventService;
+    private final EventBroadcaster eventBroadcaster;
     private final SimulationState state = new SimulationState();
 
     private final QueueService queueService;
     private final QueueEventObserver queueEventObserver;
     private final MachineProcessingService machineProcessingService;
-    private InputGenerator currentGenerator;
-    private Future<?> generatorFuture;
+    private final ExecutorService machineExecutorService; // shared with machine runners
+    // one arrival process per source queue (threaded engine), by queue id
+    private final Map<String, InputGenerator> generators = new HashMap<>();
+    private DiscreteEventEngine currentEngine;
+    // compiled routes, swapped as a whole on every structural edit so running
+    // machines pick up rewiring without a stop/start
+    private final AtomicReference<RoutingTopology> topology = new AtomicReference<>(RoutingTopology.EMPTY);
+    // told about every machine update of the live line, replays excluded
+    private final List<MachineObserver> machineObservers = new CopyOnWriteArrayList<>();
+    private long topologyVersion = 0;
+
+    // "realtime" = one MachineRunner thread per machine, "discrete" = event calendar with virtual clock
+    @Value("${simulation.engine:realtime}")
+    private String engine;
+    // virtual-to-wall clock ratio for the discrete engine while the UI is watching
+    @Value("${simulation.speed:1.0}")
+    private double speed;
+    // output routing given to new machines
+    @Value("${simulation.routing.default-strategy:random}")
+    private String defaultRouting;
+    // bound and overflow behaviour given to new queues (0 = unbounded)
+    @Value("${simulation.queue.default-capacity:0}")
+    private int defaultQueueCapacity;
+    @Value("${simulation.queue.default-overflow:block}")
+    private String defaultQueueOverflow;
+    // input discipline given to new machines
+    @Value("${simulation.input.default-policy:round-robin}")
+    private String defaultInputPolicy;
+    // products a new machine takes per cycle, and how long it waits to fill a batch
+    @Value("${simulation.machine.default-batch-size:1}")
+    private int defaultBatchSize;
+    @Value("${simulation.machine.default-batch-timeout-ms:0}")
+    private int defaultBatchTimeoutMs;
+    // products a new machine works on in parallel
+    @Value("${simulation.machine.default-servers:1}")
+    private int defaultServers;
+    // empirical distributions may only read sample files from here
+    @Value("${simulation.samples.dir:samples}")
+    private String samplesDir;
+    // how long a snapshot may hold producers at the cut before it is logged
+    @Value("${simulation.snapshot.pause-budget-ms:1}")
+    private long snapshotPauseBudgetMs;
     // private Map<String, Queue> queueMap = new TreeMap<>((s1, s2) -> {
     // int v1 = Integer.parseInt(s1.replace("Q", ""));
     // int v2 = Integer.parseInt(s2.replace("Q", ""));
     // return Integer.compare(v1, v2);
     // });
 
-    private final ExecutorService generatorExecutor = Executors.newSingleThreadExecutor();
-
     private int queueCounter = 0;
     private int machineCounter = 0;
     private int connectionCounter = 0;
@@ -71,24 +129,14 @@ public class SimulationService {
     public Queue addQueue(double x, double y) {
         Queue queue = new Queue();
 
-        int lastVal = -1;
-        int queueId;
-        List<Queue> queues = this.state.getQueues();
-
-        for (Queue value : queues) {
-            int curr_val = Integer.parseInt(value.getId().replace("Q", ""));
-            if (curr_val - lastVal > 1) {
-                break;
-            }
-            lastVal = curr_val;
-        }
-
-        queueId = lastVal + 1;
-
-        queue.setId("Q" + queueId);
+        // reuse the lowest free number so a deleted Q0 can be recreated
+        queue.setId("Q" + state.nextFreeQueueNumber());
         queue.setX(x);
         queue.setY(y);
-        state.getQueues().add(queueId, queue);
+        queue.setCapacity(Math.max(0, defaultQueueCapacity));
+        queue.setOverflowPolicy(QueueOverflow.fromName(defaultQueueOverflow).displayName());
+        queue.setRole(QueueRole.defaultFor(queue.getId()).displayName());
+        state.addQueue(queue);
 
         // register observer for this queue
         queueService.registerObserver(queueEventObserver);
@@ -96,56 +144,64 @@ public class SimulationService {
         log.info("Queue observer registered for queue: {}", queue.getId());
 
         log.info("Added queue: {}", queue.getId());
+        recompileTopology();
         broadcastState();
         return queue;
     }
 
     public void deleteQueue(String id) {
-        // state.getQueues().removeIf(q -> q.getId().equals(id));
-        state.getConnections().removeIf(c -> c.getSourceId().equals(id) || c.getTargetId().equals(id));
-
         queueService.unregisterObserver(queueEventObserver);
-        // queueMap.remove(id);
-        this.state.getQueues().removeIf(queue -> queue.getId().equals(id));
+        // also drops every connection touching the queue
+        state.removeQueue(id);
         log.info("Queue observer unregistered for queue: {}", id);
 
         log.info("Deleted queue: {}", id);
+        recompileTopology();
         broadcastState();
     }
 
     public void updateQueuePosition(String id, double x, double y) {
-        state.getQueues().stream()
-                .filter(q -> q.getId().equals(id))
-                .findFirst()
-                .ifPresent(q -> {
-                    q.setX(x);
-                    q.setY(y);
-                });
+        Queue queue = state.getQueue(id);
+        if (queue != null) {
+            queue.setX(x);
+            queue.setY(y);
+        }
         broadcastState();
     }
 
     public void addProductToQueue(String queueId, Product product) {
-        Queue queue = state.getQueues().stream()
-                .filter(q -> q.getId().equals(queueId))
-                .findFirst()
-                .orElse(null);
+        Queue queue = state.getQueue(queueId);
 
         if (queue != null) {
-            queueService.addProductToQueue(queue, product);
-            log.info("Added product {} to queue {}", product.getId(), queueId);
+            boolean added;
+            // a mover like any other, so checkpoints and the event log agree on it
+            queueService.getCutBarrier().enter();
+            try {
+                added = queueService.offerProductToQueue(queue, product);
+            } finally {
+                queueService.getCutBarrier().exit();
+            }
+            if (added) {
+                log.info("Added product {} to queue {}", product.getId(), queueId);
+            } else {
+                log.warn("Queue {} is full, product {} not added", queueId, product.getId());
+            }
         } else {
             log.warn("Queue not found: {}", queueId);
         }
     }
 
     public Product removeProductFromQueue(String queueId) {
-        Queue queue = state.getQueues().stream()
-                .filter(q -> q.getId().equals(queueId))
-                .findFirst()
-                .orElse(null);
+        Queue queue = state.getQueue(queueId);
 
         if (queue != null) {
-            Product product = queueService.removeProductFromQueue(queue);
+            Product product;
+            queueService.getCutBarrier().enter();
+            try {
+                product = queueService.removeProductFromQueue(queue);
+            } finally {
+                queueService.getCutBarrier().exit();
+            }
             if (product != null) {
                 log.info("Removed product {} from queue {}", product.getId(), queueId);
             }
@@ -156,11 +212,84 @@ public class SimulationService {
         }
     }
 
+    /**
+     * Bound a queue (0 = unbounded) and choose what producers do when it is
+     * full. Throws IllegalArgumentException for unknown overflow policies
+     */
+    public Queue setQueueCapacity(String id, int capacity, String overflowPolicy) {
+        QueueOverflow overflow = overflowPolicy != null ? QueueOverflow.fromName(overflowPolicy) : null;
+        Queue queue = state.getQueue(id);
+        if (queue != null) {
+            queue.setCapacity(Math.max(0, capacity));
+            if (overflow != null) {
+                queue.setOverflowPolicy(overflow.displayName());
+            }
+            log.info("Queue {} capacity set to {} ({})", id, queue.getCapacity(), queue.getOverflowPolicy());
+            // a raised bound frees blocked producers; the swap lets the discrete engine re-check too
+            queueService.signalSpace(queue);
+            recompileTopology();
+            broadcastState();
+        }
+        return queue;
+    }
+
+    /// make a queue a buffer, a source (gets its own arrival process) or a
+    /// sink (products reaching it leave the line and are counted)
+    public Queue setQueueRole(String id, String role) {
+        QueueRole parsed = QueueRole.fromName(role);
+        Queue queue = state.getQueue(id);
+        if (queue != null) {
+            queue.setRole(parsed.displayName());
+            log.info("Queue {} is now a {}", id, parsed.displayName());
+            recompileTopology(); // starts or stops its generator while running
+            broadcastState();
+        }
+        return queue;
+    }
+
+    /// arrival process of one source (null type = back to the simulation-wide default)
+    public Queue setSourceArrivals(String id, DistributionRequest request) {
+        TimeDistribution distribution = null;
+        if (request.getType() != null) {
+            distribution = toDistribution(request);
+            TimeDistributionType.check(distribution);
+        }
+        Queue queue = state.getQueue(id);
+        if (queue != null) {
+            queue.setArrivalDistribution(distribution);
+            log.info("Queue {} arrivals: {}", id, distribution == null ? "default" : distribution.getType());
+            broadcastState();
+        }
+        return queue;
+    }
+
+    /// arrivals per source and completions per sink
+    public FlowStats getFlowStats() {
+        RoutingTopology routes = topology.get();
+        FlowStats stats = new FlowStats();
+        stats.setSources(Arrays.stream(routes.sources())
+                .map(source -> SourceStats.of(source, InputGenerator.arrivalDistributionOf(source, state)))
+                .toList());
+        stats.setSinks(Arrays.stream(routes.sinks()).map(SinkStats::of).toList());
+        return stats;
+    }
+
     public Queue getQueueById(String queueId) {
+        return state.getQueue(queueId);
+    }
+
+    /// depth and wait times per queue, longest mean wait first
+    public List<QueueStats> getQueueStats() {
+        long now = System.nanoTime();
         return state.getQueues().stream()
-                .filter(q -> q.getId().equals(queueId))
-                .findFirst()
-                .orElse(null);
+                .map(queue -> QueueStats.of(queue, now))
+                .sorted(Comparator.comparingDouble(QueueStats::getMeanWaitMs).reversed())
+                .toList();
+    }
+
+    /// wait, service and end-to-end latency percentiles
+    public LatencyReport getLatencyReport() {
+        return LatencyReport.of(state);
     }
 
     // ==================== Machine Operations ====================
@@ -172,30 +301,120 @@ public class SimulationService {
         machine.setY(y);
         machine.setState("idle");
         machine.setProcessingTime(3000 + (int) (Math.random() * 4000)); // 3-7 seconds
-        state.getMachines().add(machine);
+        machine.setRoutingStrategy(RoutingStrategyType.fromName(defaultRouting).displayName());
+        machine.setInputPolicy(InputPolicyType.fromName(defaultInputPolicy).displayName());
+        machine.setBatchSize(Math.max(1, defaultBatchSize));
+        machine.setBatchTimeoutMs(Math.max(0, defaultBatchTimeoutMs));
+        machine.setServers(Math.max(1, defaultServers));
+        state.addMachine(machine);
         log.info("Added machine: {}", machine.getId());
+        recompileTopology();
+        if (state.isRunning() && currentEngine == null) {
+            machineProcessingService.startProcessing(machine, topology::get);
+        }
         broadcastState();
         return machine;
     }
 
     public void deleteMachine(String id) {
-        state.getMachines().removeIf(m -> m.getId().equals(id));
-        state.getConnections().removeIf(c -> c.getSourceId().equals(id) || c.getTargetId().equals(id));
+        // also drops every connection touching the machine
+        Machine removed = state.removeMachine(id);
+        if (removed != null) {
+            machineProcessingService.stopProcessing(removed);
+        }
         log.info("Deleted machine: {}", id);
+        recompileTopology();
         broadcastState();
     }
 
     public void updateMachinePosition(String id, double x, double y) {
-        state.getMachines().stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst()
-                .ifPresent(m -> {
-                    m.setX(x);
-                    m.setY(y);
-                });
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setX(x);
+            machine.setY(y);
+        }
         broadcastState();
     }
 
+    /**
+     * Switch a machine's output routing; a running machine picks it up with
+     * its next product. Throws IllegalArgumentException for unknown names
+     */
+    public Machine setMachineRouting(String id, String strategy) {
+        RoutingStrategyType type = RoutingStrategyType.fromName(strategy);
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setRoutingStrategy(type.displayName());
+            log.info("Machine {} routes with {}", id, type.displayName());
+            broadcastMachineUpdate(machine);
+        }
+        return machine;
+    }
+
+    /**
+     * Switch the discipline a machine takes its inputs with; a running
+     * machine uses it for its next product. Throws IllegalArgumentException
+     * for unknown names
+     */
+    public Machine setMachineInputPolicy(String id, String policy) {
+        InputPolicyType type = InputPolicyType.fromName(policy);
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setInputPolicy(type.displayName());
+            log.info("Machine {} takes inputs with {}", id, type.displayName());
+            broadcastMachineUpdate(machine);
+        }
+        return machine;
+    }
+
+    /// batch size 1 = one product per cycle; the timeout is how long a partial
+    /// batch waits for the rest (0 = start with whatever is there)
+    /// takes effect from the machine's next cycle
+    public Machine setMachineBatch(String id, int batchSize, int batchTimeoutMs) {
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setBatchSize(Math.max(1, batchSize));
+            machine.setBatchTimeoutMs(Math.max(0, batchTimeoutMs));
+            log.info("Machine {} takes batches of {} (timeout {} ms)", id, machine.getBatchSize(),
+                    machine.getBatchTimeoutMs());
+            broadcastMachineUpdate(machine);
+        }
+        return machine;
+    }
+
+    /// number of products the machine works on in parallel; a running machine
+    /// gains or loses servers right away, a removed one finishes its product first
+    public Machine setMachineServers(String id, int servers) {
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setServers(Math.max(1, servers));
+            log.info("Machine {} runs {} servers", id, machine.getServers());
+            if (state.isRunning() && currentEngine == null) {
+                machineProcessingService.resize(machine);
+            }
+            // the swap lets the discrete engine start the new servers on queued products
+            recompileTopology();
+            broadcastMachineUpdate(machine);
+        }
+        return machine;
+    }
+
+    /// fixed processing time or a distribution to draw each product's time from;
+    /// processingTime keeps the mean so the canvas label stays meaningful
+    public Machine setMachineProcessingTime(String id, DistributionRequest request) {
+        TimeDistribution distribution = toDistribution(request);
+        TimeDistributionType type = TimeDistributionType.check(distribution);
+        Machine machine = state.getMachine(id);
+        if (machine != null) {
+            machine.setProcessingTime((int) Math.round(type.meanOf(distribution)));
+            machine.setProcessingTimeDistribution(type == TimeDistributionType.FIXED ? null : distribution);
+            log.info("Machine {} processing time: {} (mean {} ms)", id, type.displayName(),
+                    machine.getProcessingTime());
+            broadcastMachineUpdate(machine);
+        }
+        return machine;
+    }
+
     // ==================== Connection Operations ====================
 
     public Connection addConnection(String sourceId, String sourceType,
@@ -206,15 +425,28 @@ public class SimulationService {
         connection.setSourceType(sourceType);
         connection.setTargetId(targetId);
         connection.setTargetType(targetType);
-        state.getConnections().add(connection);
+        state.addConnection(connection);
         log.info("Added connection: {} -> {}", sourceId, targetId);
+        recompileTopology();
         broadcastState();
         return connection;
     }
 
+    public Connection setConnectionWeight(String id, int weight) {
+        Connection connection = state.getConnection(id);
+        if (connection != null) {
+            connection.setWeight(weight);
+            log.info("Connection {} weight set to {}", id, weight);
+            recompileTopology();
+            broadcastState();
+        }
+        return connection;
+    }
+
     public void deleteConnection(String id) {
-        state.getConnections().removeIf(c -> c.getId().equals(id));
+        state.removeConnection(id);
         log.info("Deleted connection: {}", id);
+        recompileTopology();
         broadcastState();
     }
 
@@ -223,62 +455,150 @@ public class SimulationService {
     public void startSimulation() {
         // Save initial state before starting (for restart functionality)
         if (initialSnapshot == null) {
-            initialSnapshot = state.saveToSnapshot("_initial", false);
+            initialSnapshot = captureSnapshot("_initial", false);
             log.info("Initial state saved for restart");
         }
 
         state.setRunning(true);
         log.info("Simulation started");
 
-        // Map setup for search
-        Map<String, Queue> queueMap = state.getQueues().stream().collect(Collectors.toMap(Queue::getId, q -> q));
-
-        // Start machines(processing)
-        for (Machine machine : state.getMachines()) {
-            List<Queue> inputQueues = state.getConnections().stream()// stream of connections
-                    .filter(c -> c.getTargetId().equals(machine.getId())) // only connections that end at this machine
-                    .map(c -> queueMap.get(c.getSourceId())) // connection -> queue
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+        // recompiling with running set also starts the threaded generators
+        TopologyReport report = recompileTopology().getReport();
+        returnHeldProducts();
+        if (report.getSources().isEmpty()) {
+            log.warn("No source queues! No products will be generated.");
+        }
+        if (!report.getMachinesWithoutInputs().isEmpty()) {
+            log.warn("Machines without input queues: {}", report.getMachinesWithoutInputs());
+        }
+        if (!report.getUnreachableQueues().isEmpty()) {
+            log.warn("Queues unreachable from any source: {}", report.getUnreachableQueues());
+        }
+        if (!report.getCycles().isEmpty()) {
+            log.info("Routing cycles: {}", report.getCycles());
+        }
 
-            List<Queue> outputQueues = state.getConnections().stream()// stream of connections
-                    .filter(c -> c.getSourceId().equals(machine.getId())) // connections that START at this machine
-                    .map(c -> queueMap.get(c.getTargetId())) // get the target queue
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+        if ("discrete".equalsIgnoreCase(engine)) {
+            // Event calendar drives every machine and the generator from one thread
+            // (an open-ended live run always needs wall-clock pacing)
+            currentEngine = new DiscreteEventEngine(state, topology::get, queueService, this,
+                    speed > 0 ? speed : 1.0, Long.MAX_VALUE);
+            machineExecutorService.submit(currentEngine);
+        } else {
+            // Start machines(processing)
+            RoutingTopology routes = topology.get();
+            for (Machine machine : state.getMachines()) {
+                log.info("Starting machine {} with {} input queues and {} output queues",
+                        machine.getId(), routes.inputsOf(machine.getId()).length,
+                        routes.outputsOf(machine.getId()).length);
+                machineProcessingService.startProcessing(machine, topology::get);
+            }
 
-            log.info("Starting machine {} with {} input queues and {} output queues",
-                    machine.getId(), inputQueues.size(), outputQueues.size());
-            machineProcessingService.startProcessing(machine, inputQueues, outputQueues);
         }
 
-        // Input generation(source Q0)
-        Queue q0 = queueMap.get("Q0");
+        eventService.publishEvent(new SSE("SIMULATION_STARTED", null));
+        broadcastState();
+    }
+
+    /// default gap between arrivals at a source, used from each generator's next
+    /// arrival (sources with their own distribution keep it)
+    public TimeDistribution setArrivalDistribution(DistributionRequest request) {
+        TimeDistribution distribution = toDistribution(request);
+        TimeDistributionType type = TimeDistributionType.check(distribution);
+        state.setArrivalDistribution(distribution);
+        log.info("Arrivals: {} (mean {} ms)", type.displayName(), Math.round(type.meanOf(distribution)));
+        broadcastState();
+        return distribution;
+    }
 
-        if (q0 != null) {
-            currentGenerator = new InputGenerator(q0, queueService, state);
-            generatorFuture = generatorExecutor.submit(currentGenerator);
+    /// seed for every random stream of the next run (null = unseeded); a seeded
+    /// fast-forward from the same state gives the same result every time
+    public Long setRandomSeed(Long seed) {
+        state.setRandomSeed(seed);
+        log.info("Random seed set to {}, used from the next start", seed);
+        broadcastState();
+        return seed;
+    }
+
+    private TimeDistribution toDistribution(DistributionRequest request) {
+        TimeDistribution distribution = new TimeDistribution();
+        distribution.setType(TimeDistributionType.fromName(request.getType()).displayName());
+        distribution.setMean(request.getMean());
+        distribution.setStdDev(request.getStdDev());
+        distribution.setMin(request.getMin());
+        distribution.setMax(request.getMax());
+        distribution.setShape(request.getShape());
+        if (request.getSamplesFile() != null && !request.getSamplesFile().isBlank()) {
+            distribution.setSamplesFile(request.getSamplesFile());
+            distribution.setSamples(readSamples(request.getSamplesFile()));
         } else {
-            log.warn("Q0 not found! No products will be generated.");
+            distribution.setSamples(request.getSamples());
         }
+        return distribution;
+    }
 
-        eventService.publishEvent(new SSE("SIMULATION_STARTED", null));
-        broadcastState();
+    /// durations in ms separated by whitespace, commas or semicolons
+    private List<Double> readSamples(String file) {
+        Path base = Path.of(samplesDir).toAbsolutePath().normalize();
+        Path path = base.resolve(file).normalize();
+        if (!path.startsWith(base)) {
+            throw new IllegalArgumentException("samples file must be inside " + samplesDir);
+        }
+        String content;
+        try {
+            content = Files.readString(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read samples file " + file);
+        }
+        List<Double> samples = new ArrayList<>();
+        for (String token : content.split("[\\s,;]+")) {
+            if (token.isBlank()) {
+                continue;
+            }
+            try {
+                double value = Double.parseDouble(token);
+                if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+                    throw new IllegalArgumentException("samples must be non-negative durations: " + token);
+                }
+                samples.add(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a number in samples file: " + token);
+            }
+        }
+        log.info("Read {} samples from {}", samples.size(), path);
+        return samples;
     }
 
+    /// returns once every runner, generator and engine thread has left its
+    /// loop, so whatever runs next (fast-forward, a restore, a replay) is
+    /// alone with the queues and what the machines hold
     public void stopSimulation() {
         state.setRunning(false);
 
-        // Stop Machines
+        // Stop Machines (waits for their runners)
         machineProcessingService.stopAll();
 
-        // Stop generator
-        if (currentGenerator != null) {
-            currentGenerator.stop();
+        // Stop generators
+        List<InputGenerator> stopped;
+        synchronized (this) {
+            stopped = new ArrayList<>(generators.values());
+            syncGenerators(RoutingTopology.EMPTY);
         }
-        if (generatorFuture != null) {
-            generatorFuture.cancel(true);
-            generatorFuture = null;
+
+        // Stop discrete-event engine
+        DiscreteEventEngine engine = currentEngine;
+        if (engine != null) {
+            engine.stop();
+            currentEngine = null;
+        }
+
+        for (InputGenerator generator : stopped) {
+            if (!generator.awaitStopped(STOP_TIMEOUT_MS)) {
+                log.warn("Arrivals at {} did not stop within {} ms", generator.getTargetQueue().getId(), STOP_TIMEOUT_MS);
+            }
+        }
+        if (engine != null && !engine.awaitStopped(STOP_TIMEOUT_MS)) {
+            log.warn("Discrete-event engine did not stop within {} ms", STOP_TIMEOUT_MS);
         }
 
         log.info("Simulation stopped");
@@ -286,29 +606,162 @@ public class SimulationService {
         broadcastState();
     }
 
+    /**
+     * Run the discrete-event engine as fast as possible for the given amount of
+     * virtual time on the calling thread, starting from the current state
+     */
+    public FastForwardResult fastForward(long durationMs) {
+        stopSimulation();
+
+        int generatedBefore = state.getTotalProductsGenerated();
+        recompileTopology();
+        returnHeldProducts();
+        long completedBefore = completedCount();
+        DiscreteEventEngine fastEngine = new DiscreteEventEngine(state, topology::get,
+                queueService, this, 0, durationMs);
+
+        long startNanos = System.nanoTime();
+        fastEngine.run();
+        long wallMs = (System.nanoTime() - startNanos) / 1_000_000;
+
+        // the engine put back what its machines held at the horizon, so
+        // generated = completed + queued (+ dropped/unrouted) still holds
+        FastForwardResult result = new FastForwardResult();
+        result.setSimulatedMs(fastEngine.getClock());
+        result.setWallMs(wallMs);
+        result.setEventsProcessed(fastEngine.getEventsProcessed());
+        result.setProductsGenerated(state.getTotalProductsGenerated() - generatedBefore);
+        result.setProductsCompleted(completedCount() - completedBefore);
+        log.info("Fast-forwarded {} ms of simulated time in {} ms ({} events)",
+                result.getSimulatedMs(), wallMs, result.getEventsProcessed());
+
+        journalState();
+        broadcastState();
+        return result;
+    }
+
+    // ==================== Routing Topology ====================
+
+    public RoutingTopology getTopology() {
+        return topology.get();
+    }
+
+    /**
+     * Compile the current graph and swap it in; running machines re-read
+     * their routes on their next cycle
+     */
+    public synchronized RoutingTopology recompileTopology() {
+        RoutingTopology compiled = RoutingTopology.compile(state, ++topologyVersion);
+        topology.set(compiled);
+        machineProcessingService.topologyChanged();
+        if (state.isRunning() && !"discrete".equalsIgnoreCase(engine)) {
+            syncGenerators(compiled);
+        }
+        return compiled;
+    }
+
+    /// one running generator per source of the given topology: new sources
+    /// start one, queues that stopped being sources (or were deleted) lose theirs
+    private synchronized void syncGenerators(RoutingTopology routes) {
+        Map<String, Queue> sources = new HashMap<>();
+        for (Queue source : routes.sources()) {
+            sources.put(source.getId(), source);
+        }
+        for (String id : new ArrayList<>(generators.keySet())) {
+            if (sources.get(id) != generators.get(id).getTargetQueue()) {
+                generators.remove(id).stop();
+                log.info("Stopped arrivals at {}", id);
+            }
+        }
+        sources.forEach((id, source) -> {
+            if (!generators.containsKey(id)) {
+                InputGenerator generator = new InputGenerator(source, queueService, state);
+                generators.put(id, generator);
+                machineExecutorService.submit(generator);
+                log.info("Started arrivals at {}", id);
+            }
+        });
+    }
+
+    /// what machines still hold - cut off mid-service by a stop, or restored
+    /// from a snapshot taken while they were busy - goes back to the head of
+    /// each machine's first input before new servers start out empty
+    /// (a machine without inputs counts it as unrouted)
+    private void returnHeldProducts() {
+        RoutingTopology routes = topology.get();
+        CutBarrier cut = queueService.getCutBarrier();
+        for (Machine machine : state.getMachines()) {
+            if (machine.getHeldProducts().isEmpty()) {
+                continue;
+            }
+            cut.enter();
+            try {
+                List<Product> held = List.copyOf(machine.getHeldProducts());
+                Queue[] inputs = routes.inputsOf(machine.getId());
+                if (inputs.length > 0) {
+                    queueService.returnProductsToQueue(inputs[0], held);
+                } else {
+                    machine.setUnroutedCount(machine.getUnroutedCount() + held.size());
+                }
+                ServerPool.markIdle(machine);
+            } finally {
+                cut.exit();
+            }
+        }
+    }
+
+    /// a fast-forward or a restart changes queues and machines directly, past
+    /// the queue journal; log what they hold now, so replaying the event log
+    /// across it stays in step with the line
+    private void journalState() {
+        if (inReplayMode) {
+            return;
+        }
+        state.getQueues().forEach(queueService::journalContents);
+        for (Machine machine : state.getMachines()) {
+            machineObservers.forEach(observer -> observer.onMachineChanged(machine));
+        }
+    }
+
+    private long completedCount() {
+        return Arrays.stream(topology.get().sinks()).mapToLong(Queue::getCompletedCount).sum();
+    }
+
     public SimulationState newSimulation() {
         stopSimulation();
         // queueMap.clear();
-        state.getQueues().clear();
-        state.getMachines().clear();
-        state.getConnections().clear();
+        state.clear();
         queueCounter = 0;
         machineCounter = 0;
         connectionCounter = 0;
         liveSessionBackup = null;
         initialSnapshot = null; // Clear so next start saves fresh initial state
         state.setTotalProductsGenerated(0); // Reset total products counter
+        recompileTopology();
         log.info("New simulation created");
         broadcastState();
         return state;
     }
 
+    /// snapshot of the running line at one consistent cut: producers pause
+    /// only while the queue contents are referenced, the copy runs after
+    public SimulationSnapshot captureSnapshot(String label, boolean preserveRunningState) {
+        CutBarrier cut = queueService.getCutBarrier();
+        SimulationSnapshot snapshot = state.saveToSnapshot(label, preserveRunningState, cut);
+        long pauseNanos = cut.getLastPauseNanos();
+        if (pauseNanos > TimeUnit.MILLISECONDS.toNanos(snapshotPauseBudgetMs)) {
+            log.warn("Snapshot {} held producers for {} ms (budget {} ms)",
+                    label, pauseNanos / 1e6, snapshotPauseBudgetMs);
+        }
+        return snapshot;
+    }
+
     public void backupLiveState() {
         // Save current state including running status
         if (this.inReplayMode)
             return;
         // do not update the liveSession since it's also a replay
-        this.liveSessionBackup = state.saveToSnapshot("_internal_backup", true);
+        this.liveSessionBackup = captureSnapshot("_internal_backup", true);
         this.inReplayMode = true;
         // next backup will consider state as a ReplayState
         log.info("Live session backed up");
@@ -324,11 +777,13 @@ public class SimulationService {
 
             // Load state preserving the 'wasRunning' flag
             state.loadFromSnapshot(liveSessionBackup, true);
+            this.inReplayMode = false; // live machine updates are observed again
 
             if (wasRunning) {
                 log.info("Resuming simulation threads after restoration");
                 startSimulation();
             } else {
+                recompileTopology(); // routes of the restored graph
                 broadcastState();
             }
             return state;
@@ -347,16 +802,18 @@ public class SimulationService {
             stopSimulation();
             // Clear product counts from queues and machines
             for (Queue queue : state.getQueues()) {
-                queue.setProductCount(0);
-                queue.getProducts().clear();
+                queue.clear();
             }
             for (Machine machine : state.getMachines()) {
                 machine.setProductCount(0);
-                machine.setCurrentProductColor(null);
-                machine.setState("idle");
+                machine.setUnroutedCount(0);
+                machine.getServiceTimeStats().reset();
+                machine.getUtilization().reset();
+                ServerPool.markIdle(machine);
             }
             // Reset total products counter
             state.setTotalProductsGenerated(0);
+            journalState();
             // Broadcast cleared state before restarting
             broadcastState();
             startSimulation();
@@ -371,6 +828,7 @@ public class SimulationService {
         // Reset total products counter
         state.setTotalProductsGenerated(0);
         log.info("Restored initial state for restart");
+        journalState();
 
         // Broadcast the restored state immediately so frontend updates
         broadcastState();
@@ -385,15 +843,30 @@ public class SimulationService {
 
     // ==================== Event Broadcasting ====================
 
+    // State, machine and flash updates are coalesced into fixed-rate frames
+
     public void broadcastState() {
-        eventService.publishEvent(new SSE("STATE_UPDATE", state));
+        eventBroadcaster.publishState(state);
     }
 
     public void broadcastMachineFlash(String machineId) {
-        eventService.publishEvent(new SSE("MACHINE_FLASH", machineId));
+        eventBroadcaster.publishFlash(machineId);
     }
 
     public void broadcastMachineUpdate(Machine machine) {
-        eventService.publishEvent(new SSE("MACHINE_UPDATE", machine));
+        eventBroadcaster.publishMachine(machine);
+        if (!inReplayMode) {
+            machineObservers.forEach(observer -> observer.onMachineChanged(machine));
+        }
+    }
+
+    public void registerMachineObserver(MachineObserver observer) {
+        if (!machineObservers.contains(observer)) {
+            machineObservers.add(observer);
+        }
+    }
+
+    public void unregisterMachineObserver(MachineObserver observer) {
+        machineObservers.remove(observer);
     }
 }
@@ -0,0 +1,260 @@
+package com.producesconsumer.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.producesconsumer.backend.model.Checkpoint;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationSnapshot;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot layout, streamed through a Smile generator/parser
+ * so neither side ever holds the encoded snapshot in memory. Products are
+ * stored column-wise per queue - an array of ids and an array of indices
+ * into one color table for the whole file, since a handful of colors repeat
+ * across every product. Machines, connections and distributions are few and
+ * go through the regular Jackson bindings. Like the JSON form, it carries no
+ * lifecycle stamps or statistics
+ */
+public final class SnapshotCodec {
+
+    /// bumped whenever the layout changes; newer files are refused
+    static final int VERSION = 1;
+
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory())
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // removed ids only, so far below this for any real line
+    private static final int MAX_CHECKPOINT_HEADER = 64 << 20;
+
+    private SnapshotCodec() {
+    }
+
+    /// stream the snapshot to out; out is left open
+    public static void write(SimulationSnapshot snapshot, OutputStream out) throws IOException {
+        SimulationState state = snapshot.getState();
+        Map<String, Integer> colors = new HashMap<>();
+        List<String> colorTable = new ArrayList<>();
+        for (Queue queue : state.getQueues()) {
+            for (Product product : queue.getProducts()) {
+                colors.computeIfAbsent(product.getColor(), color -> {
+                    colorTable.add(color);
+                    return colorTable.size() - 1;
+                });
+            }
+        }
+
+        try (JsonGenerator gen = SMILE.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeNumberField("version", VERSION);
+            gen.writeStringField("id", snapshot.getId());
+            gen.writeStringField("timestamp", snapshot.getTimestamp());
+            gen.writeStringField("label", snapshot.getLabel());
+            gen.writeStringField("simulationId", state.getSimulationId());
+            gen.writeBooleanField("isRunning", state.isRunning());
+            gen.writeNumberField("totalProductsGenerated", state.getTotalProductsGenerated());
+            if (state.getRandomSeed() != null) {
+                gen.writeNumberField("randomSeed", state.getRandomSeed());
+            }
+            writeDistribution(gen, "arrivalDistribution", state.getArrivalDistribution());
+
+            gen.writeArrayFieldStart("colors");
+            for (String color : colorTable) {
+                gen.writeString(color);
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("queues");
+            for (Queue queue : state.getQueues()) {
+                writeQueue(gen, queue, colors);
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("machines");
+            for (Machine machine : state.getMachines()) {
+                SMILE.writeValue(gen, machine);
+            }
+            gen.writeEndArray();
+
+            gen.writeArrayFieldStart("connections");
+            for (Connection connection : state.getConnections()) {
+                SMILE.writeValue(gen, connection);
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeQueue(JsonGenerator gen, Queue queue, Map<String, Integer> colors) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("id", queue.getId());
+        gen.writeNumberField("x", queue.getX());
+        gen.writeNumberField("y", queue.getY());
+        gen.writeNumberField("capacity", queue.getCapacity());
+        gen.writeStringField("overflowPolicy", queue.getOverflowPolicy());
+        gen.writeStringField("role", queue.getRole());
+        writeDistribution(gen, "arrivalDistribution", queue.getArrivalDistribution());
+        // ids strictly before colors, the reader creates the products from the ids
+        gen.writeArrayFieldStart("productIds");
+        for (Product product : queue.getProducts()) {
+            gen.writeString(product.getId());
+        }
+        gen.writeEndArray();
+        gen.writeArrayFieldStart("productColors");
+        for (Product product : queue.getProducts()) {
+            gen.writeNumber(colors.get(product.getColor()));
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writeDistribution(JsonGenerator gen, String field, TimeDistribution distribution)
+            throws IOException {
+        if (distribution != null) {
+            gen.writeFieldName(field);
+            SMILE.writeValue(gen, distribution);
+        }
+    }
+
+    /// read a snapshot written by write(); in is left open
+    public static SimulationSnapshot read(InputStream in) throws IOException {
+        SimulationSnapshot snapshot = new SimulationSnapshot();
+        SimulationState state = new SimulationState();
+        List<String> colors = new ArrayList<>();
+
+        try (JsonParser parser = SMILE.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a binary snapshot");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "version" -> {
+                        if (parser.getIntValue() > VERSION) {
+                            throw new IOException("Snapshot format version " + parser.getIntValue()
+                                    + " is newer than this build reads (" + VERSION + ")");
+                        }
+                    }
+                    case "id" -> snapshot.setId(parser.getValueAsString());
+                    case "timestamp" -> snapshot.setTimestamp(parser.getValueAsString());
+                    case "label" -> snapshot.setLabel(parser.getValueAsString());
+                    case "simulationId" -> state.setSimulationId(parser.getValueAsString());
+                    case "isRunning" -> state.setRunning(parser.getBooleanValue());
+                    case "totalProductsGenerated" -> state.setTotalProductsGenerated(parser.getIntValue());
+                    case "randomSeed" -> state.setRandomSeed(parser.getLongValue());
+                    case "arrivalDistribution" ->
+                            state.setArrivalDistribution(SMILE.readValue(parser, TimeDistribution.class));
+                    case "colors" -> {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            colors.add(parser.getValueAsString());
+                        }
+                    }
+                    case "queues" -> {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            state.addQueue(readQueue(parser, colors));
+                        }
+                    }
+                    case "machines" -> {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            state.addMachine(SMILE.readValue(parser, Machine.class));
+                        }
+                    }
+                    case "connections" -> {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            state.addConnection(SMILE.readValue(parser, Connection.class));
+                        }
+                    }
+                    default -> parser.skipChildren(); // written by a later build, not needed here
+                }
+            }
+        }
+        snapshot.setState(state);
+        return snapshot;
+    }
+
+    /// a checkpoint: its header, length-prefixed so the entities after it get
+    /// a parser of their own, then the entities in the snapshot layout
+    public static void writeCheckpoint(Checkpoint checkpoint, OutputStream out) throws IOException {
+        byte[] header = SMILE.writeValueAsBytes(checkpoint);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(header.length);
+        data.write(header);
+        SimulationSnapshot entities = new SimulationSnapshot();
+        entities.setId(checkpoint.getState().getSimulationId());
+        entities.setLabel("checkpoint-" + checkpoint.getSequence());
+        entities.setTimestamp(checkpoint.getTimestamp());
+        entities.setState(checkpoint.getState());
+        write(entities, data);
+        data.flush();
+    }
+
+    public static Checkpoint readCheckpoint(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int length = data.readInt();
+        if (length < 0 || length > MAX_CHECKPOINT_HEADER) {
+            throw new IOException("Not a checkpoint");
+        }
+        Checkpoint checkpoint = SMILE.readValue(data.readNBytes(length), Checkpoint.class);
+        checkpoint.setState(read(data).getState());
+        return checkpoint;
+    }
+
+    private static Queue readQueue(JsonParser parser, List<String> colors) throws IOException {
+        Queue queue = new Queue();
+        List<Product> products = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> queue.setId(parser.getValueAsString());
+                case "x" -> queue.setX(parser.getDoubleValue());
+                case "y" -> queue.setY(parser.getDoubleValue());
+                case "capacity" -> queue.setCapacity(parser.getIntValue());
+                case "overflowPolicy" -> queue.setOverflowPolicy(parser.getValueAsString());
+                case "role" -> queue.setRole(parser.getValueAsString());
+                case "arrivalDistribution" ->
+                        queue.setArrivalDistribution(SMILE.readValue(parser, TimeDistribution.class));
+                case "productIds" -> {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        Product product = new Product();
+                        product.setId(parser.getValueAsString());
+                        products.add(product);
+                    }
+                }
+                case "productColors" -> {
+                    int i = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        products.get(i++).setColor(colors.get(parser.getIntValue()));
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        queue.getProducts().addAll(products);
+        queue.setProductCount(products.size());
+        return queue;
+    }
+}
@@ -1,32 +1,47 @@
 package com.producesconsumer.backend.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.PrettyPrinter;
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.producesconsumer.backend.dto.SnapshotInfo;
+import com.producesconsumer.backend.model.SSE;
 import com.producesconsumer.backend.model.SimulationSnapshot;
-import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.SnapshotFormat;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Instant;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 
 /**
  * SimulationSnapshot service - manages snapshots (Memento Caretaker)
+ * Files are streamed to and from disk, never built up as one string; the
+ * compact binary layout (.snap) is the default, JSON (.json) stays available
+ * as a readable export and both load by label. Saving only captures the
+ * state on the caller's thread; encoding and writing happen on a single
+ * background writer, which announces the result with SNAPSHOT_SAVED (or
+ * SNAPSHOT_FAILED). Until then the snapshot replays from memory
  */
 @Service
 @Slf4j
@@ -37,14 +52,69 @@ public class SnapshotService {
 
     private int snapshotCounter = 0;
 
-    @Autowired
-    private SimulationService simulationService;
+    private final SimulationService simulationService;
+    private final EventService eventService;
 
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
-    private final String snapshotsDir = "snapshots";
+    private final SnapshotFormat defaultFormat;
 
-    public SnapshotService(SimulationService simulationService) {}
+    private final String snapshotsDir;
+
+    // one thread, so writes of the same label land in the order they were captured
+    private final ExecutorService writer;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    // outcome of the latest write per label, for the snapshot list
+    private final Map<String, SnapshotInfo> writes = new ConcurrentHashMap<>();
+
+    private final Timer captureTimer;
+    private final Timer writeTimer;
+    private final Timer loadFromMemoryTimer;
+    private final Timer loadFromFileTimer;
+
+    public SnapshotService(SimulationService simulationService,
+            EventService eventService,
+            MeterRegistry meterRegistry,
+            @Value("${simulation.snapshot.format:binary}") String defaultFormat,
+            @Value("${simulation.snapshot.dir:snapshots}") String snapshotsDir) {
+        this.simulationService = simulationService;
+        this.eventService = eventService;
+        this.defaultFormat = SnapshotFormat.fromName(defaultFormat);
+        this.snapshotsDir = snapshotsDir;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.captureTimer = Timer.builder("simulation.snapshot.capture")
+                .description("Copying the live state into a snapshot, on the requesting thread")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("simulation.snapshot.write")
+                .description("Encoding a captured snapshot and writing it to disk, in the background")
+                .register(meterRegistry);
+        Gauge.builder("simulation.snapshot.pending", pendingWrites, AtomicInteger::get)
+                .description("Captured snapshots waiting to be written")
+                .register(meterRegistry);
+        this.loadFromMemoryTimer = loadTimer(meterRegistry, "memory");
+        this.loadFromFileTimer = loadTimer(meterRegistry, "file");
+    }
+
+    private static Timer loadTimer(MeterRegistry meterRegistry, String source) {
+        return Timer.builder("simulation.snapshot.load")
+                .description("Reading a snapshot and restoring the state from it")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /// let queued writes finish so no captured snapshot is lost on shutdown
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} snapshot writes still pending at shutdown", pendingWrites.get());
+        }
+    }
 
     public List<SimulationSnapshot> getSnapshots() {
         List<SimulationSnapshot> snapshotList = new ArrayList<>();
@@ -57,18 +127,23 @@ public class SnapshotService {
     public List<SnapshotInfo> getSnapshotsInfo() {
         List<SnapshotInfo> snapshotList = new ArrayList<>();
         for (Map.Entry<String, SimulationSnapshot> entry : snapshots.entrySet()) {
-            SnapshotInfo snapshotInfo = entry.getValue().getInfo();
+            SnapshotInfo write = writes.get(entry.getKey());
+            SnapshotInfo snapshotInfo = write != null ? write : entry.getValue().getInfo();
             snapshotList.add(snapshotInfo);
         }
         Path path = Paths.get(snapshotsDir);
+        Set<String> listed = new HashSet<>(); // a label saved in both formats is listed once
         try (Stream<Path> stream = Files.list(path)) {
             stream.filter(Files::isRegularFile)
                     .forEach(filePath -> {
                         String fullFileName = filePath.getFileName().toString();
                         int lastDotIndex = fullFileName.lastIndexOf('.');
                         String baseName = (lastDotIndex == -1) ? fullFileName : fullFileName.substring(0, lastDotIndex);
+                        if (formatOf(fullFileName.substring(lastDotIndex + 1)) == null) {
+                            return; // not a snapshot, e.g. a half-written temp file
+                        }
 
-                        if (!snapshots.containsKey(baseName)) {
+                        if (!snapshots.containsKey(baseName) && listed.add(baseName)) {
                             SnapshotInfo snapshotInfo = new SnapshotInfo();
                             snapshotInfo.setTimestamp("Older");
                             snapshotInfo.setId(baseName);
@@ -93,42 +168,120 @@ public class SnapshotService {
 //        return snapshot;
 //    }
 
-    public SimulationSnapshot saveSnapshot(String label)  {
-        SimulationSnapshot snapshot = simulationService.getState().saveToSnapshot(label);
-        snapshots.put(snapshot.getLabel(), snapshot); // for faster access
+    public SnapshotInfo saveSnapshot(String label)  {
+        return saveSnapshot(label, null);
+    }
+
+    /// capture now, write in the background; format "binary" or "json",
+    /// null = simulation.snapshot.format
+    /// returns the snapshot's handle with status "saving"
+    public SnapshotInfo saveSnapshot(String label, String format) {
+        SnapshotFormat snapshotFormat = format == null ? defaultFormat : SnapshotFormat.fromName(format);
+        SimulationSnapshot snapshot = captureTimer.record(() -> simulationService.captureSnapshot(label, false));
+        snapshots.put(snapshot.getLabel(), snapshot); // for faster access, and replay before the write is done
         snapshotCounter++;
+
+        SnapshotInfo info = infoOf(snapshot, snapshotFormat, "saving");
+        writes.put(snapshot.getLabel(), info);
+        pendingWrites.incrementAndGet();
+        writer.execute(() -> persist(snapshot, snapshotFormat));
+        return info;
+    }
+
+    private void persist(SimulationSnapshot snapshot, SnapshotFormat format) {
+        long start = System.nanoTime();
+        SnapshotInfo info;
         try {
-            String snapshotString = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(snapshot);
-            Files.createDirectories(Path.of(snapshotsDir));
-            Files.writeString(Path.of(snapshotsDir + "/" + snapshot.getLabel() + ".json"), snapshotString);
-
-        } catch (JsonProcessingException e){
-            System.err.println("An error occurred while trying to write Snapshot as a JsonString" + e.getMessage());
-        } catch (IOException e){
-            System.err.println("An error occurred while trying to write Snapshot in a File" + e.getMessage());
+            long bytes = writeSnapshot(snapshot, format);
+            info = infoOf(snapshot, format, "saved");
+            info.setBytes(bytes);
+            log.info("Snapshot {} written ({} bytes, {})", snapshot.getLabel(), bytes, format.displayName());
+        } catch (IOException | RuntimeException e) {
+            info = infoOf(snapshot, format, "failed");
+            log.error("An error occurred while trying to write snapshot {} to a file: {}",
+                    snapshot.getLabel(), e.getMessage());
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            pendingWrites.decrementAndGet();
+        }
+        // a later save of the same label owns the list entry once it exists
+        if (snapshots.get(snapshot.getLabel()) == snapshot) {
+            writes.put(snapshot.getLabel(), info);
         }
-        return snapshot;
+        eventService.publishEvent(new SSE("saved".equals(info.getStatus()) ? "SNAPSHOT_SAVED" : "SNAPSHOT_FAILED",
+                info));
+    }
+
+    /// stream into a temp file and rename, so a crash never leaves a torn snapshot
+    /// returns the size of the file written
+    private long writeSnapshot(SimulationSnapshot snapshot, SnapshotFormat format) throws IOException {
+        Files.createDirectories(Path.of(snapshotsDir));
+        Path file = fileOf(snapshot.getLabel(), format);
+        Path temp = Path.of(snapshotsDir, snapshot.getLabel() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            if (format == SnapshotFormat.BINARY) {
+                SnapshotCodec.write(snapshot, out);
+            } else {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(out, snapshot);
+            }
+        }
+        long bytes = Files.size(temp);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the other format's file would otherwise shadow or outlive this one
+        Files.deleteIfExists(fileOf(snapshot.getLabel(),
+                format == SnapshotFormat.BINARY ? SnapshotFormat.JSON : SnapshotFormat.BINARY));
+        return bytes;
+    }
+
+    private static SnapshotInfo infoOf(SimulationSnapshot snapshot, SnapshotFormat format, String status) {
+        SnapshotInfo info = snapshot.getInfo();
+        info.setFormat(format.displayName());
+        info.setStatus(status);
+        return info;
     }
 
     public SimulationSnapshot loadSnapshot(String label) {
         if (snapshots.containsKey(label)) {
-            SimulationSnapshot snapshot = snapshots.get(label);
-            simulationService.getState().loadFromSnapshot(snapshot);
-            return snapshot;
+            return loadFromMemoryTimer.record(() -> {
+                SimulationSnapshot snapshot = snapshots.get(label);
+                simulationService.getState().loadFromSnapshot(snapshot);
+                return snapshot;
+            });
         }
-        try {
-            String snapshotStr =  Files.readString(Path.of(snapshotsDir, label + ".json"));
-            SimulationSnapshot snapshot = objectMapper.readValue(snapshotStr, SimulationSnapshot.class);
+        return loadFromFileTimer.record(() -> readSnapshot(label));
+    }
+
+    private SimulationSnapshot readSnapshot(String label) {
+        SnapshotFormat format = Files.exists(fileOf(label, SnapshotFormat.BINARY))
+                ? SnapshotFormat.BINARY
+                : SnapshotFormat.JSON;
+        try (InputStream in = Files.newInputStream(fileOf(label, format))) {
+            SimulationSnapshot snapshot = format == SnapshotFormat.BINARY
+                    ? SnapshotCodec.read(in)
+                    : objectMapper.readValue(in, SimulationSnapshot.class);
             snapshots.put(snapshot.getLabel(), snapshot); // for faster access
             snapshotCounter++;
             simulationService.getState().loadFromSnapshot(snapshot);
             return snapshot;
         } catch (IOException e) {
-            System.err.println("An error occurred while trying to read Snapshot in a File" +  e.getMessage());
+            log.error("An error occurred while trying to read snapshot {} from a file: {}", label, e.getMessage());
             return null;
         }
     }
 
+    private Path fileOf(String label, SnapshotFormat format) {
+        return Path.of(snapshotsDir, label + "." + format.extension());
+    }
+
+    private static SnapshotFormat formatOf(String extension) {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            if (format.extension().equals(extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
 //    public Optional<SimulationSnapshot> getSnapshot(String id) {
 //        return snapshots.stream()
 //                .filter(s -> s.getId().equals(id))
@@ -137,6 +290,7 @@ public class SnapshotService {
 
     public void clearSnapshots() {
         snapshots.clear();
+        writes.clear();
         snapshotCounter = 0;
         log.info("Cleared all snapshots");
     }
@@ -0,0 +1,46 @@
+package com.producesconsumer.backend.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thread a stoppable task runs on - stopping interrupts it only while the
+ * task is still on it, and whoever stopped the task can wait until its run
+ * method has returned, so nothing it was about to do to the queues happens
+ * after that
+ */
+final class TaskThread {
+    private Thread thread; // guarded by this
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    /// first thing the task's run method does
+    synchronized void enter() {
+        thread = Thread.currentThread();
+    }
+
+    /// last thing the task's run method does, in a finally
+    void exit() {
+        synchronized (this) {
+            thread = null;
+        }
+        exited.countDown();
+    }
+
+    /// wake the task from a sleep or wait; a pooled thread that has moved on
+    /// to other work is left alone
+    synchronized void interrupt() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /// true once run has returned, false if it is still running after the timeout
+    boolean awaitExit(long timeoutMs) {
+        try {
+            return exited.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
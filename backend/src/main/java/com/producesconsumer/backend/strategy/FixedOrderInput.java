@@ -0,0 +1,16 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+public class FixedOrderInput implements InputPolicy {
+
+    @Override
+    public int select(Queue[] inputs, int[] weights) {
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].getProductCount() > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
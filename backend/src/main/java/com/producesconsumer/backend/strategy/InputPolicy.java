@@ -0,0 +1,15 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+/**
+ * Picks which input queue a machine takes its next product from. Like
+ * RoutingStrategy, instances may keep per-machine state and are only called
+ * from the thread driving that machine
+ */
+public interface InputPolicy {
+
+    /// index into inputs of a non-empty queue to take from, or -1 if all look
+    /// empty; weights[i] belongs to inputs[i] and is >= 1
+    int select(Queue[] inputs, int[] weights);
+}
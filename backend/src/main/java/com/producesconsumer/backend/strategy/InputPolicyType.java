@@ -0,0 +1,38 @@
+package com.producesconsumer.backend.strategy;
+
+import java.util.function.Supplier;
+
+/**
+ * Built-in input disciplines, selectable per machine by name
+ * ("fixed-order", "round-robin", "longest-queue", "oldest-product", "weighted-fair")
+ */
+public enum InputPolicyType {
+    FIXED_ORDER(FixedOrderInput::new), // first non-empty in connection order (the original behaviour)
+    ROUND_ROBIN(RoundRobinInput::new), // next non-empty after the last one served
+    LONGEST_QUEUE(LongestQueueInput::new), // deepest queue first
+    OLDEST_PRODUCT(OldestProductInput::new), // global FIFO across inputs by arrival time
+    WEIGHTED_FAIR(WeightedFairInput::new); // share by connection weight among non-empty inputs
+
+    private final Supplier<InputPolicy> factory;
+
+    InputPolicyType(Supplier<InputPolicy> factory) {
+        this.factory = factory;
+    }
+
+    /// a fresh instance, stateful policies must not be shared between machines
+    public InputPolicy create() {
+        return factory.get();
+    }
+
+    /// "round-robin" / "ROUND_ROBIN" style names; null or blank means FIXED_ORDER
+    public static InputPolicyType fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return FIXED_ORDER;
+        }
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public String displayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,20 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+public class LongestQueueInput implements InputPolicy {
+
+    @Override
+    public int select(Queue[] inputs, int[] weights) {
+        int longest = -1;
+        int longestDepth = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            int depth = inputs[i].getProductCount();
+            if (depth > longestDepth) {
+                longest = i;
+                longestDepth = depth;
+            }
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,21 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+public class OldestProductInput implements InputPolicy {
+
+    @Override
+    public int select(Queue[] inputs, int[] weights) {
+        // compare head arrival times; each queue is FIFO so its head is its oldest
+        int oldest = -1;
+        long oldestAt = Long.MAX_VALUE;
+        for (int i = 0; i < inputs.length; i++) {
+            long headAt = inputs[i].getHeadEnqueuedAt();
+            if (headAt < oldestAt) {
+                oldest = i;
+                oldestAt = headAt;
+            }
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,24 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class PowerOfTwoRouting implements RoutingStrategy {
+
+    @Override
+    public Queue select(Queue[] outputs, int[] weights) {
+        if (outputs.length == 1) {
+            return outputs[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(outputs.length);
+        int second = random.nextInt(outputs.length - 1);
+        if (second >= first) {
+            second++; // two distinct outputs
+        }
+        Queue a = outputs[first];
+        Queue b = outputs[second];
+        return a.getProductCount() <= b.getProductCount() ? a : b;
+    }
+}
@@ -0,0 +1,13 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class RandomRouting implements RoutingStrategy {
+
+    @Override
+    public Queue select(Queue[] outputs, int[] weights) {
+        return outputs[ThreadLocalRandom.current().nextInt(outputs.length)];
+    }
+}
@@ -0,0 +1,20 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+public class RoundRobinInput implements InputPolicy {
+
+    private int next = 0;
+
+    @Override
+    public int select(Queue[] inputs, int[] weights) {
+        for (int i = 0; i < inputs.length; i++) {
+            int candidate = (next + i) % inputs.length;
+            if (inputs[candidate].getProductCount() > 0) {
+                next = (candidate + 1) % inputs.length;
+                return candidate;
+            }
+        }
+        return -1;
+    }
+}
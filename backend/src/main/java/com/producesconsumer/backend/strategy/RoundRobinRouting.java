@@ -0,0 +1,16 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+public class RoundRobinRouting implements RoutingStrategy {
+
+    private int next = 0;
+
+    @Override
+    public Queue select(Queue[] outputs, int[] weights) {
+        // modulo keeps the cursor valid when outputs shrink after a rewire
+        Queue target = outputs[next % outputs.length];
+        next = (next + 1) % outputs.length;
+        return target;
+    }
+}
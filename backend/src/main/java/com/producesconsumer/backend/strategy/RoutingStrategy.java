@@ -0,0 +1,14 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+/**
+ * Picks the output queue a finished product is sent to. Instances may keep
+ * per-machine state (cursors, credits) and are only called from the thread
+ * driving that machine
+ */
+public interface RoutingStrategy {
+
+    /// outputs is never empty; weights[i] belongs to outputs[i] and is >= 1
+    Queue select(Queue[] outputs, int[] weights);
+}
@@ -0,0 +1,38 @@
+package com.producesconsumer.backend.strategy;
+
+import java.util.function.Supplier;
+
+/**
+ * Built-in routing strategies, selectable per machine by name
+ * ("random", "round-robin", "shortest-queue", "power-of-two", "weighted")
+ */
+public enum RoutingStrategyType {
+    RANDOM(RandomRouting::new), // uniform, ignores load (the original behaviour)
+    ROUND_ROBIN(RoundRobinRouting::new), // strict rotation
+    SHORTEST_QUEUE(ShortestQueueRouting::new), // join-shortest-queue, scans every output
+    POWER_OF_TWO(PowerOfTwoRouting::new), // shorter of two random outputs
+    WEIGHTED(WeightedRouting::new); // smooth weighted round robin on connection weights
+
+    private final Supplier<RoutingStrategy> factory;
+
+    RoutingStrategyType(Supplier<RoutingStrategy> factory) {
+        this.factory = factory;
+    }
+
+    /// a fresh instance, stateful strategies must not be shared between machines
+    public RoutingStrategy create() {
+        return factory.get();
+    }
+
+    /// "round-robin" / "ROUND_ROBIN" style names; null or blank means RANDOM
+    public static RoutingStrategyType fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return RANDOM;
+        }
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public String displayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
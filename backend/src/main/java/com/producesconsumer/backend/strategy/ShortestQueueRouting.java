@@ -0,0 +1,25 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ShortestQueueRouting implements RoutingStrategy {
+
+    @Override
+    public Queue select(Queue[] outputs, int[] weights) {
+        // start at a random offset so ties don't always favour the first output
+        int offset = ThreadLocalRandom.current().nextInt(outputs.length);
+        Queue shortest = null;
+        int shortestDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < outputs.length; i++) {
+            Queue candidate = outputs[(offset + i) % outputs.length];
+            int depth = candidate.getProductCount();
+            if (depth < shortestDepth) {
+                shortest = candidate;
+                shortestDepth = depth;
+            }
+        }
+        return shortest;
+    }
+}
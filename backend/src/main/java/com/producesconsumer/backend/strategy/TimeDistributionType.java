@@ -0,0 +1,126 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.TimeDistribution;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Built-in duration distributions, selectable by name ("fixed", "uniform",
+ * "exponential", "normal", "log-normal", "erlang", "empirical"). mean and
+ * stdDev describe the resulting durations, also for log-normal
+ */
+public enum TimeDistributionType {
+    FIXED { // always mean
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            return d.getMean();
+        }
+
+        @Override
+        public double meanOf(TimeDistribution d) {
+            return d.getMean();
+        }
+    },
+    UNIFORM { // anywhere in [min, max)
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            return d.getMin() + random.nextDouble() * (d.getMax() - d.getMin());
+        }
+
+        @Override
+        public double meanOf(TimeDistribution d) {
+            return (d.getMin() + d.getMax()) / 2;
+        }
+
+        @Override
+        void validate(TimeDistribution d) {
+            require(d.getMax() >= d.getMin() && d.getMin() >= 0, "uniform needs 0 <= min <= max");
+        }
+    },
+    EXPONENTIAL { // memoryless, as for Poisson arrivals
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            return -d.getMean() * Math.log(1 - random.nextDouble());
+        }
+    },
+    NORMAL { // truncated at the clamps, and at 0
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            return d.getMean() + d.getStdDev() * random.nextGaussian();
+        }
+    },
+    LOG_NORMAL { // right-skewed, parameterised by the mean and std dev of the durations
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            double cv = d.getStdDev() / d.getMean();
+            double sigma2 = Math.log(1 + cv * cv);
+            double mu = Math.log(d.getMean()) - sigma2 / 2;
+            return Math.exp(mu + Math.sqrt(sigma2) * random.nextGaussian());
+        }
+    },
+    ERLANG { // sum of shape exponential phases, less variable than one exponential
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            int k = Math.max(1, d.getShape());
+            double product = 1;
+            for (int i = 0; i < k; i++) {
+                product *= 1 - random.nextDouble();
+            }
+            return -(d.getMean() / k) * Math.log(product);
+        }
+    },
+    EMPIRICAL { // resampled from observed durations
+        @Override
+        double draw(TimeDistribution d, RandomGenerator random) {
+            return d.getSamples().get(random.nextInt(d.getSamples().size()));
+        }
+
+        @Override
+        public double meanOf(TimeDistribution d) {
+            return d.getSamples().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        }
+
+        @Override
+        void validate(TimeDistribution d) {
+            require(!d.getSamples().isEmpty(), "empirical needs samples");
+        }
+    };
+
+    abstract double draw(TimeDistribution d, RandomGenerator random);
+
+    /// expected duration in ms, before clamping
+    public double meanOf(TimeDistribution d) {
+        return d.getMean();
+    }
+
+    void validate(TimeDistribution d) {
+        require(d.getMean() > 0, displayName() + " needs a positive mean");
+        require(d.getStdDev() >= 0, "stdDev must not be negative");
+    }
+
+    /// throws IllegalArgumentException if the parameters don't fit the type
+    public static TimeDistributionType check(TimeDistribution d) {
+        TimeDistributionType type = fromName(d.getType());
+        type.validate(d);
+        require(d.getMax() == 0 || d.getMax() >= d.getMin(), "max must not be below min");
+        return type;
+    }
+
+    /// "log-normal" / "LOG_NORMAL" style names; null or blank means FIXED
+    public static TimeDistributionType fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return FIXED;
+        }
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public String displayName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
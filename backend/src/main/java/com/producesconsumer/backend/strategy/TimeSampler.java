@@ -0,0 +1,48 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.TimeDistribution;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws durations from one distribution with its own generator. Not thread
+ * safe: every thread (machine server, generator, engine) owns its samplers,
+ * so draws never contend and a seeded run repeats exactly
+ */
+public final class TimeSampler {
+
+    private final TimeDistribution distribution;
+    private final TimeDistributionType type;
+    private final RandomGenerator random;
+
+    public TimeSampler(TimeDistribution distribution, RandomGenerator random) {
+        this.distribution = distribution;
+        this.type = TimeDistributionType.check(distribution);
+        this.random = random;
+    }
+
+    /// generator for one named stream ("M1#0", "arrivals", ...); with a seed
+    /// the stream is the same on every run, without one it is fresh each time
+    public static RandomGenerator random(Long seed, String stream) {
+        if (seed == null) {
+            return new SplittableRandom();
+        }
+        // mix the stream name in so streams of one seed are unrelated
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream.hashCode());
+    }
+
+    public TimeDistribution getDistribution() {
+        return distribution;
+    }
+
+    /// next duration in whole ms, clamped to [min, max] and never negative
+    public long next() {
+        double value = type.draw(distribution, random);
+        if (distribution.getMax() > 0) {
+            value = Math.min(value, distribution.getMax());
+        }
+        value = Math.max(value, Math.max(0, distribution.getMin()));
+        return Math.round(value);
+    }
+}
@@ -0,0 +1,40 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+/**
+ * Smooth weighted round robin over the inputs that currently hold products,
+ * so a backlogged input gets its weighted share and an idle one builds no
+ * credit it could later burst with
+ */
+public class WeightedFairInput implements InputPolicy {
+
+    private Queue[] lastInputs;
+    private int[] credits;
+
+    @Override
+    public int select(Queue[] inputs, int[] weights) {
+        if (inputs != lastInputs) {
+            // a new topology was swapped in, start over
+            lastInputs = inputs;
+            credits = new int[inputs.length];
+        }
+        int total = 0;
+        int best = -1;
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].getProductCount() == 0) {
+                credits[i] = 0;
+                continue;
+            }
+            credits[i] += weights[i];
+            total += weights[i];
+            if (best < 0 || credits[i] > credits[best]) {
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            credits[best] -= total;
+        }
+        return best;
+    }
+}
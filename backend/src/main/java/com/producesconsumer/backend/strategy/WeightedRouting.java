@@ -0,0 +1,33 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Queue;
+
+/**
+ * Smooth weighted round robin: over sum(weights) picks each output is chosen
+ * exactly weight times, interleaved rather than in bursts
+ */
+public class WeightedRouting implements RoutingStrategy {
+
+    private Queue[] lastOutputs;
+    private int[] credits;
+
+    @Override
+    public Queue select(Queue[] outputs, int[] weights) {
+        if (outputs != lastOutputs) {
+            // a new topology was swapped in, start over
+            lastOutputs = outputs;
+            credits = new int[outputs.length];
+        }
+        int total = 0;
+        int best = 0;
+        for (int i = 0; i < outputs.length; i++) {
+            credits[i] += weights[i];
+            total += weights[i];
+            if (credits[i] > credits[best]) {
+                best = i;
+            }
+        }
+        credits[best] -= total;
+        return outputs[best];
+    }
+}
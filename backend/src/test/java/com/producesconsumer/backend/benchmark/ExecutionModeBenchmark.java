@@ -0,0 +1,139 @@
+package com.producesconsumer.backend.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.observer.QueueEventObserver;
+import com.producesconsumer.backend.service.EventBroadcaster;
+import com.producesconsumer.backend.service.EventService;
+import com.producesconsumer.backend.service.MachineProcessingService;
+import com.producesconsumer.backend.service.QueueService;
+import com.producesconsumer.backend.service.RoutingTopology;
+import com.producesconsumer.backend.service.SimulationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hosting N concurrent machines on platform threads (cached pool,
+ * today's default) versus virtual threads.
+ * Each machine gets its own pre-filled input queue and a fixed processing
+ * time, so ideal throughput is machines * window / processingTime; the gap
+ * to that ideal is the scheduling / context switching overhead.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.producesconsumer.backend.benchmark.ExecutionModeBenchmark
+ *      [-Dexec.args="1000 5000 10000"]
+ */
+public class ExecutionModeBenchmark {
+
+    private static final int PROCESSING_TIME_MS = 100;
+    private static final int PRODUCTS_PER_QUEUE = 1_000;
+    private static final long WINDOW_MS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+
+        int[] sizes = args.length == 0 ? new int[] { 1_000, 5_000, 10_000 }
+                : java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+        System.out.printf("%-9s %8s %12s %10s %12s %10s%n",
+                "mode", "machines", "products/s", "ideal %", "peak threads", "heap MB");
+        for (int machines : sizes) {
+            run("platform", Executors::newCachedThreadPool, machines);
+            run("virtual", Executors::newVirtualThreadPerTaskExecutor, machines);
+        }
+    }
+
+    private static void run(String mode, java.util.function.Supplier<ExecutorService> executorFactory,
+            int machineCount) throws InterruptedException {
+        System.gc();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        ExecutorService executor = executorFactory.get();
+
+        EventService eventService = new EventService(256, "drop-oldest", new SimpleMeterRegistry());
+        eventService.getEventStream().subscribe(); // a connected client draining the stream
+        EventBroadcaster broadcaster = new EventBroadcaster(eventService, 30, 0);
+        QueueService queueService = new QueueService(new SimpleMeterRegistry());
+        MachineProcessingService processingService = new MachineProcessingService(executor, queueService, null);
+        SimulationService simulationService = new SimulationService(eventService, broadcaster, queueService,
+                new QueueEventObserver(broadcaster), processingService, executor);
+        // wire the lazy back-reference the same way Spring does
+        setField(processingService, "simulationService", simulationService);
+
+        List<Queue> queues = new ArrayList<>();
+        List<Machine> machines = new ArrayList<>();
+        SimulationState state = new SimulationState();
+        try {
+            for (int i = 0; i < machineCount; i++) {
+                Queue queue = new Queue();
+                queue.setId("Q" + i);
+                for (int p = 0; p < PRODUCTS_PER_QUEUE; p++) {
+                    Product product = new Product();
+                    product.setId("P" + i + "-" + p);
+                    queue.enqueue(product);
+                }
+                queues.add(queue);
+                state.addQueue(queue);
+
+                Machine machine = new Machine();
+                machine.setId("M" + i);
+                machine.setProcessingTime(PROCESSING_TIME_MS);
+                machines.add(machine);
+                state.addMachine(machine);
+
+                Connection connection = new Connection();
+                connection.setId("C" + i);
+                connection.setSourceId(queue.getId());
+                connection.setTargetId(machine.getId());
+                state.addConnection(connection);
+            }
+            RoutingTopology topology = RoutingTopology.compile(state, 1);
+            for (Machine machine : machines) {
+                processingService.startProcessing(machine, () -> topology);
+            }
+
+            // measure over a window that starts once every machine has been submitted
+            long before = remaining(queues);
+            Thread.sleep(WINDOW_MS);
+            long processed = before - remaining(queues);
+            long heapMb = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20;
+            double rate = processed * 1000.0 / WINDOW_MS;
+            double ideal = machineCount * 1000.0 / PROCESSING_TIME_MS;
+            System.out.printf("%-9s %8d %12.0f %9.1f%% %12d %10d%n",
+                    mode, machineCount, rate, 100 * rate / ideal, threads.getPeakThreadCount(), heapMb);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-9s %8d  failed: %s%n", mode, machineCount, e.getMessage());
+        } finally {
+            processingService.stopAll();
+            broadcaster.shutdown();
+            executor.shutdownNow();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long remaining(List<Queue> queues) {
+        return queues.stream().mapToLong(Queue::getProductCount).sum();
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        try {
+            java.lang.reflect.Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
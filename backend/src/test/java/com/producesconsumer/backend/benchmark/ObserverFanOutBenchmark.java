@@ -0,0 +1,99 @@
+package com.producesconsumer.backend.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.observer.QueueEventObserver;
+import com.producesconsumer.backend.service.EventBroadcaster;
+import com.producesconsumer.backend.service.EventService;
+import com.producesconsumer.backend.service.MachineRunner;
+import com.producesconsumer.backend.service.QueueService;
+import com.producesconsumer.backend.service.RoutingTopology;
+import com.producesconsumer.backend.service.ServerPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one product add/remove once N MachineRunners are subscribed to the
+ * queue and the QueueEventObserver feeds the SSE broadcaster. The runners are
+ * never started, so none is waiting and every add walks all N of them before
+ * giving up - the worst case of the wakeup scan.
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args=ObserverFanOutBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObserverFanOutBenchmark {
+
+    @Param({ "1", "8", "64" })
+    public int runners;
+
+    private EventBroadcaster broadcaster;
+    private QueueService queueService;
+    private Queue queue;
+    private final Product product = new Product();
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+        broadcaster = new EventBroadcaster(new EventService(256, "drop-oldest", new SimpleMeterRegistry()), 30, 0);
+        queueService = new QueueService(new SimpleMeterRegistry());
+        queueService.registerObserver(new QueueEventObserver(broadcaster));
+
+        SimulationState state = new SimulationState();
+        queue = new Queue();
+        queue.setId("Q1");
+        state.addQueue(queue);
+        for (int i = 0; i < runners; i++) {
+            Machine machine = new Machine();
+            machine.setId("M" + i);
+            state.addMachine(machine);
+            queueService.subscribe(queue.getId(), new MachineRunner(machine, new ServerPool(machine),
+                    () -> RoutingTopology.EMPTY, queueService, null, new SplittableRandom(i)));
+        }
+        broadcaster.publishState(state);
+        product.setId("P-1");
+        product.setColor("#336699");
+    }
+
+    @TearDown
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Product addRemove() {
+        queueService.addProductToQueue(queue, product);
+        return queueService.removeProductFromQueue(queue);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product addRemoveContended() {
+        queueService.addProductToQueue(queue, product);
+        return queueService.removeProductFromQueue(queue);
+    }
+}
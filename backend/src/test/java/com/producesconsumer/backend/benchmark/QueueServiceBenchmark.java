@@ -0,0 +1,105 @@
+package com.producesconsumer.backend.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.service.QueueService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueueService add/remove on one shared queue with 1, 4, 16 and 64 threads
+ * contending for it. Every operation adds a product and takes one back out,
+ * so the depth stays near the thread count. No consumers or observers are
+ * registered - see ObserverFanOutBenchmark for the dispatch side.
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args=QueueServiceBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueServiceBenchmark {
+
+    private QueueService queueService;
+    private Queue queue;
+
+    /// each thread recycles its own products so allocation stays out of the numbers
+    @State(Scope.Thread)
+    public static class Products {
+        final Product product = new Product();
+        final List<Product> drained = new ArrayList<>();
+
+        @Setup
+        public void setUp() {
+            product.setId("P-" + Thread.currentThread().threadId());
+            product.setColor("#336699");
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // QueueService logs every change at info; measure the queue, not the appender
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+        queueService = new QueueService(new SimpleMeterRegistry());
+        queue = new Queue();
+        queue.setId("Q1");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Product addRemove01(Products products) {
+        return addRemove(products);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Product addRemove04(Products products) {
+        return addRemove(products);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Product addRemove16(Products products) {
+        return addRemove(products);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Product addRemove64(Products products) {
+        return addRemove(products);
+    }
+
+    /// the batch path machines with batchSize > 1 take: a few adds, one drain
+    @Benchmark
+    @Threads(16)
+    public int addDrainBatch16(Products products) {
+        for (int i = 0; i < 4; i++) {
+            queueService.addProductToQueue(queue, products.product);
+        }
+        products.drained.clear();
+        return queueService.removeProductsFromQueue(queue, 4, products.drained);
+    }
+
+    private Product addRemove(Products products) {
+        queueService.addProductToQueue(queue, products.product);
+        return queueService.removeProductFromQueue(queue);
+    }
+}
@@ -0,0 +1,198 @@
+package com.producesconsumer.backend.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.observer.QueueEventObserver;
+import com.producesconsumer.backend.observer.QueueObserver;
+import com.producesconsumer.backend.service.EventBroadcaster;
+import com.producesconsumer.backend.service.EventService;
+import com.producesconsumer.backend.service.MachineProcessingService;
+import com.producesconsumer.backend.service.QueueService;
+import com.producesconsumer.backend.service.RoutingTopology;
+import com.producesconsumer.backend.service.SimulationService;
+import com.producesconsumer.backend.strategy.RoutingStrategyType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares output routing strategies on a fan-out line:
+ * Q0 -> dispatcher M0 -> Q1..Q4 -> M1..M4 (10/20/30/40 ms) -> sink Q5.
+ * Products arrive at a fixed rate (default 170/s, ~82% of the 208/s the
+ * four workers can do together). Connection weights are set proportional to
+ * worker speed (12:6:4:3) for the weighted strategy. Reports sink throughput,
+ * end-to-end latency percentiles and the backlog left in Q1..Q4.
+ * Run: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.producesconsumer.backend.benchmark.RoutingStrategyBenchmark
+ *      [-Dexec.args="170"]
+ */
+public class RoutingStrategyBenchmark {
+
+    private static final int[] WORKER_TIMES_MS = { 10, 20, 30, 40 };
+    private static final int[] WEIGHTS = { 12, 6, 4, 3 };
+    private static final long WARMUP_MS = 2_000;
+    private static final long WINDOW_MS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+        int ratePerSecond = args.length == 0 ? 170 : Integer.parseInt(args[0]);
+
+        System.out.printf("%-15s %12s %10s %10s %10s %10s%n",
+                "strategy", "products/s", "p50 ms", "p99 ms", "max ms", "backlog");
+        for (RoutingStrategyType type : RoutingStrategyType.values()) {
+            run(type, ratePerSecond);
+        }
+    }
+
+    private static void run(RoutingStrategyType type, int ratePerSecond) throws InterruptedException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService source = Executors.newSingleThreadScheduledExecutor();
+
+        EventService eventService = new EventService(256, "drop-oldest", new SimpleMeterRegistry());
+        EventBroadcaster broadcaster = new EventBroadcaster(eventService, 30, 0);
+        QueueService queueService = new QueueService(new SimpleMeterRegistry());
+        MachineProcessingService processingService = new MachineProcessingService(executor, queueService, null);
+        SimulationService simulationService = new SimulationService(eventService, broadcaster, queueService,
+                new QueueEventObserver(broadcaster), processingService, executor);
+        setField(processingService, "simulationService", simulationService);
+
+        SimulationState state = new SimulationState();
+        Queue q0 = queue(state, "Q0");
+        Queue sink = queue(state, "Q5");
+        Machine dispatcher = machine(state, "M0", 0);
+        dispatcher.setRoutingStrategy(type.displayName());
+        connect(state, "C0", "Q0", "M0", 1);
+        List<Queue> buffers = new ArrayList<>();
+        for (int i = 0; i < WORKER_TIMES_MS.length; i++) {
+            Queue buffer = queue(state, "Q" + (i + 1));
+            buffers.add(buffer);
+            machine(state, "M" + (i + 1), WORKER_TIMES_MS[i]);
+            connect(state, "C" + (10 + i), "M0", buffer.getId(), WEIGHTS[i]);
+            connect(state, "C" + (20 + i), buffer.getId(), "M" + (i + 1), 1);
+            connect(state, "C" + (30 + i), "M" + (i + 1), sink.getId(), 1);
+        }
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        // creation time per product, latency is taken when it reaches the sink
+        Map<Product, Long> createdAt = new ConcurrentHashMap<>();
+        List<Long> latenciesMs = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong delivered = new AtomicLong();
+        long[] windowStart = { Long.MAX_VALUE };
+        queueService.registerObserver(new QueueObserver() {
+            @Override
+            public void onProductAdded(Queue queue, Product product) {
+                if (queue != sink) {
+                    return;
+                }
+                long now = System.nanoTime();
+                Long created = createdAt.remove(product);
+                if (created != null && created >= windowStart[0]) {
+                    delivered.incrementAndGet();
+                    latenciesMs.add((now - created) / 1_000_000);
+                }
+            }
+
+            @Override
+            public void onProductRemoved(Queue queue, Product product) {
+            }
+
+            @Override
+            public void onQueueEmpty(Queue queue) {
+            }
+        });
+
+        try {
+            for (Machine machine : state.getMachines()) {
+                processingService.startProcessing(machine, () -> topology);
+            }
+            AtomicLong sequence = new AtomicLong();
+            source.scheduleAtFixedRate(() -> {
+                Product product = new Product();
+                product.setId("P" + sequence.incrementAndGet());
+                createdAt.put(product, System.nanoTime());
+                queueService.addProductToQueue(q0, product);
+            }, 0, 1_000_000_000L / ratePerSecond, TimeUnit.NANOSECONDS);
+
+            Thread.sleep(WARMUP_MS);
+            // only products created inside the window count, so throughput and
+            // latency describe the same population
+            windowStart[0] = System.nanoTime();
+            Thread.sleep(WINDOW_MS);
+            long deliveredInWindow = delivered.get();
+
+            List<Long> sorted;
+            synchronized (latenciesMs) {
+                sorted = new ArrayList<>(latenciesMs);
+            }
+            Collections.sort(sorted);
+            long backlog = buffers.stream().mapToLong(Queue::getProductCount).sum();
+            System.out.printf("%-15s %12.0f %10d %10d %10d %10d%n",
+                    type.displayName(), deliveredInWindow * 1000.0 / WINDOW_MS,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1), backlog);
+        } finally {
+            source.shutdownNow();
+            processingService.stopAll();
+            broadcaster.shutdown();
+            executor.shutdownNow();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) (p * sorted.size())));
+    }
+
+    private static Queue queue(SimulationState state, String id) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        state.addQueue(queue);
+        return queue;
+    }
+
+    private static Machine machine(SimulationState state, String id, int processingTimeMs) {
+        Machine machine = new Machine();
+        machine.setId(id);
+        machine.setState("idle");
+        machine.setProcessingTime(processingTimeMs);
+        state.addMachine(machine);
+        return machine;
+    }
+
+    private static void connect(SimulationState state, String id, String sourceId, String targetId, int weight) {
+        Connection connection = new Connection();
+        connection.setId(id);
+        connection.setSourceId(sourceId);
+        connection.setTargetId(targetId);
+        connection.setWeight(weight);
+        state.addConnection(connection);
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        try {
+            java.lang.reflect.Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
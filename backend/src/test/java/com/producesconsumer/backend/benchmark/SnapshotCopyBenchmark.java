@@ -0,0 +1,93 @@
+package com.producesconsumer.backend.benchmark;
+
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationSnapshot;
+import com.producesconsumer.backend.model.SimulationState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimulationState.saveToSnapshot / loadFromSnapshot deep copies of a line
+ * holding the given number of products, spread evenly over 10 queues with
+ * 10 machines and 20 connections between them.
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args=SnapshotCopyBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotCopyBenchmark {
+
+    private static final int QUEUES = 10;
+
+    @Param({ "10000" })
+    public int products;
+
+    private SimulationState state;
+    private SimulationSnapshot snapshot;
+    private final SimulationState target = new SimulationState();
+
+    @Setup
+    public void setUp() {
+        state = new SimulationState();
+        for (int q = 0; q < QUEUES; q++) {
+            Queue queue = new Queue();
+            queue.setId("Q" + q);
+            state.addQueue(queue);
+            Machine machine = new Machine();
+            machine.setId("M" + q);
+            machine.setProcessingTime(100);
+            state.addMachine(machine);
+            state.addConnection(connection("C" + (2 * q), queue.getId(), "queue", machine.getId(), "machine"));
+            state.addConnection(connection("C" + (2 * q + 1), machine.getId(), "machine",
+                    "Q" + (q + 1) % QUEUES, "queue"));
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setId("P-" + i);
+            product.setColor(String.format("#%06x", i * 2654435761L & 0xffffff));
+            product.setCreatedAt(now);
+            state.getQueue("Q" + i % QUEUES).enqueue(product, now);
+        }
+        snapshot = state.saveToSnapshot("bench", true);
+    }
+
+    @Benchmark
+    public SimulationSnapshot save() {
+        return state.saveToSnapshot("bench", true);
+    }
+
+    @Benchmark
+    public SimulationState load() {
+        target.loadFromSnapshot(snapshot, true);
+        return target;
+    }
+
+    private static Connection connection(String id, String sourceId, String sourceType,
+            String targetId, String targetType) {
+        Connection connection = new Connection();
+        connection.setId(id);
+        connection.setSourceId(sourceId);
+        connection.setSourceType(sourceType);
+        connection.setTargetId(targetId);
+        connection.setTargetType(targetType);
+        return connection;
+    }
+}
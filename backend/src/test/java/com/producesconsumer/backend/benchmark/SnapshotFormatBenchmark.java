@@ -0,0 +1,95 @@
+package com.producesconsumer.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationSnapshot;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.service.SnapshotCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a snapshot file, binary (SnapshotCodec) against the
+ * pretty-printed JSON export, for a line holding the given number of
+ * products over 10 queues. Writes go to a null stream so only the encoding
+ * is measured, reads come from memory.
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args=SnapshotFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotFormatBenchmark {
+
+    private static final String[] COLORS = { "#e74c3c", "#3498db", "#2ecc71", "#f39c12", "#9b59b6" };
+
+    @Param({ "10000", "100000" })
+    public int products;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimulationSnapshot snapshot;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        SimulationState state = new SimulationState();
+        for (int q = 0; q < 10; q++) {
+            Queue queue = new Queue();
+            queue.setId("Q" + q);
+            state.addQueue(queue);
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setId("PROD-" + (now + i));
+            product.setColor(COLORS[i % COLORS.length]);
+            state.getQueue("Q" + i % 10).enqueue(product, now);
+        }
+        snapshot = state.saveToSnapshot("bench");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotCodec.write(snapshot, out);
+        binary = out.toByteArray();
+        json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(snapshot);
+        System.out.printf("%n%d products: %d bytes binary, %d bytes JSON%n", products, binary.length, json.length);
+    }
+
+    @Benchmark
+    public void writeBinary() throws IOException {
+        SnapshotCodec.write(snapshot, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void writeJson() throws IOException {
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(OutputStream.nullOutputStream(), snapshot);
+    }
+
+    @Benchmark
+    public SimulationSnapshot readBinary() throws IOException {
+        return SnapshotCodec.read(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public SimulationSnapshot readJson() throws IOException {
+        return objectMapper.readValue(json, SimulationSnapshot.class);
+    }
+}
@@ -0,0 +1,93 @@
+package com.producesconsumer.backend.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.producesconsumer.backend.dto.QueueSummary;
+import com.producesconsumer.backend.dto.StateDelta;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SSE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the SSE payloads the broadcaster sends: a BATCH
+ * frame holding a STATE_DELTA with the given number of changed queues and
+ * machines plus a flash per machine, and a single small event. The mapper
+ * is configured the way Spring configures the one encoding the stream.
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args=SsePayloadBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SsePayloadBenchmark {
+
+    @Param({ "10", "100" })
+    public int entities;
+
+    private ObjectMapper objectMapper;
+    private SSE batch;
+    private SSE flash;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        StateDelta delta = new StateDelta();
+        delta.setSeq(42);
+        delta.setRunning(true);
+        delta.setTotalProductsGenerated(12_345);
+        List<SSE> frame = new ArrayList<>();
+        for (int i = 0; i < entities; i++) {
+            Queue queue = new Queue();
+            queue.setId("Q" + i);
+            queue.setX(40 * i);
+            queue.setY(120);
+            queue.enqueue(new Product());
+            delta.getQueues().add(QueueSummary.of(queue));
+
+            Machine machine = new Machine();
+            machine.setId("M" + i);
+            machine.setX(40 * i + 20);
+            machine.setY(200);
+            machine.setState("processing");
+            machine.setProcessingTime(100);
+            machine.setCurrentProductColor("#336699");
+            machine.setServers(2);
+            machine.setBusyServers(1);
+            delta.getMachines().add(machine);
+            frame.add(new SSE("MACHINE_FLASH", machine.getId()));
+        }
+        frame.add(0, new SSE("STATE_DELTA", delta));
+        batch = new SSE("BATCH", frame);
+        flash = new SSE("MACHINE_FLASH", "M0");
+    }
+
+    @Benchmark
+    public byte[] batchFrame() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] singleEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(flash);
+    }
+}
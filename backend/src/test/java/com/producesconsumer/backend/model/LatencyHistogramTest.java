@@ -0,0 +1,60 @@
+package com.producesconsumer.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesStayWithinTheBucketResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1_000_000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMaxNanos());
+        assertEquals(500e6, histogram.getValueAtPercentile(50), 500e6 * 0.04);
+        assertEquals(950e6, histogram.getValueAtPercentile(95), 950e6 * 0.04);
+        assertEquals(990e6, histogram.getValueAtPercentile(99), 990e6 * 0.04);
+        assertEquals(1_000_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void bucketsCoverEveryValueWithoutGaps() {
+        for (long value : new long[] { 0, 1, 31, 32, 63, 64, 1_000_003, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueIn(bucket) >= value, "value " + value);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.highestValueIn(bucket - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    @Test
+    void addMergesAnotherHistogram() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(20);
+        second.record(30);
+
+        first.add(second);
+
+        assertEquals(3, first.getCount());
+        assertEquals(60, first.getTotalNanos());
+        assertEquals(30, first.getMaxNanos());
+        assertEquals(20, first.getValueAtPercentile(50));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(5);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+}
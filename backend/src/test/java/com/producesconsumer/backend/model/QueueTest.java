@@ -0,0 +1,170 @@
+package com.producesconsumer.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueTest {
+
+    @Test
+    void dequeueIsFifo() {
+        Queue queue = new Queue();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setId("P" + i);
+            queue.enqueue(product);
+        }
+
+        assertEquals(3, queue.getProductCount());
+        assertEquals("P0", queue.dequeue().getId());
+        assertEquals("P1", queue.dequeue().getId());
+        assertEquals("P2", queue.dequeue().getId());
+        assertNull(queue.dequeue());
+        assertEquals(0, queue.getProductCount());
+    }
+
+    @Test
+    void sinkCountsProductsWithTheirSystemTimeInsteadOfStoringThem() {
+        Queue sink = new Queue();
+        sink.setRole("sink");
+        sink.setCapacity(1);
+        for (int i = 1; i <= 3; i++) {
+            Product product = new Product();
+            product.setCreatedAt(1_000_000L * i);
+            assertTrue(sink.offer(product, 1_000_000L * (i + 10)));
+        }
+
+        assertEquals(0, sink.getProductCount());
+        assertFalse(sink.isFull());
+        assertEquals(3, sink.getCompletedCount());
+        assertEquals(10.0, sink.getSystemTimeStats().getMeanWaitMs(), 1e-9);
+        assertEquals(11_000_000L, sink.getFirstCompletedAt());
+        assertEquals(13_000_000L, sink.getLastCompletedAt());
+    }
+
+    @Test
+    void offerRespectsCapacity() {
+        Queue queue = new Queue();
+        queue.setCapacity(2);
+
+        assertTrue(queue.offer(new Product()));
+        assertTrue(queue.offer(new Product()));
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(new Product()));
+        assertEquals(2, queue.getProductCount());
+
+        queue.dequeue();
+        assertTrue(queue.offer(new Product()));
+    }
+
+    @Test
+    void drainToTakesUpToMaxFromTheHead() {
+        Queue queue = new Queue();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setId("P" + i);
+            queue.enqueue(product, 1_000_000);
+        }
+
+        List<Product> batch = new ArrayList<>();
+        assertEquals(3, queue.drainTo(batch, 3, 2_000_000));
+        assertEquals(List.of("P0", "P1", "P2"), batch.stream().map(Product::getId).toList());
+        assertEquals(2, queue.getProductCount());
+        assertEquals(3, queue.getWaitStats().getServed());
+
+        assertEquals(2, queue.drainTo(batch, 10, 2_000_000));
+        assertEquals(0, queue.getProductCount());
+        assertEquals(0, queue.drainTo(batch, 10, 2_000_000));
+    }
+
+    @Test
+    void returnedProductsGoBackInFrontInTheirOrder() {
+        Queue queue = new Queue();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setId("P" + i);
+            queue.enqueue(product, 1_000_000);
+        }
+        List<Product> batch = new ArrayList<>();
+        queue.drainTo(batch, 3, 2_000_000);
+
+        queue.returnToHead(batch);
+
+        assertEquals(5, queue.getProductCount());
+        assertEquals(List.of("P0", "P1", "P2", "P3", "P4"), queue.getProducts().stream().map(Product::getId).toList());
+        assertEquals(5, queue.getArrivalCount() - queue.getDepartureCount());
+    }
+
+    @Test
+    void dequeueRecordsWaitTime() {
+        Queue queue = new Queue();
+        Product first = new Product();
+        Product second = new Product();
+        queue.enqueue(first, 1_000_000);
+        queue.enqueue(second, 3_000_000);
+        assertEquals(1_000_000, queue.getHeadEnqueuedAt());
+
+        queue.dequeue(5_000_000); // waited 4 ms
+        queue.dequeue(5_000_000); // waited 2 ms
+
+        assertEquals(2, queue.getWaitStats().getServed());
+        assertEquals(3.0, queue.getWaitStats().getMeanWaitMs(), 1e-9);
+        assertEquals(4.0, queue.getWaitStats().getMaxWaitMs(), 1e-9);
+        assertEquals(Long.MAX_VALUE, queue.getHeadEnqueuedAt());
+    }
+
+    @Test
+    void concurrentProducersAndConsumersConserveProducts() throws InterruptedException {
+        Queue queue = new Queue();
+        int threads = 8;
+        int perThread = 5_000;
+        Set<String> consumed = ConcurrentHashMap.newKeySet();
+        AtomicInteger lowestDepth = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads * 2);
+
+        for (int t = 0; t < threads; t++) {
+            int producer = t;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    Product product = new Product();
+                    product.setId(producer + "-" + i);
+                    queue.enqueue(product);
+                }
+                return null;
+            });
+            pool.submit(() -> {
+                start.await();
+                int taken = 0;
+                while (taken < perThread) {
+                    Product product = queue.dequeue();
+                    lowestDepth.accumulateAndGet(queue.getProductCount(), Math::min);
+                    if (product != null) {
+                        assertTrue(consumed.add(product.getId()));
+                        taken++;
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, consumed.size());
+        assertEquals(0, lowestDepth.get()); // a product is counted before it can be taken
+        assertEquals(0, queue.getProductCount());
+        assertTrue(queue.getProducts().isEmpty());
+    }
+}
@@ -0,0 +1,187 @@
+package com.producesconsumer.backend.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationStateTest {
+
+    @Test
+    void removingAnElementDropsItsConnectionsFromBothIndexes() {
+        SimulationState state = new SimulationState();
+        state.addQueue(queue("Q0"));
+        state.addQueue(queue("Q1"));
+        Machine machine = new Machine();
+        machine.setId("M1");
+        state.addMachine(machine);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+
+        assertEquals(1, state.getConnectionsTo("M1").size());
+        assertEquals(1, state.getConnectionsFrom("M1").size());
+
+        state.removeMachine("M1");
+
+        assertNull(state.getMachine("M1"));
+        assertTrue(state.getConnections().isEmpty());
+        assertTrue(state.getConnectionsFrom("Q0").isEmpty());
+        assertTrue(state.getConnectionsTo("Q1").isEmpty());
+    }
+
+    @Test
+    void nextFreeQueueNumberFillsGaps() {
+        SimulationState state = new SimulationState();
+        state.addQueue(queue("Q0"));
+        state.addQueue(queue("Q1"));
+        state.addQueue(queue("Q2"));
+        assertEquals(3, state.nextFreeQueueNumber());
+
+        state.removeQueue("Q1");
+        assertEquals(1, state.nextFreeQueueNumber());
+    }
+
+    @Test
+    void entitiesIterateInTheOrderTheyWereAddedAcrossSnapshots() {
+        SimulationState state = new SimulationState();
+        List<String> ids = List.of("Q7", "Q10", "Q2", "Q0", "Q15", "Q3", "Q1");
+        ids.forEach(id -> state.addQueue(queue(id)));
+        state.addQueue(queue("Q2")); // replaced, keeps its place
+        assertEquals(ids, state.getQueues().stream().map(Queue::getId).toList());
+
+        state.removeQueue("Q10");
+        state.addQueue(queue("Q10")); // removed and re-added, goes last
+        List<String> expected = List.of("Q7", "Q2", "Q0", "Q15", "Q3", "Q1", "Q10");
+        assertEquals(expected, state.getQueues().stream().map(Queue::getId).toList());
+
+        SimulationState loaded = new SimulationState();
+        loaded.loadFromSnapshot(state.saveToSnapshot("ordered"));
+        assertEquals(expected, loaded.getQueues().stream().map(Queue::getId).toList());
+    }
+
+    @Test
+    void savedSnapshotFilesLoadIntoIndexes() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        try (Stream<Path> files = Files.list(Path.of("snapshots"))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).toList()) {
+                SimulationSnapshot snapshot = mapper.readValue(file.toFile(), SimulationSnapshot.class);
+                SimulationState state = new SimulationState();
+                state.loadFromSnapshot(snapshot);
+
+                for (Connection connection : state.getConnections()) {
+                    assertTrue(state.getConnectionsFrom(connection.getSourceId()).contains(connection), file.toString());
+                    assertTrue(state.getConnectionsTo(connection.getTargetId()).contains(connection), file.toString());
+                }
+                for (Queue queue : snapshot.getState().getQueues()) {
+                    assertNotNull(state.getQueue(queue.getId()), file.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void snapshotsAtACutSeeEveryProductExactlyOnce() throws Exception {
+        SimulationState state = new SimulationState();
+        Queue from = queue("Q0");
+        Queue to = queue("Q1");
+        state.addQueue(from);
+        state.addQueue(to);
+        int products = 500;
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setId("P" + i);
+            from.enqueue(product);
+        }
+        CutBarrier cut = new CutBarrier();
+        AtomicBoolean moving = new AtomicBoolean(true);
+        List<Thread> movers = new ArrayList<>();
+        for (int m = 0; m < 4; m++) {
+            Machine machine = new Machine();
+            machine.setId("M" + m);
+            state.addMachine(machine);
+            // shuttles products back and forth, one take and one hand-on per move
+            Thread mover = new Thread(() -> {
+                while (moving.get()) {
+                    for (Queue[] hop : new Queue[][] { { from, to }, { to, from } }) {
+                        Product product;
+                        cut.enter();
+                        try {
+                            product = hop[0].dequeue();
+                            if (product != null) {
+                                inHand(machine, product, true);
+                            }
+                        } finally {
+                            cut.exit();
+                        }
+                        if (product != null) {
+                            Thread.yield();
+                            cut.enter();
+                            try {
+                                hop[1].enqueue(product);
+                                inHand(machine, product, false);
+                            } finally {
+                                cut.exit();
+                            }
+                        }
+                    }
+                }
+            });
+            mover.start();
+            movers.add(mover);
+        }
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                SimulationState copy = state.saveToSnapshot("cut", false, cut).getState();
+                int seen = copy.getQueues().stream().mapToInt(q -> q.getProducts().size()).sum()
+                        + copy.getMachines().stream().mapToInt(Machine::getProductCount).sum();
+                assertEquals(products, seen);
+                // and the products in hand are carried, not just counted
+                Set<String> ids = new HashSet<>();
+                copy.getQueues().forEach(q -> q.getProducts().forEach(p -> ids.add(p.getId())));
+                copy.getMachines().forEach(m -> m.getHeldProducts().forEach(p -> ids.add(p.getId())));
+                assertEquals(products, ids.size());
+            }
+        } finally {
+            moving.set(false);
+            for (Thread mover : movers) {
+                mover.join();
+            }
+        }
+        assertEquals(200, cut.getPauses().getCount());
+    }
+
+    private static void inHand(Machine machine, Product product, boolean took) {
+        synchronized (machine) {
+            if (took) {
+                machine.getHeldProducts().add(product);
+            } else {
+                machine.getHeldProducts().remove(product);
+            }
+            machine.setProductCount(machine.getHeldProducts().size());
+        }
+    }
+
+    private static Queue queue(String id) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        return queue;
+    }
+
+    private static Connection connection(String id, String source, String target) {
+        Connection connection = new Connection();
+        connection.setId(id);
+        connection.setSourceId(source);
+        connection.setTargetId(target);
+        return connection;
+    }
+}
@@ -0,0 +1,33 @@
+package com.producesconsumer.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilizationStatsTest {
+
+    @Test
+    void serverTimeIsSplitByStateBetweenChanges() {
+        UtilizationStats stats = new UtilizationStats();
+        stats.update(1_000, 2, 0, 0); // both idle
+        stats.update(1_100, 2, 2, 0); // both processing
+        stats.update(1_300, 2, 2, 1); // one blocked
+
+        UtilizationStats.Totals totals = stats.totals(1_400);
+        assertEquals(2 * 200 + 100, totals.processingNanos());
+        assertEquals(100, totals.blockedNanos());
+        assertEquals(2 * 100, totals.idleNanos());
+    }
+
+    @Test
+    void resetStopsAccountingUntilTheNextChange() {
+        UtilizationStats stats = new UtilizationStats();
+        stats.update(1_000, 1, 1, 0);
+        stats.recordStarted();
+        stats.reset();
+
+        UtilizationStats.Totals totals = stats.totals(5_000);
+        assertEquals(0, totals.processingNanos());
+        assertEquals(0, stats.getStarted());
+    }
+}
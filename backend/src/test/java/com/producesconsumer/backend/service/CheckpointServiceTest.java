@@ -0,0 +1,266 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.CheckpointInfo;
+import com.producesconsumer.backend.model.Checkpoint;
+import com.producesconsumer.backend.model.CutBarrier;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.observer.QueueEventObserver;
+import com.producesconsumer.backend.observer.TransitionLogObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ExecutorService executor;
+    private EventBroadcaster broadcaster;
+    private QueueService queueService;
+    private SimulationService simulationService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        EventService eventService = new EventService(64, "drop-oldest", new SimpleMeterRegistry());
+        broadcaster = new EventBroadcaster(eventService, 30, 0);
+        queueService = new QueueService(new SimpleMeterRegistry());
+        simulationService = new SimulationService(eventService, broadcaster, queueService,
+                new QueueEventObserver(broadcaster),
+                new MachineProcessingService(executor, queueService, null), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void deltasHoldOnlyWhatChangedAndEveryCheckpointReconstructs() throws Exception {
+        SimulationState state = simulationService.getState();
+        Queue busy = queue("Q1", 10);
+        state.addQueue(busy);
+        state.addQueue(queue("Q2", 5));
+        state.addQueue(queue("Q3", 0));
+        CheckpointService checkpoints = service();
+        try {
+            CheckpointInfo base = checkpoints.checkpoint();
+            assertTrue(base.isFull());
+            assertEquals(3, base.getQueues());
+
+            busy.dequeue();
+            CheckpointInfo delta = checkpoints.checkpoint();
+            assertFalse(delta.isFull());
+            assertEquals(base.getSequence(), delta.getBase());
+            assertEquals(1, delta.getQueues()); // the untouched queues are skipped
+
+            assertNull(checkpoints.checkpoint()); // nothing changed
+
+            state.removeQueue("Q3");
+            CheckpointInfo removal = checkpoints.checkpoint();
+            assertEquals(1, removal.getRemoved());
+
+            assertEquals(10, checkpoints.reconstruct(base.getSequence()).getState().getQueue("Q1").getProductCount());
+            SimulationState atDelta = checkpoints.reconstruct(delta.getSequence()).getState();
+            assertEquals(9, atDelta.getQueue("Q1").getProductCount());
+            assertEquals(5, atDelta.getQueue("Q2").getProducts().size());
+            assertNotNull(atDelta.getQueue("Q3"));
+            assertNull(checkpoints.reconstruct(null).getState().getQueue("Q3"));
+        } finally {
+            checkpoints.shutdown();
+        }
+    }
+
+    @Test
+    void longChainsCompactAndTheChainOnDiskRestoresAfterARestart() throws Exception {
+        SimulationState state = simulationService.getState();
+        Queue busy = queue("Q1", 10);
+        state.addQueue(busy);
+        CheckpointService checkpoints = service();
+        try {
+            checkpoints.checkpoint();
+            for (int i = 0; i < 3; i++) {
+                busy.dequeue();
+                checkpoints.checkpoint();
+            }
+        } finally {
+            checkpoints.shutdown();
+        }
+
+        // max-chain 2: the base and the two oldest deltas were folded together
+        List<CheckpointInfo> chain = checkpoints.getCheckpoints();
+        assertEquals(2, chain.size());
+        assertTrue(chain.get(0).isFull());
+        assertEquals(chain.get(0).getSequence(), chain.get(1).getBase());
+        try (Stream<Path> files = Files.list(dir.resolve("checkpoints"))) {
+            assertEquals(2, files.count());
+        }
+
+        state.clear();
+        CheckpointService recovered = service();
+        try {
+            assertEquals(chain.stream().map(CheckpointInfo::getSequence).toList(),
+                    recovered.getCheckpoints().stream().map(CheckpointInfo::getSequence).toList());
+            recovered.restore(null);
+            assertEquals(7, state.getQueue("Q1").getProductCount());
+            assertFalse(state.isRunning());
+        } finally {
+            recovered.shutdown();
+        }
+    }
+
+    @Test
+    void theLogReplayedFromACheckpointRebuildsTheLiveQueues() throws Exception {
+        SimulationState state = simulationService.getState();
+        List<Queue> queues = List.of(queue("Q1", 20), queue("Q2", 20));
+        queues.forEach(state::addQueue);
+        EventLog eventLog = new EventLog(dir.resolve("log").toString(), 1, 1);
+        new TransitionLogObserver(eventLog, queueService, simulationService);
+        CheckpointService checkpoints = service(eventLog);
+        CutBarrier cut = queueService.getCutBarrier();
+        try {
+            // two producers onto both queues, two consumers taking singly and in
+            // batches off both and putting every other batch back
+            CountDownLatch halfway = new CountDownLatch(4);
+            List<Thread> movers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                int producer = t;
+                movers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        Product product = new Product();
+                        product.setId("P" + producer + "-" + i);
+                        product.setColor("#e74c3c");
+                        cut.enter();
+                        try {
+                            queueService.addProductToQueue(queues.get(i % 2), product);
+                        } finally {
+                            cut.exit();
+                        }
+                        if (i == 1_000) {
+                            halfway.countDown();
+                        }
+                    }
+                }));
+                movers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        Queue from = queues.get(i % 2);
+                        cut.enter();
+                        try {
+                            if (i % 3 == 0) {
+                                queueService.removeProductFromQueue(from);
+                            } else {
+                                List<Product> batch = new ArrayList<>();
+                                queueService.removeProductsFromQueue(from, 3, batch);
+                                if (i % 3 == 1) {
+                                    queueService.returnProductsToQueue(from, batch);
+                                }
+                            }
+                        } finally {
+                            cut.exit();
+                        }
+                        if (i == 1_000) {
+                            halfway.countDown();
+                        }
+                    }
+                }));
+            }
+            halfway.await();
+            CheckpointInfo taken = checkpoints.checkpoint(); // mid-run, at a cut
+            for (Thread mover : movers) {
+                mover.join();
+            }
+
+            Checkpoint checkpoint = checkpoints.latestAt(Long.MAX_VALUE);
+            assertEquals(taken.getSequence(), checkpoint.getSequence());
+            SimulationState replayed = new SimulationState();
+            replayed.loadFromSnapshot(checkpoints.reconstruct(checkpoint.getSequence()));
+            eventLog.read(checkpoint.getLogPosition(), transition -> {
+                transition.applyTo(replayed);
+                return true;
+            });
+            for (Queue live : queues) {
+                assertEquals(ids(live), ids(replayed.getQueue(live.getId())), live.getId());
+                assertEquals(live.getProductCount(), replayed.getQueue(live.getId()).getProductCount());
+            }
+        } finally {
+            checkpoints.shutdown();
+        }
+    }
+
+    @Test
+    void replayingTheLogAcrossAFastForwardCatchesUpWithIt() throws Exception {
+        EventLog eventLog = new EventLog(dir.resolve("log").toString(), 1, 16);
+        new TransitionLogObserver(eventLog, queueService, simulationService);
+        Queue source = simulationService.addQueue(0, 0);
+        Machine machine = simulationService.addMachine(100, 0);
+        Queue out = simulationService.addQueue(200, 0);
+        simulationService.addConnection(source.getId(), "queue", machine.getId(), "machine");
+        simulationService.addConnection(machine.getId(), "machine", out.getId(), "queue");
+        CheckpointService checkpoints = service(eventLog);
+        try {
+            checkpoints.checkpoint();
+            Checkpoint before = checkpoints.latestAt(Long.MAX_VALUE);
+
+            // the engine moves products past the journal
+            simulationService.fastForward(60_000);
+            assertTrue(out.getProductCount() > 0);
+
+            SimulationState replayed = new SimulationState();
+            replayed.loadFromSnapshot(checkpoints.reconstruct(before.getSequence()));
+            eventLog.read(before.getLogPosition(), transition -> {
+                transition.applyTo(replayed);
+                return true;
+            });
+            for (Queue live : List.of(source, out)) {
+                assertEquals(ids(live), ids(replayed.getQueue(live.getId())), live.getId());
+            }
+            assertEquals(machine.getProductCount(), replayed.getMachine(machine.getId()).getProductCount());
+            assertEquals(machine.getState(), replayed.getMachine(machine.getId()).getState());
+        } finally {
+            checkpoints.shutdown();
+        }
+    }
+
+    private CheckpointService service() {
+        return service(new EventLog(dir.resolve("log").toString(), 1, 1));
+    }
+
+    private CheckpointService service(EventLog eventLog) {
+        return new CheckpointService(simulationService, queueService, eventLog, new SimpleMeterRegistry(),
+                0, 2, dir.resolve("checkpoints").toString());
+    }
+
+    private static List<String> ids(Queue queue) {
+        return queue.getProducts().stream().map(Product::getId).toList();
+    }
+
+    private static Queue queue(String id, int products) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setId(id + "-" + i);
+            product.setColor("#3498db");
+            queue.enqueue(product);
+        }
+        return queue;
+    }
+}
@@ -0,0 +1,363 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscreteEventEngineTest {
+
+    @Test
+    void fastForwardRunsHoursOfVirtualTimeAndConservesProducts() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        state.addQueue(q0);
+        state.addQueue(q1);
+
+        Machine m1 = new Machine();
+        m1.setId("M1");
+        m1.setState("idle");
+        m1.setProcessingTime(3000);
+        state.addMachine(m1);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        DiscreteEventEngine engine = new DiscreteEventEngine(state, () -> topology,
+                queueService(), null, 0, oneHour);
+
+        long start = System.nanoTime();
+        engine.run();
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(oneHour, engine.getClock());
+        assertTrue(wallMs < 5_000, "an hour of simulated time took " + wallMs + " ms");
+
+        // arrivals every 2-2.5 s, so ~1440-1800 products in an hour
+        int generated = state.getTotalProductsGenerated();
+        assertTrue(generated >= 1440 && generated <= 1800, "generated " + generated);
+
+        // M1 finishes one product every 3 s
+        assertTrue(q1.getProductCount() >= 1199 && q1.getProductCount() <= 1200);
+        assertEquals(3000.0, m1.getServiceTimeStats().getPercentileMs(50), 3000 * 0.04);
+        assertEquals(q1.getArrivalCount(), m1.getUtilization().getFinished());
+        // the product in service at the horizon went back to the head of Q0
+        assertEquals(q0.getDepartureCount(), m1.getUtilization().getFinished());
+        assertEquals("idle", m1.getState());
+        assertEquals(0, m1.getProductCount());
+
+        assertEquals(generated, q0.getProductCount() + q1.getProductCount());
+    }
+
+    @Test
+    void fullBlockingQueuesPushBackToTheSource() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        Queue q2 = queue("Q2");
+        q0.setCapacity(5);
+        q1.setCapacity(3);
+        state.addQueue(q0);
+        state.addQueue(q1);
+        state.addQueue(q2);
+        Machine fast = machine("M1", 1000);
+        Machine slow = machine("M2", 10_000); // the bottleneck: 360 per hour
+        state.addMachine(fast);
+        state.addMachine(slow);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        state.addConnection(connection("C3", "Q1", "M2"));
+        state.addConnection(connection("C4", "M2", "Q2"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        // buffers stay bounded and the source is throttled to the bottleneck rate;
+        // at the horizon what producers held is let in over the capacity (an
+        // arrival held at Q0, M1's blocked product and M2's unfinished one)
+        assertTrue(q0.getProductCount() <= 5 + 1);
+        assertTrue(q1.getProductCount() <= 3 + 2);
+        assertTrue(q2.getProductCount() >= 359 && q2.getProductCount() <= 360, "delivered " + q2.getProductCount());
+        int generated = state.getTotalProductsGenerated();
+        assertTrue(generated <= 360 + 5 + 3 + 2 + 1, "generated " + generated);
+
+        // nothing lost: nothing is left held by a machine or at the source
+        assertEquals(generated, q0.getProductCount() + q1.getProductCount() + q2.getProductCount());
+        assertEquals(0, fast.getProductCount() + slow.getProductCount());
+        assertEquals(0, q0.getDroppedCount());
+    }
+
+    @Test
+    void productsLeftQueuedByAFastForwardWaitOnTheLiveClock() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        state.addQueue(q0);
+        state.addMachine(machine("M1", 10_000)); // falls behind, Q0 builds up
+        state.addConnection(connection("C1", "Q0", "M1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+        assertTrue(q0.getProductCount() > 1000);
+        long servedBefore = q0.getWaitStats().getServed();
+
+        // dequeued live: the wait is the product's age in virtual time, never
+        // the distance between two clocks
+        Product head = q0.dequeue();
+        long waitedMs = (head.getDequeuedAt() - head.getEnqueuedAt()) / 1_000_000;
+        assertTrue(waitedMs > 0 && waitedMs <= oneHour, "waited " + waitedMs + " ms");
+        assertEquals(servedBefore + 1, q0.getWaitStats().getServed());
+        assertTrue(q0.getWaitStats().getMaxWaitMs() <= oneHour);
+    }
+
+    @Test
+    void fullDroppingSourceShedsArrivals() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        q0.setCapacity(2);
+        q0.setOverflowPolicy("drop");
+        state.addQueue(q0);
+        state.addMachine(machine("M1", 10_000));
+        state.addConnection(connection("C1", "Q0", "M1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        // the product in service at the horizon goes back in front, over capacity
+        assertTrue(q0.getProductCount() <= 2 + 1);
+        // arrivals keep their 2-2.5 s pace, only ~360 of them get served
+        assertTrue(q0.getDroppedCount() > 1000, "dropped " + q0.getDroppedCount());
+    }
+
+    @Test
+    void multiServerMachineProcessesInParallel() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        state.addQueue(q0);
+        state.addQueue(q1);
+        Machine station = machine("M1", 9000); // one server alone manages a quarter of the arrivals
+        station.setServers(5);
+        state.addMachine(station);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        int generated = state.getTotalProductsGenerated();
+        assertTrue(q1.getProductCount() >= generated - 10, "delivered " + q1.getProductCount() + " of " + generated);
+        assertTrue(station.getBusyServers() <= 5);
+        assertEquals(generated, q0.getProductCount() + q1.getProductCount() + station.getBusyServers());
+    }
+
+    @Test
+    void batchMachineWaitsForFullBatches() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        state.addQueue(q0);
+        state.addQueue(q1);
+        Machine oven = machine("M1", 6000);
+        oven.setBatchSize(4);
+        oven.setBatchTimeoutMs(60_000); // longer than 4 arrivals ever take
+        state.addMachine(oven);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        // 4 products per 6 s outpaces the ~1 per 2.25 s arrivals, so the oven
+        // keeps up and only ever leaves with a full load
+        int generated = state.getTotalProductsGenerated();
+        assertEquals(0, q1.getProductCount() % 4, "delivered " + q1.getProductCount());
+        assertTrue(q1.getProductCount() >= generated - 8, "delivered " + q1.getProductCount() + " of " + generated);
+        assertEquals(generated, q0.getProductCount() + q1.getProductCount() + oven.getCurrentBatchSize());
+    }
+
+    @Test
+    void batchTimeoutStartsAPartialBatch() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        state.addQueue(q0);
+        state.addQueue(q1);
+        Machine oven = machine("M1", 1000);
+        oven.setBatchSize(100); // never fills at this arrival rate
+        oven.setBatchTimeoutMs(10_000);
+        state.addMachine(oven);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        // partial batches go every ~11 s, so nothing waits much longer than that
+        int generated = state.getTotalProductsGenerated();
+        assertTrue(q1.getProductCount() >= generated - 10, "delivered " + q1.getProductCount() + " of " + generated);
+        assertEquals(generated, q0.getProductCount() + q1.getProductCount() + oven.getCurrentBatchSize());
+    }
+
+    @Test
+    void everySourceHasItsOwnArrivalsAndSinksCountCompletions() {
+        SimulationState state = new SimulationState();
+        Queue q0 = queue("Q0"); // a source by default
+        Queue q1 = queue("Q1");
+        Queue q2 = queue("Q2");
+        q1.setRole("source");
+        TimeDistribution slow = new TimeDistribution();
+        slow.setType("fixed");
+        slow.setMean(10_000);
+        q1.setArrivalDistribution(slow);
+        q2.setRole("sink");
+        state.addQueue(q0);
+        state.addQueue(q1);
+        state.addQueue(q2);
+        state.addMachine(machine("M1", 500));
+        state.addMachine(machine("M2", 500));
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "Q1", "M2"));
+        state.addConnection(connection("C3", "M1", "Q2"));
+        state.addConnection(connection("C4", "M2", "Q2"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+        assertArrayEquals(new Queue[] { q0, q1 }, topology.sources());
+        assertArrayEquals(new Queue[] { q2 }, topology.sinks());
+
+        long oneHour = 60 * 60 * 1000L;
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, oneHour).run();
+
+        // Q1 gets exactly one arrival every 10 s, Q0 keeps the 2-2.5 s default
+        assertEquals(360, q1.getGeneratedCount());
+        assertTrue(q0.getGeneratedCount() >= 1440 && q0.getGeneratedCount() <= 1800);
+        int generated = state.getTotalProductsGenerated();
+        assertEquals(generated, q0.getGeneratedCount() + q1.getGeneratedCount());
+
+        // the sink stores nothing, everything delivered is counted with its time in the line
+        assertEquals(0, q2.getProductCount());
+        assertTrue(q2.getCompletedCount() >= generated - 2, "completed " + q2.getCompletedCount());
+        assertEquals(500.0, q2.getSystemTimeStats().getMeanWaitMs(), 1.0);
+    }
+
+    @Test
+    void seededRunsWithRandomTimesRepeatExactly() {
+        int[] first = seededRun(42L);
+        int[] second = seededRun(42L);
+        assertArrayEquals(first, second);
+    }
+
+    /// generated, still queued, delivered after an hour of exponential
+    /// arrivals and log-normal service
+    private static int[] seededRun(long seed) {
+        SimulationState state = new SimulationState();
+        state.setRandomSeed(seed);
+        TimeDistribution arrivals = new TimeDistribution();
+        arrivals.setType("exponential");
+        arrivals.setMean(2000);
+        state.setArrivalDistribution(arrivals);
+        Queue q0 = queue("Q0");
+        Queue q1 = queue("Q1");
+        state.addQueue(q0);
+        state.addQueue(q1);
+        Machine m1 = machine("M1", 1800);
+        TimeDistribution service = new TimeDistribution();
+        service.setType("log-normal");
+        service.setMean(1800);
+        service.setStdDev(900);
+        m1.setProcessingTimeDistribution(service);
+        state.addMachine(m1);
+        state.addConnection(connection("C1", "Q0", "M1"));
+        state.addConnection(connection("C2", "M1", "Q1"));
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        new DiscreteEventEngine(state, () -> topology, queueService(), null, 0, 60 * 60 * 1000L).run();
+        return new int[] { state.getTotalProductsGenerated(), q0.getProductCount(), q1.getProductCount() };
+    }
+
+    @Test
+    void aLiveEngineWithNothingScheduledPicksUpASourceAddedLater() throws Exception {
+        SimulationState state = new SimulationState();
+        state.addQueue(queue("Q1")); // a buffer, nothing arrives yet
+        AtomicReference<RoutingTopology> topology = new AtomicReference<>(RoutingTopology.compile(state, 1));
+        DiscreteEventEngine engine = new DiscreteEventEngine(state, topology::get,
+                queueService(), null, 100, Long.MAX_VALUE);
+        Thread thread = Thread.ofPlatform().start(engine);
+        try {
+            Thread.sleep(200);
+            assertTrue(thread.isAlive());
+
+            Queue source = queue("Q2");
+            source.setRole("source");
+            source.setArrivalDistribution(TimeDistribution.uniform(100, 200)); // 1-2 ms at 100x
+            state.addQueue(source);
+            topology.set(RoutingTopology.compile(state, 2));
+            for (int i = 0; i < 100 && source.getProductCount() == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertTrue(source.getProductCount() > 0);
+        } finally {
+            engine.stop();
+            thread.join();
+        }
+    }
+
+    @Test
+    void aStoppedLiveEngineLeavesItsPacingSleepAtOnce() {
+        SimulationState state = new SimulationState();
+        Queue source = queue("Q0");
+        source.setArrivalDistribution(TimeDistribution.uniform(60_000, 60_000));
+        state.addQueue(source);
+        RoutingTopology topology = RoutingTopology.compile(state, 1);
+
+        // at 1x the engine sleeps a minute for the first arrival
+        DiscreteEventEngine engine = new DiscreteEventEngine(state, () -> topology,
+                queueService(), null, 1, Long.MAX_VALUE);
+        Thread.ofPlatform().start(engine);
+        assertFalse(engine.awaitStopped(100));
+
+        engine.stop();
+        assertTrue(engine.awaitStopped(1000));
+        assertEquals(0, state.getTotalProductsGenerated());
+    }
+
+    private static QueueService queueService() {
+        return new QueueService(new SimpleMeterRegistry());
+    }
+
+    private static Machine machine(String id, int processingTime) {
+        Machine machine = new Machine();
+        machine.setId(id);
+        machine.setState("idle");
+        machine.setProcessingTime(processingTime);
+        return machine;
+    }
+
+    private static Queue queue(String id) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        return queue;
+    }
+
+    private static Connection connection(String id, String sourceId, String targetId) {
+        Connection connection = new Connection();
+        connection.setId(id);
+        connection.setSourceId(sourceId);
+        connection.setTargetId(targetId);
+        return connection;
+    }
+}
@@ -0,0 +1,159 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.StateDelta;
+import com.producesconsumer.backend.dto.StateSync;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SSE;
+import com.producesconsumer.backend.model.SimulationState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBroadcasterTest {
+
+    private EventBroadcaster broadcaster;
+    private Disposable subscription;
+    private final List<SSE> frames = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        EventService eventService = new EventService(256, "drop-oldest", new SimpleMeterRegistry());
+        broadcaster = new EventBroadcaster(eventService, 30, 0);
+        broadcaster.shutdown(); // frames are flushed by hand below
+        subscription = eventService.subscribe().subscribe(frames::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.dispose();
+    }
+
+    @Test
+    void syncBeforeAnythingWasPublishedCarriesTheLiveState() throws InterruptedException {
+        SimulationState live = new SimulationState();
+        live.addQueue(queue("Q1"));
+
+        StateSync sync = broadcaster.snapshot(live);
+        assertSame(live, sync.getState());
+        assertEquals(0, sync.getSeq());
+
+        broadcaster.flush();
+        StateDelta first = awaitDeltas(1).get(0);
+        assertEquals(sync.getSeq() + 1, first.getSeq());
+        assertEquals("Q1", first.getQueues().get(0).getId());
+    }
+
+    @Test
+    void seqGrowsByOnePerDeltaAndASnapshotClosesAGap() throws InterruptedException {
+        SimulationState live = new SimulationState();
+        Queue queue = queue("Q1");
+        live.addQueue(queue);
+        broadcaster.publishState(live);
+        broadcaster.flush();
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(product("P" + i));
+            broadcaster.publishQueue(queue);
+            broadcaster.flush();
+        }
+        broadcaster.flush(); // nothing changed, no delta and no seq used
+
+        List<StateDelta> deltas = awaitDeltas(4);
+        assertEquals(List.of(1L, 2L, 3L, 4L), deltas.stream().map(StateDelta::getSeq).toList());
+
+        // a client that missed delta 3 sees 4 after 2 and resyncs: the
+        // snapshot covers everything sent so far and the stream continues from it
+        long lastApplied = deltas.get(1).getSeq();
+        assertNotEquals(lastApplied + 1, deltas.get(3).getSeq());
+        StateSync sync = broadcaster.snapshot(live);
+        assertEquals(deltas.get(3).getSeq(), sync.getSeq());
+        assertEquals(3, sync.getState().getQueue("Q1").getProductCount());
+
+        queue.enqueue(product("P3"));
+        broadcaster.publishQueue(queue);
+        broadcaster.flush();
+        StateDelta next = awaitDeltas(5).get(4);
+        assertEquals(sync.getSeq() + 1, next.getSeq());
+        assertEquals(4, next.getQueues().get(0).getProductCount());
+    }
+
+    @Test
+    void updatesWithinOneFrameGoOutAsOneBatchWithTheLastValues() throws InterruptedException {
+        SimulationState live = new SimulationState();
+        Queue queue = queue("Q1");
+        live.addQueue(queue);
+        Machine machine = new Machine();
+        machine.setId("M1");
+        machine.setState("idle");
+        live.addMachine(machine);
+        broadcaster.publishState(live);
+        broadcaster.flush();
+        awaitDeltas(1);
+
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(product("P" + i));
+            broadcaster.publishQueue(queue);
+            machine.setState(i % 2 == 0 ? "processing" : "blocked");
+            machine.setCurrentProductColor("#00000" + i);
+            broadcaster.publishMachine(machine);
+            broadcaster.publishFlash("M1");
+        }
+        broadcaster.flush();
+
+        StateDelta delta = awaitDeltas(2).get(1);
+        assertEquals(2, batches().size());
+        assertEquals(1, delta.getQueues().size());
+        assertEquals(5, delta.getQueues().get(0).getProductCount());
+        assertEquals(1, delta.getMachines().size());
+        assertEquals("processing", delta.getMachines().get(0).getState());
+        assertEquals("#000004", delta.getMachines().get(0).getCurrentProductColor());
+        assertEquals(1, batches().get(1).stream().filter(event -> "MACHINE_FLASH".equals(event.getType())).count());
+    }
+
+    /// the STATE_DELTAs of every BATCH received so far, once there are at least count
+    private List<StateDelta> awaitDeltas(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && deltas().size() < count; i++) {
+            Thread.sleep(20);
+        }
+        List<StateDelta> deltas = deltas();
+        assertEquals(count, deltas.size());
+        return deltas;
+    }
+
+    private List<StateDelta> deltas() {
+        return batches().stream()
+                .flatMap(List::stream)
+                .filter(event -> "STATE_DELTA".equals(event.getType()))
+                .map(event -> (StateDelta) event.getData())
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<SSE>> batches() {
+        return frames.stream()
+                .filter(frame -> "BATCH".equals(frame.getType()))
+                .map(frame -> (List<SSE>) frame.getData())
+                .toList();
+    }
+
+    private static Queue queue(String id) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        return queue;
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setColor("#3498db");
+        return product;
+    }
+}
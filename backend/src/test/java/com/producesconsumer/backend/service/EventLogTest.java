@@ -0,0 +1,167 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.Transition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAppendsSpanSegmentsAndSurviveAReopen() throws Exception {
+        // 1 MB segments: 80k records need several, so some land on a boundary
+        EventLog log = new EventLog(dir.toString(), 1, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String queueId = "Q" + t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    log.append(Transition.enqueued(i, queueId, "P" + i, i % 2 == 0 ? null : "#3498db"));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+
+        // each writer's records come back complete and in its order
+        int[] next = new int[4];
+        long end = log.read(0, transition -> {
+            int writer = transition.id().charAt(1) - '0';
+            assertEquals("P" + next[writer], transition.productId());
+            assertEquals(next[writer] % 2 == 0, transition.color() == null);
+            next[writer]++;
+            return true;
+        });
+        assertArrayEquals(new int[] {20_000, 20_000, 20_000, 20_000}, next);
+        assertEquals(log.position(), end);
+        assertTrue(segments() > 1);
+        assertEquals(19_999, log.lastTime());
+
+        EventLog reopened = new EventLog(dir.toString(), 1, 16);
+        assertEquals(log.position(), reopened.position());
+        assertEquals(80_000, count(reopened, 0));
+
+        reopened.discardBefore(reopened.position());
+        assertEquals(1, segments());
+        assertTrue(count(reopened, 0) < 80_000);
+    }
+
+    @Test
+    void onlyTheNewestSegmentsAreKeptWithoutCheckpoints() throws Exception {
+        EventLog log = new EventLog(dir.toString(), 1, 2);
+        for (int i = 0; i < 100_000; i++) {
+            log.append(Transition.enqueued(i, "Q1", "P" + i, "#3498db"));
+        }
+        assertEquals(2, segments());
+        assertTrue(log.start() > 0);
+        assertTrue(count(log, 0) < 100_000);
+
+        // a reopened log starts out trimmed to the limit as well
+        EventLog reopened = new EventLog(dir.toString(), 1, 2);
+        assertEquals(log.start(), reopened.start());
+        assertEquals(99_999, reopened.lastTime());
+        assertEquals(log.position(), reopened.position());
+    }
+
+    @Test
+    void aTornRecordInTheFirstOfTwoSegmentsDropsEverythingAfterIt() throws Exception {
+        EventLog log = new EventLog(dir.toString(), 1, 16);
+        for (int i = 0; i < 30_000; i++) {
+            log.append(Transition.enqueued(i, "Q1", "P" + i, "#3498db"));
+        }
+        assertEquals(2, segments());
+        long[] torn = {-1};
+        log.read(0, transition -> {
+            torn[0] = transition.position();
+            return transition.time() < 1000;
+        });
+        log.shutdown();
+
+        // a crash before the record's length was written
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("0000000000.log").toFile(), "rw")) {
+            file.seek(torn[0]);
+            file.writeInt(0);
+        }
+
+        EventLog reopened = new EventLog(dir.toString(), 1, 16);
+        assertEquals(torn[0], reopened.position());
+        assertEquals(1, segments()); // the second one only held records after the hole
+        assertEquals(1000, count(reopened, 0));
+        assertEquals(999, reopened.lastTime());
+
+        // new records follow the last complete one, nothing older shows through
+        for (int i = 0; i < 30_000; i++) {
+            reopened.append(Transition.enqueued(50_000 + i, "Q2", "N" + i, null));
+        }
+        List<Transition> after = new ArrayList<>();
+        reopened.read(torn[0], after::add);
+        assertEquals(30_000, after.size());
+        for (int i = 0; i < after.size(); i++) {
+            assertEquals("N" + i, after.get(i).productId());
+        }
+    }
+
+    @Test
+    void readingStopsWhereTheVisitorRefusesAndResumesThere() {
+        EventLog log = new EventLog(dir.toString(), 1, 16);
+        Machine machine = new Machine();
+        machine.setId("M1");
+        machine.setState("processing");
+        machine.setProductCount(1);
+        machine.setCurrentProductColor("#e74c3c");
+        log.append(Transition.enqueued(10, "Q1", "P1", "#e74c3c"));
+        log.append(Transition.enqueued(20, "Q1", "P2", "#3498db"));
+        log.append(Transition.dequeued(30, "Q1", 1));
+        log.append(Transition.machine(30, machine));
+
+        SimulationState state = new SimulationState();
+        Queue queue = new Queue();
+        queue.setId("Q1");
+        state.addQueue(queue);
+        Machine replayed = new Machine();
+        replayed.setId("M1");
+        state.addMachine(replayed);
+
+        long resume = log.read(0, transition -> transition.time() <= 20 && transition.applyTo(state) != null);
+        assertEquals(2, queue.getProducts().size());
+        log.read(resume, transition -> transition.applyTo(state) != null);
+        List<Product> left = new ArrayList<>(queue.getProducts());
+        assertEquals(1, left.size());
+        assertEquals("P2", left.get(0).getId());
+        assertEquals("processing", replayed.getState());
+        assertEquals("#e74c3c", replayed.getCurrentProductColor());
+    }
+
+    private static int count(EventLog log, long from) {
+        int[] count = {0};
+        log.read(from, transition -> ++count[0] > 0);
+        return count[0];
+    }
+
+    private long segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.SSE;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventServiceTest {
+
+    @Test
+    void slowSubscriberDropsOwnEventsWithoutBlockingPublisherOrOthers() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EventService eventService = new EventService(8, "drop-oldest", registry);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fastReceived = new AtomicInteger();
+
+        Disposable slow = eventService.subscribe().subscribe(event -> {
+            try {
+                release.await(); // a browser tab that stopped reading
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Disposable fast = eventService.subscribe().subscribe(event -> fastReceived.incrementAndGet());
+
+        // paced like broadcaster frames, so a healthy client keeps up
+        int events = 200;
+        long maxPublishNanos = 0;
+        for (int i = 0; i < events; i++) {
+            long start = System.nanoTime();
+            eventService.publishEvent(new SSE("TEST", i));
+            maxPublishNanos = Math.max(maxPublishNanos, System.nanoTime() - start);
+            Thread.sleep(1);
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(maxPublishNanos) < 100,
+                "publisher blocked for " + TimeUnit.NANOSECONDS.toMillis(maxPublishNanos) + " ms");
+        for (int i = 0; i < 100 && fastReceived.get() < events; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(events, fastReceived.get());
+        assertEquals(2, eventService.getStats().getSubscribers());
+        // the stalled client holds one event in hand, one prefetched and 8 buffered
+        assertTrue(eventService.getStats().getDroppedEvents() >= events - 8 - 2);
+
+        // the same figures are exported as meters
+        assertEquals(2, registry.get("simulation.sse.subscribers").gauge().value());
+        assertEquals(eventService.getStats().getDroppedEvents(),
+                registry.get("simulation.sse.dropped").functionCounter().count());
+        assertEquals(events, registry.get("simulation.sse.emit").timer().count());
+
+        release.countDown();
+        slow.dispose();
+        fast.dispose();
+    }
+
+    @Test
+    void latestPolicyCountsTheEventsItReplaces() throws InterruptedException {
+        EventService eventService = new EventService(8, "latest", new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger();
+        Disposable slow = eventService.subscribe().subscribe(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+        });
+
+        int events = 100;
+        for (int i = 0; i < events; i++) {
+            eventService.publishEvent(new SSE("TEST", i));
+        }
+        release.countDown();
+        for (int i = 0; i < 100 && received.get() + eventService.getStats().getDroppedEvents() < events; i++) {
+            Thread.sleep(20);
+        }
+        // every event was either delivered or counted as dropped
+        assertEquals(events, received.get() + eventService.getStats().getDroppedEvents());
+        assertTrue(eventService.getStats().getDroppedEvents() >= events - 3);
+        slow.dispose();
+    }
+
+    @Test
+    void moreStalledClientsThanPlatformWorkersDoNotDelayAHealthyOne() throws InterruptedException {
+        EventService eventService = new EventService(8, "drop-oldest", new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        int stalled = Runtime.getRuntime().availableProcessors() * 10 + 1; // past boundedElastic's cap
+        List<Disposable> clients = new ArrayList<>();
+        for (int i = 0; i < stalled; i++) {
+            clients.add(eventService.subscribe().subscribe(event -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        AtomicInteger healthy = new AtomicInteger();
+        clients.add(eventService.subscribe().subscribe(event -> healthy.incrementAndGet()));
+
+        // one at a time, so its own buffer never overflows: each event has to
+        // get through while every stalled client still holds its worker
+        for (int i = 0; i < 20; i++) {
+            eventService.publishEvent(new SSE("TEST", i));
+            for (int wait = 0; wait < 100 && healthy.get() <= i; wait++) {
+                Thread.sleep(20);
+            }
+            assertEquals(i + 1, healthy.get());
+        }
+
+        release.countDown();
+        clients.forEach(Disposable::dispose);
+    }
+}
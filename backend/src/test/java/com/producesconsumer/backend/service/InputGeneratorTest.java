@@ -0,0 +1,89 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.CutBarrier;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputGeneratorTest {
+
+    private final QueueService queueService = new QueueService(new SimpleMeterRegistry());
+    private final SimulationState state = new SimulationState();
+
+    @Test
+    void everyCutFindsEachGeneratedProductWhileTheSourceIsFull() throws Exception {
+        Queue source = source(1);
+        InputGenerator generator = new InputGenerator(source, queueService, state);
+        Thread arrivals = Thread.ofPlatform().start(generator);
+
+        // a slow consumer keeps the source full most of the time
+        CutBarrier cut = queueService.getCutBarrier();
+        AtomicInteger taken = new AtomicInteger();
+        AtomicBoolean consuming = new AtomicBoolean(true);
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            while (consuming.get()) {
+                cut.enter();
+                try {
+                    if (queueService.removeProductFromQueue(source) != null) {
+                        taken.incrementAndGet();
+                    }
+                } finally {
+                    cut.exit();
+                }
+                try {
+                    Thread.sleep(3);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                cut.cut(() -> assertEquals(state.getTotalProductsGenerated(),
+                        source.getProductCount() + taken.get()));
+                Thread.sleep(1);
+            }
+        } finally {
+            consuming.set(false);
+            consumer.join();
+            generator.stop();
+            arrivals.join();
+        }
+        assertTrue(taken.get() > 0);
+    }
+
+    @Test
+    void anArrivalHeldAtAFullSourceIsLetInWhenTheGeneratorStops() throws Exception {
+        Queue source = source(1);
+        InputGenerator generator = new InputGenerator(source, queueService, state);
+        Thread.ofPlatform().start(generator);
+        for (int i = 0; i < 100 && source.getProductCount() == 0; i++) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(20); // the next arrival is being held by now
+
+        generator.stop();
+        assertTrue(generator.awaitStopped(1000));
+        assertEquals(2, source.getProductCount());
+        assertEquals(2, state.getTotalProductsGenerated());
+        assertEquals(2, source.getGeneratedCount());
+    }
+
+    /// a bounded source with arrivals every 1-2 ms that holds the generator when full
+    private Queue source(int capacity) {
+        Queue queue = new Queue();
+        queue.setId("Q0");
+        queue.setCapacity(capacity);
+        queue.setArrivalDistribution(TimeDistribution.uniform(1, 2));
+        state.addQueue(queue);
+        return queue;
+    }
+}
@@ -0,0 +1,104 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.observer.QueueConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueServiceTest {
+
+    private QueueService queueService;
+    private Queue queue;
+
+    @BeforeEach
+    void setUp() {
+        queueService = new QueueService(new SimpleMeterRegistry());
+        queue = new Queue();
+        queue.setId("Q1");
+    }
+
+    @Test
+    void eachProductWakesExactlyOneWaitingConsumerInTurn() {
+        List<RecordingConsumer> consumers = subscribe(3);
+        consumers.forEach(consumer -> consumer.waiting = true);
+
+        for (int i = 0; i < 6; i++) {
+            queueService.addProductToQueue(queue, product("P" + i));
+            assertEquals(i + 1, consumers.stream().mapToInt(consumer -> consumer.woken).sum());
+        }
+        // the cursor moved on each time, so the wakeups were spread evenly
+        consumers.forEach(consumer -> assertEquals(2, consumer.woken));
+    }
+
+    @Test
+    void theCursorRotatesPastConsumersThatAreNotWaiting() {
+        List<RecordingConsumer> consumers = subscribe(4);
+        consumers.get(1).waiting = true;
+        consumers.get(3).waiting = true;
+
+        for (int i = 0; i < 4; i++) {
+            queueService.addProductToQueue(queue, product("P" + i));
+        }
+
+        assertEquals(0, consumers.get(0).woken);
+        assertEquals(2, consumers.get(1).woken);
+        assertEquals(0, consumers.get(2).woken);
+        assertEquals(2, consumers.get(3).woken);
+        // busy consumers are asked, and passed over, only when the search reaches them
+        assertTrue(consumers.get(0).asked > 0);
+        assertTrue(consumers.get(2).asked > 0);
+        assertEquals(4, consumers.stream().mapToInt(consumer -> consumer.woken).sum());
+    }
+
+    @Test
+    void nobodyIsWokenWhenEveryConsumerIsBusy() {
+        List<RecordingConsumer> consumers = subscribe(3);
+
+        queueService.addProductToQueue(queue, product("P0"));
+
+        consumers.forEach(consumer -> {
+            assertEquals(1, consumer.asked);
+            assertEquals(0, consumer.woken);
+        });
+    }
+
+    private List<RecordingConsumer> subscribe(int count) {
+        List<RecordingConsumer> consumers = new ArrayList<>();
+        IntStream.range(0, count).forEach(i -> {
+            RecordingConsumer consumer = new RecordingConsumer();
+            consumers.add(consumer);
+            queueService.subscribe(queue.getId(), consumer);
+        });
+        return consumers;
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+
+    /// a consumer that is waiting or busy as the test says; woken ones stay waiting
+    private static final class RecordingConsumer implements QueueConsumer {
+        boolean waiting;
+        int asked;
+        int woken;
+
+        @Override
+        public boolean wakeUp(Queue queue) {
+            asked++;
+            if (waiting) {
+                woken++;
+            }
+            return waiting;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.TopologyReport;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingTopologyTest {
+
+    @Test
+    void compilesRoutesAndReportsProblems() {
+        SimulationState state = new SimulationState();
+        for (String id : List.of("Q0", "Q1", "Q2", "Q3")) {
+            Queue queue = new Queue();
+            queue.setId(id);
+            state.addQueue(queue);
+        }
+        for (String id : List.of("M1", "M2", "M3")) {
+            Machine machine = new Machine();
+            machine.setId(id);
+            state.addMachine(machine);
+        }
+        // Q0 -> M1 -> Q1 -> M2 -> Q0 (rework loop), M1 -> Q2, Q3 isolated, M3 has no inputs
+        connect(state, "C1", "Q0", "M1");
+        connect(state, "C2", "M1", "Q1");
+        connect(state, "C3", "Q1", "M2");
+        connect(state, "C4", "M2", "Q0");
+        connect(state, "C5", "M1", "Q2");
+
+        RoutingTopology topology = RoutingTopology.compile(state, 7);
+
+        assertEquals(7, topology.getVersion());
+        assertArrayEquals(new Queue[] { state.getQueue("Q0") }, topology.inputsOf("M1"));
+        assertArrayEquals(new Queue[] { state.getQueue("Q1"), state.getQueue("Q2") }, topology.outputsOf("M1"));
+        assertArrayEquals(new Machine[] { state.getMachine("M2") }, topology.consumersOf("Q1"));
+        assertEquals(0, topology.inputsOf("M3").length);
+
+        TopologyReport report = topology.getReport();
+        assertEquals(List.of("M3"), report.getMachinesWithoutInputs());
+        assertEquals(List.of("M3"), report.getMachinesWithoutOutputs());
+        assertEquals(List.of(List.of("M1", "M2", "Q0", "Q1")), report.getCycles());
+        assertEquals(List.of("Q3"), report.getUnreachableQueues());
+    }
+
+    private static void connect(SimulationState state, String id, String sourceId, String targetId) {
+        Connection connection = new Connection();
+        connection.setId(id);
+        connection.setSourceId(sourceId);
+        connection.setTargetId(targetId);
+        state.addConnection(connection);
+    }
+}
@@ -0,0 +1,116 @@
+package com.producesconsumer.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.producesconsumer.backend.model.Connection;
+import com.producesconsumer.backend.model.Machine;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SimulationSnapshot;
+import com.producesconsumer.backend.model.SimulationState;
+import com.producesconsumer.backend.model.TimeDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCodecTest {
+
+    @Test
+    void binarySnapshotRoundTripsAndIsSmallerThanJson() throws Exception {
+        SimulationState state = new SimulationState();
+        state.setRandomSeed(42L);
+        state.setArrivalDistribution(TimeDistribution.uniform(100, 200));
+        state.setTotalProductsGenerated(1_000);
+        Queue source = queue("Q0", 0);
+        source.setArrivalDistribution(TimeDistribution.uniform(50, 60));
+        state.addQueue(source);
+        Queue buffer = queue("Q1", 1_000);
+        buffer.setCapacity(2_000);
+        buffer.setOverflowPolicy("drop");
+        state.addQueue(buffer);
+        Queue sink = queue("Q2", 0);
+        sink.setRole("sink");
+        state.addQueue(sink);
+        Machine machine = new Machine();
+        machine.setId("M1");
+        machine.setProcessingTime(250);
+        machine.setServers(3);
+        machine.setRoutingStrategy("round-robin");
+        state.addMachine(machine);
+        new ServerPool(machine).took(List.of(product("P-held-1"), product("P-held-2"))); // in service at the cut
+        Connection connection = new Connection();
+        connection.setId("C1");
+        connection.setSourceId("Q1");
+        connection.setSourceType("queue");
+        connection.setTargetId("M1");
+        connection.setTargetType("machine");
+        connection.setWeight(3);
+        state.addConnection(connection);
+        SimulationSnapshot original = state.saveToSnapshot("round-trip");
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        SnapshotCodec.write(original, binary);
+        SimulationSnapshot read = SnapshotCodec.read(new ByteArrayInputStream(binary.toByteArray()));
+
+        assertEquals(original.getLabel(), read.getLabel());
+        assertEquals(original.getTimestamp(), read.getTimestamp());
+        SimulationState restored = new SimulationState();
+        restored.loadFromSnapshot(read);
+        assertEquals(42L, restored.getRandomSeed());
+        assertEquals(1_000, restored.getTotalProductsGenerated());
+        assertEquals(state.getArrivalDistribution(), restored.getArrivalDistribution());
+        assertEquals(source.getArrivalDistribution(), restored.getQueue("Q0").getArrivalDistribution());
+        assertEquals("sink", restored.getQueue("Q2").getRole());
+        assertEquals(2_000, restored.getQueue("Q1").getCapacity());
+        assertEquals("drop", restored.getQueue("Q1").getOverflowPolicy());
+        assertEquals(1_000, restored.getQueue("Q1").getProductCount());
+        assertEquals(List.copyOf(buffer.getProducts()), List.copyOf(restored.getQueue("Q1").getProducts()));
+        assertEquals(machine, restored.getMachine("M1"));
+        assertEquals(2, restored.getMachine("M1").getProductCount());
+        assertEquals(machine.getHeldProducts(), restored.getMachine("M1").getHeldProducts());
+        assertEquals(connection, restored.getConnection("C1"));
+        assertEquals(1, restored.getConnectionsTo("M1").size());
+
+        byte[] json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(original);
+        assertTrue(binary.size() * 3 < json.length, binary.size() + " bytes vs " + json.length + " as JSON");
+    }
+
+    @Test
+    void refusesFilesFromANewerFormat() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = new SmileFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeNumberField("version", SnapshotCodec.VERSION + 1);
+            gen.writeEndObject();
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> SnapshotCodec.read(new ByteArrayInputStream(out.toByteArray())));
+        assertTrue(e.getMessage().contains("newer"), e.getMessage());
+    }
+
+    private static Queue queue(String id, int products) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        String[] colors = { "#e74c3c", "#3498db", "#f39c12" };
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setId("PROD-" + (1_000_000L + i));
+            product.setColor(colors[i % colors.length]);
+            queue.enqueue(product);
+        }
+        return queue;
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setColor("#2ecc71");
+        return product;
+    }
+}
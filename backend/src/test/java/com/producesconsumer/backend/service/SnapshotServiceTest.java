@@ -0,0 +1,94 @@
+package com.producesconsumer.backend.service;
+
+import com.producesconsumer.backend.dto.SnapshotInfo;
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import com.producesconsumer.backend.model.SSE;
+import com.producesconsumer.backend.observer.QueueEventObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.Disposable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ExecutorService executor;
+    private EventBroadcaster broadcaster;
+    private EventService eventService;
+    private SimulationService simulationService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        eventService = new EventService(64, "drop-oldest", new SimpleMeterRegistry());
+        broadcaster = new EventBroadcaster(eventService, 30, 0);
+        QueueService queueService = new QueueService(new SimpleMeterRegistry());
+        simulationService = new SimulationService(eventService, broadcaster, queueService,
+                new QueueEventObserver(broadcaster),
+                new MachineProcessingService(executor, queueService, null), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void saveReturnsAHandleAndWritesInTheBackground() throws Exception {
+        Queue queue = new Queue();
+        queue.setId("Q1");
+        for (int i = 0; i < 100; i++) {
+            Product product = new Product();
+            product.setId("PROD-" + i);
+            product.setColor("#3498db");
+            queue.enqueue(product);
+        }
+        simulationService.getState().addQueue(queue);
+
+        CompletableFuture<SSE> saved = new CompletableFuture<>();
+        Disposable subscription = eventService.getEventStream()
+                .filter(event -> event.getType().startsWith("SNAPSHOT_"))
+                .subscribe(saved::complete);
+        SnapshotService snapshotService = new SnapshotService(simulationService, eventService,
+                new SimpleMeterRegistry(), "binary", dir.toString());
+        try {
+            SnapshotInfo handle = snapshotService.saveSnapshot("background");
+            assertEquals("saving", handle.getStatus());
+            assertEquals("binary", handle.getFormat());
+
+            // the live state can change while the captured copy is written
+            queue.dequeue();
+
+            SSE event = saved.get(10, TimeUnit.SECONDS);
+            assertEquals("SNAPSHOT_SAVED", event.getType());
+            SnapshotInfo info = (SnapshotInfo) event.getData();
+            assertEquals("saved", info.getStatus());
+            Path file = dir.resolve("background.snap");
+            assertEquals(Files.size(file), info.getBytes());
+            assertFalse(Files.exists(dir.resolve("background.tmp")));
+            assertEquals("saved", snapshotService.getSnapshotsInfo().get(0).getStatus());
+
+            snapshotService.clearSnapshots(); // force the replay to come from the file
+            snapshotService.loadSnapshot("background");
+            assertEquals(100, simulationService.getState().getQueue("Q1").getProductCount());
+        } finally {
+            subscription.dispose();
+            snapshotService.shutdown();
+        }
+    }
+}
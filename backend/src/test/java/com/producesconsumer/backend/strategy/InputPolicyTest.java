@@ -0,0 +1,51 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputPolicyTest {
+
+    @Test
+    void roundRobinAndWeightedFairShareBackloggedInputs() {
+        Queue[] inputs = { queue("Q1", 100, 0), queue("Q2", 100, 0), queue("Q3", 0, 0) };
+
+        assertEquals(Map.of(0, 10, 1, 10), draw(InputPolicyType.ROUND_ROBIN.create(), inputs, new int[] { 1, 1, 1 }));
+        // the empty Q3 gets nothing and its weight is not counted
+        assertEquals(Map.of(0, 15, 1, 5), draw(InputPolicyType.WEIGHTED_FAIR.create(), inputs, new int[] { 3, 1, 5 }));
+    }
+
+    @Test
+    void longestAndOldestPickByDepthAndArrival() {
+        Queue[] inputs = { queue("Q1", 2, 500), queue("Q2", 7, 900), queue("Q3", 1, 100), queue("Q4", 0, 0) };
+        int[] weights = { 1, 1, 1, 1 };
+
+        assertEquals(1, InputPolicyType.LONGEST_QUEUE.create().select(inputs, weights));
+        assertEquals(2, InputPolicyType.OLDEST_PRODUCT.create().select(inputs, weights));
+        assertEquals(0, InputPolicyType.FIXED_ORDER.create().select(inputs, weights));
+        assertEquals(-1, InputPolicyType.ROUND_ROBIN.create().select(new Queue[] { inputs[3] }, new int[] { 1 }));
+    }
+
+    /// picks per input index over 20 selections, without dequeuing
+    private static Map<Integer, Integer> draw(InputPolicy policy, Queue[] inputs, int[] weights) {
+        Map<Integer, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            picks.merge(policy.select(inputs, weights), 1, Integer::sum);
+        }
+        return picks;
+    }
+
+    private static Queue queue(String id, int depth, long enqueuedAt) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        for (int i = 0; i < depth; i++) {
+            queue.enqueue(new Product(), enqueuedAt + i);
+        }
+        return queue;
+    }
+}
@@ -0,0 +1,56 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.Product;
+import com.producesconsumer.backend.model.Queue;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingStrategyTest {
+
+    @Test
+    void weightedHonoursConnectionWeightsExactly() {
+        Queue[] outputs = { queue("Q1", 0), queue("Q2", 0), queue("Q3", 0) };
+        int[] weights = { 3, 2, 1 };
+        RoutingStrategy strategy = RoutingStrategyType.WEIGHTED.create();
+
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < 60; i++) {
+            picks.merge(strategy.select(outputs, weights).getId(), 1, Integer::sum);
+        }
+        assertEquals(Map.of("Q1", 30, "Q2", 20, "Q3", 10), picks);
+    }
+
+    @Test
+    void shortestQueueAndPowerOfTwoAvoidTheLongestQueue() {
+        Queue[] outputs = { queue("Q1", 5), queue("Q2", 1), queue("Q3", 9) };
+        int[] weights = { 1, 1, 1 };
+
+        RoutingStrategy shortest = RoutingStrategyType.SHORTEST_QUEUE.create();
+        RoutingStrategy powerOfTwo = RoutingStrategyType.POWER_OF_TWO.create();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Q2", shortest.select(outputs, weights).getId());
+            assertNotEquals("Q3", powerOfTwo.select(outputs, weights).getId());
+        }
+    }
+
+    @Test
+    void parsesConfigStyleNames() {
+        assertEquals(RoutingStrategyType.ROUND_ROBIN, RoutingStrategyType.fromName("round-robin"));
+        assertEquals(RoutingStrategyType.RANDOM, RoutingStrategyType.fromName(null));
+        assertEquals("power-of-two", RoutingStrategyType.POWER_OF_TWO.displayName());
+        assertThrows(IllegalArgumentException.class, () -> RoutingStrategyType.fromName("fastest"));
+    }
+
+    private static Queue queue(String id, int depth) {
+        Queue queue = new Queue();
+        queue.setId(id);
+        for (int i = 0; i < depth; i++) {
+            queue.enqueue(new Product());
+        }
+        return queue;
+    }
+}
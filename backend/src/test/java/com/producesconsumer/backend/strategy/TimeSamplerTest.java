@@ -0,0 +1,78 @@
+package com.producesconsumer.backend.strategy;
+
+import com.producesconsumer.backend.model.TimeDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSamplerTest {
+
+    @Test
+    void samplesHaveTheConfiguredMean() {
+        assertMean(distribution("exponential", 1000, 0, 0), 1000);
+        assertMean(distribution("erlang", 1000, 0, 4), 1000);
+        assertMean(distribution("normal", 1000, 100, 0), 1000);
+        assertMean(distribution("log-normal", 1000, 500, 0), 1000);
+        assertMean(TimeDistribution.uniform(2000, 2500), 2250);
+
+        TimeDistribution empirical = distribution("empirical", 0, 0, 0);
+        empirical.setSamples(List.of(100.0, 200.0, 600.0));
+        assertMean(empirical, 300);
+    }
+
+    @Test
+    void sameSeedAndStreamRepeat() {
+        TimeDistribution distribution = distribution("exponential", 1000, 0, 0);
+        TimeSampler first = new TimeSampler(distribution, TimeSampler.random(42L, "M1#0"));
+        TimeSampler second = new TimeSampler(distribution, TimeSampler.random(42L, "M1#0"));
+        TimeSampler otherStream = new TimeSampler(distribution, TimeSampler.random(42L, "M1#1"));
+
+        boolean differs = false;
+        for (int i = 0; i < 100; i++) {
+            long value = first.next();
+            assertEquals(value, second.next());
+            differs |= value != otherStream.next();
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    void clampsAndValidation() {
+        TimeDistribution clamped = distribution("normal", 1000, 2000, 0);
+        clamped.setMin(200);
+        clamped.setMax(1500);
+        TimeSampler sampler = new TimeSampler(clamped, TimeSampler.random(7L, "clamp"));
+        for (int i = 0; i < 1000; i++) {
+            long value = sampler.next();
+            assertTrue(value >= 200 && value <= 1500, "sample " + value);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeDistributionType.check(distribution("exponential", 0, 0, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeDistributionType.check(distribution("empirical", 0, 0, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> TimeDistributionType.check(distribution("weibull", 1000, 0, 0)));
+    }
+
+    private static void assertMean(TimeDistribution distribution, double expected) {
+        TimeSampler sampler = new TimeSampler(distribution, TimeSampler.random(1L, distribution.getType()));
+        int n = 100_000;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += sampler.next();
+        }
+        assertEquals(expected, sum / n, expected * 0.02, distribution.getType());
+    }
+
+    private static TimeDistribution distribution(String type, double mean, double stdDev, int shape) {
+        TimeDistribution distribution = new TimeDistribution();
+        distribution.setType(type);
+        distribution.setMean(mean);
+        distribution.setStdDev(stdDev);
+        distribution.setShape(shape);
+        return distribution;
+    }
+}
@@ -240,7 +240,7 @@ export class SimulationCanvasComponent implements AfterViewInit, OnDestroy {
             top: -5,
         });
 
-        const countText = new fabric.FabricText(`Products: ${queue.productCount}`, {
+        const countText = new fabric.FabricText(this.queueCountLabel(queue), {
             fontSize: 11,
             fontFamily: 'system-ui, sans-serif',
             fill: 'rgba(255, 255, 255, 0.9)',
@@ -262,11 +262,15 @@ export class SimulationCanvasComponent implements AfterViewInit, OnDestroy {
         return group;
     }
 
+    private queueCountLabel(queue: Queue): string {
+        return queue.capacity ? `Products: ${queue.productCount}/${queue.capacity}` : `Products: ${queue.productCount}`;
+    }
+
     private updateQueueLabel(group: fabric.Group, queue: Queue): void {
         const objects = group.getObjects();
         const countText = objects[2] as fabric.FabricText;
         if (countText) {
-            countText.set('text', `Products: ${queue.productCount}`);
+            countText.set('text', this.queueCountLabel(queue));
         }
     }
 
@@ -309,7 +313,7 @@ export class SimulationCanvasComponent implements AfterViewInit, OnDestroy {
         });
 
         // Show processing time in seconds
-        const timeText = new fabric.FabricText(`${(machine.processingTime / 1000).toFixed(1)}s`, {
+        const timeText = new fabric.FabricText(this.machineTimeLabel(machine), {
             fontSize: 11,
             fontFamily: 'system-ui, sans-serif',
             fill: 'rgba(255, 255, 255, 0.9)',
@@ -336,6 +340,16 @@ export class SimulationCanvasComponent implements AfterViewInit, OnDestroy {
         const rect = objects[0] as fabric.Rect;
         const bgColor = machine.currentProductColor || this.MACHINE_COLOR;
         rect.set({ fill: bgColor });
+        const timeText = objects[2] as fabric.FabricText;
+        if (timeText) {
+            timeText.set('text', this.machineTimeLabel(machine));
+        }
+    }
+
+    /** Processing time, plus busy/total servers for a multi-server machine */
+    private machineTimeLabel(machine: Machine): string {
+        const time = `${(machine.processingTime / 1000).toFixed(1)}s`;
+        return (machine.servers ?? 1) > 1 ? `${time} · ${machine.busyServers ?? 0}/${machine.servers}` : time;
     }
 
     private renderConnection(connection: Connection, state: SimulationState): void {
@@ -16,10 +16,21 @@ export interface Queue {
     y: number;
     productCount: number;
     products: Product[];
+    capacity?: number; // 0 or missing = unbounded
+    overflowPolicy?: QueueOverflow;
+    role?: QueueRole; // missing = 'source' for Q0, else 'buffer'
+    arrivalDistribution?: TimeDistribution | null; // sources only, null = the simulation-wide default
+    completedCount?: number; // products that left the line here (sinks)
 }
 
-/** Machine processing state */
-export type MachineState = 'idle' | 'processing';
+/** What a queue is in the line: products arrive at sources and leave at sinks */
+export type QueueRole = 'buffer' | 'source' | 'sink';
+
+/** What a producer does when the queue it routes to is full */
+export type QueueOverflow = 'block' | 'drop' | 'reroute';
+
+/** Machine processing state ('blocked' = holding a product for a full output queue) */
+export type MachineState = 'idle' | 'processing' | 'blocked';
 
 /** Machine element in the simulation */
 export interface Machine {
@@ -28,10 +39,124 @@ export interface Machine {
     y: number;
     state: MachineState;
     productCount: number;
-    processingTime: number;
+    processingTime: number; // ms, the mean when a distribution is set
+    processingTimeDistribution?: TimeDistribution | null; // null = always processingTime
     currentProductColor?: string;
     inputQueueId?: string;
     outputQueueId?: string;
+    routingStrategy?: RoutingStrategy;
+    inputPolicy?: InputPolicy;
+    batchSize?: number; // products per cycle, 1 = one at a time
+    batchTimeoutMs?: number; // wait for a full batch, 0 = start with what's there
+    currentBatchSize?: number; // products in the cycle being processed
+    servers?: number; // products processed in parallel, 1 = a single server
+    busyServers?: number; // servers currently holding a product
+    unroutedCount?: number; // finished products discarded for lack of an output
+}
+
+/** How a machine picks the output queue for a finished product */
+export type RoutingStrategy = 'random' | 'round-robin' | 'shortest-queue' | 'power-of-two' | 'weighted';
+
+/** How a machine picks the input queue it takes its next product from */
+export type InputPolicy = 'fixed-order' | 'round-robin' | 'longest-queue' | 'oldest-product' | 'weighted-fair';
+
+/** Wait times of one queue */
+export interface QueueStats {
+    queueId: string;
+    depth: number;
+    capacity: number;
+    dropped: number;
+    served: number;
+    meanWaitMs: number;
+    maxWaitMs: number;
+    headWaitMs: number;
+}
+
+/** Arrivals at one source */
+export interface SourceStats {
+    queueId: string;
+    generated: number;
+    dropped: number;
+    depth: number;
+    arrivalType: DistributionType;
+    meanInterarrivalMs: number;
+}
+
+/** Completions at one sink; system time runs from the source to here */
+export interface SinkStats {
+    queueId: string;
+    completed: number;
+    meanSystemTimeMs: number;
+    maxSystemTimeMs: number;
+    throughputPerMinute: number;
+}
+
+/** Percentiles of one latency histogram (id missing for the end-to-end total) */
+export interface LatencySummary {
+    id?: string;
+    count: number;
+    meanMs: number;
+    p50Ms: number;
+    p95Ms: number;
+    p99Ms: number;
+    maxMs: number;
+}
+
+/** Wait per queue, service time per machine, system time per sink and end to end */
+export interface LatencyReport {
+    endToEnd: LatencySummary;
+    queues: LatencySummary[];
+    machines: LatencySummary[];
+    sinks: LatencySummary[];
+}
+
+/** Rates over one sliding window; in/out are arrivals/departures for a queue, started/finished for a machine */
+export interface WindowRates {
+    seconds: number;
+    spanMs: number; // shorter than the window until the run is that old
+    inPerMinute: number;
+    outPerMinute: number;
+    utilization: number; // machines: share of server time processing
+    blockedShare: number; // machines: share of server time blocked on a full output
+}
+
+/** Arrivals and departures of one queue */
+export interface QueueMetrics {
+    queueId: string;
+    role: QueueRole;
+    depth: number;
+    arrivals: number;
+    departures: number;
+    windows: WindowRates[];
+}
+
+/** Products and server time (server-ms) of one machine */
+export interface MachineMetrics {
+    machineId: string;
+    servers: number;
+    busyServers: number;
+    started: number;
+    finished: number;
+    processingMs: number;
+    blockedMs: number;
+    idleMs: number;
+    utilization: number;
+    windows: WindowRates[];
+}
+
+/** Live throughput and utilization of the line */
+export interface MetricsReport {
+    running: boolean;
+    windowSeconds: number[];
+    bottleneckMachineId?: string | null;
+    queues: QueueMetrics[];
+    machines: MachineMetrics[];
+}
+
+/** Where products enter and leave the line */
+export interface FlowStats {
+    sources: SourceStats[];
+    sinks: SinkStats[];
 }
 
 /** Connection between elements */
@@ -41,6 +166,7 @@ export interface Connection {
     sourceType: 'queue' | 'machine';
     targetId: string;
     targetType: 'queue' | 'machine';
+    weight?: number;
 }
 
 /** Complete simulation state */
@@ -50,7 +176,25 @@ export interface SimulationState {
     connections: Connection[];
     isRunning: boolean;
     simulationId?: string;
-    totalProductsGenerated?: number;  // Count of all products that entered Q0
+    totalProductsGenerated?: number;  // Count of all products that entered a source
+    arrivalDistribution?: TimeDistribution | null; // default for every source, null = uniform 2000-2500 ms
+    randomSeed?: number | null; // null = a different run each time
+}
+
+/** Shape of a random duration (processing time or gap between arrivals) */
+export type DistributionType = 'fixed' | 'uniform' | 'exponential' | 'normal' | 'log-normal' | 'erlang' | 'empirical';
+
+/** Random duration in ms; which parameters are used depends on the type */
+export interface TimeDistribution {
+    type: DistributionType;
+    mean?: number;
+    stdDev?: number;
+    min?: number; // uniform range start / lower clamp
+    max?: number; // uniform range end / upper clamp (0 = none)
+    shape?: number; // erlang phases
+    samples?: number[]; // empirical, inline (request only)
+    samplesFile?: string; // empirical, file under the server's samples dir
+    sampleCount?: number; // empirical, as reported by the server
 }
 
 /** Snapshot for replay functionality */
@@ -59,6 +203,9 @@ export interface Snapshot {
     timestamp: Date | string;
     label: string;
     state?: SimulationState;
+    format?: 'binary' | 'json';
+    status?: 'saving' | 'saved' | 'failed'; // written to disk in the background
+    bytes?: number;
 }
 
 /** SSE Event types from backend */
@@ -72,7 +219,42 @@ export type SSEEventType =
     | 'PRODUCT_PROCESSED'
     | 'SIMULATION_STARTED'
     | 'SIMULATION_STOPPED'
-    | 'SNAPSHOT_CREATED';
+    | 'SNAPSHOT_CREATED'
+    | 'SNAPSHOT_SAVED'
+    | 'SNAPSHOT_FAILED'
+    | 'STATE_SNAPSHOT'
+    | 'STATE_DELTA'
+    | 'LATENCY_SUMMARY'
+    | 'BATCH';
+
+/** Queue as sent in state deltas (no products) */
+export interface QueueSummary {
+    id: string;
+    x: number;
+    y: number;
+    productCount: number;
+    capacity: number;
+    overflowPolicy?: QueueOverflow;
+}
+
+/** Full state tagged with the last delta sequence it includes */
+export interface StateSync {
+    seq: number;
+    state: SimulationState | null;
+}
+
+/** Changes since the previous delta, seq increases by one per delta */
+export interface StateDelta {
+    seq: number;
+    queues?: QueueSummary[];
+    removedQueueIds?: string[];
+    machines?: Machine[];
+    removedMachineIds?: string[];
+    connections?: Connection[];
+    removedConnectionIds?: string[];
+    isRunning: boolean;
+    totalProductsGenerated: number;
+}
 
 /** SSE Event message */
 export interface SSEEvent<T = unknown> {
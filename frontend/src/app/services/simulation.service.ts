@@ -9,6 +9,17 @@ import {
     Snapshot,
     SSEEvent,
     ApiResponse,
+    StateDelta,
+    StateSync,
+    RoutingStrategy,
+    InputPolicy,
+    QueueStats,
+    QueueOverflow,
+    TimeDistribution,
+    QueueRole,
+    FlowStats,
+    LatencyReport,
+    MetricsReport,
 } from '../models/simulation.model';
 
 @Injectable({
@@ -37,6 +48,7 @@ export class SimulationService {
     private _isConnected = signal<boolean>(false);
     private _error = signal<string | null>(null);
     private _isReplaying = signal<boolean>(false); // flag for UI state
+    private _latency = signal<LatencyReport | null>(null); // last LATENCY_SUMMARY
 
     // Public readonly signals
     readonly state = this._state.asReadonly();
@@ -44,6 +56,7 @@ export class SimulationService {
     readonly isConnected = this._isConnected.asReadonly();
     readonly error = this._error.asReadonly();
     readonly isReplaying = this._isReplaying.asReadonly();
+    readonly latency = this._latency.asReadonly();
 
     // Computed values
     readonly queues = computed(() => this._state().queues);
@@ -56,6 +69,11 @@ export class SimulationService {
     private _sseEvents = new Subject<SSEEvent>();
     readonly sseEvents$ = this._sseEvents.asObservable();
 
+    // Sequence of the last applied STATE_DELTA (null until the first snapshot)
+    private lastSeq: number | null = null;
+    private resyncing = false;
+    private resyncDelayMs = 0; // backoff before the next resync attempt, 0 after a success
+
     // Machine flash events
     private _machineFlash = new Subject<string>();
     readonly machineFlash$ = this._machineFlash.asObservable();
@@ -134,10 +152,26 @@ export class SimulationService {
     /** Handle incoming SSE events and update state */
     private handleSSEEvent(event: SSEEvent): void {
         switch (event.type) {
+            case 'BATCH':
+                // One coalesced frame from the backend, replay its events in order
+                for (const inner of event.data as SSEEvent[]) {
+                    this.handleSSEEvent(inner);
+                    this._sseEvents.next(inner);
+                }
+                break;
+
             case 'STATE_UPDATE':
                 this._state.set(event.data as SimulationState);
                 break;
 
+            case 'STATE_SNAPSHOT':
+                this.applySync(event.data as StateSync);
+                break;
+
+            case 'STATE_DELTA':
+                this.applyDelta(event.data as StateDelta);
+                break;
+
             case 'QUEUE_UPDATE':
                 this.updateQueue(event.data as Queue);
                 break;
@@ -163,8 +197,11 @@ export class SimulationService {
                 break;
 
             case 'MACHINE_FLASH':
-                const flashData = event.data as { machineId: string };
-                this._machineFlash.next(flashData.machineId);
+                this._machineFlash.next(event.data as string);
+                break;
+
+            case 'LATENCY_SUMMARY':
+                this._latency.set(event.data as LatencyReport);
                 break;
 
             case 'SIMULATION_STARTED':
@@ -176,9 +213,111 @@ export class SimulationService {
                 break;
 
             case 'SNAPSHOT_CREATED':
+            case 'SNAPSHOT_SAVED':
                 this.loadSnapshots();
                 break;
+
+            case 'SNAPSHOT_FAILED':
+                console.error('[Snapshot] Writing snapshot failed:', (event.data as Snapshot).label);
+                this.loadSnapshots();
+                break;
+        }
+    }
+
+    private applySync(sync: StateSync): void {
+        if (sync.state) {
+            this._state.set(sync.state);
+        }
+        this.lastSeq = sync.seq;
+    }
+
+    private applyDelta(delta: StateDelta): void {
+        if (this.lastSeq === null || delta.seq <= this.lastSeq) {
+            return; // no base yet, or already included in the snapshot
+        }
+        if (delta.seq !== this.lastSeq + 1) {
+            console.warn('[SSE] Delta gap:', this.lastSeq, '->', delta.seq, ', resyncing');
+            this.resync();
+            return;
         }
+        this.lastSeq = delta.seq;
+
+        this._state.update((s) => {
+            const removedQueues = new Set(delta.removedQueueIds ?? []);
+            const removedMachines = new Set(delta.removedMachineIds ?? []);
+            const removedConnections = new Set(delta.removedConnectionIds ?? []);
+
+            const queues = s.queues.filter((q) => !removedQueues.has(q.id));
+            for (const summary of delta.queues ?? []) {
+                const index = queues.findIndex((q) => q.id === summary.id);
+                if (index >= 0) {
+                    queues[index] = { ...queues[index], ...summary };
+                } else {
+                    queues.push({ ...summary, products: [] });
+                }
+            }
+
+            const machines = s.machines.filter((m) => !removedMachines.has(m.id));
+            for (const machine of delta.machines ?? []) {
+                const index = machines.findIndex((m) => m.id === machine.id);
+                if (index >= 0) {
+                    machines[index] = machine;
+                } else {
+                    machines.push(machine);
+                }
+            }
+
+            const connections = s.connections.filter((c) => !removedConnections.has(c.id));
+            for (const connection of delta.connections ?? []) {
+                const index = connections.findIndex((c) => c.id === connection.id);
+                if (index >= 0) {
+                    connections[index] = connection;
+                } else {
+                    connections.push(connection);
+                }
+            }
+
+            return {
+                ...s,
+                queues,
+                machines,
+                connections,
+                isRunning: delta.isRunning,
+                totalProductsGenerated: delta.totalProductsGenerated,
+            };
+        });
+    }
+
+    /** Reload the full state after missing a delta, retrying with backoff until it arrives */
+    private resync(): void {
+        if (this.resyncing) {
+            return;
+        }
+        this.resyncing = true;
+        // lastSeq stays as it is: deltas past the gap keep being refused, and
+        // the snapshot replaces both once it arrives
+        const retry = () => {
+            this.resyncDelayMs = Math.min(Math.max(this.resyncDelayMs * 2, 500), 10000);
+            setTimeout(() => {
+                this.resyncing = false;
+                this.resync();
+            }, this.resyncDelayMs);
+        };
+        this.http.get<ApiResponse<StateSync>>(`${this.API_BASE}/state/sync`).subscribe({
+            next: (response) => {
+                if (response.success && response.data) {
+                    this.applySync(response.data);
+                    this.resyncDelayMs = 0;
+                    this.resyncing = false;
+                } else {
+                    retry();
+                }
+            },
+            error: (err) => {
+                console.error('[SSE] Resync failed:', err);
+                retry();
+            },
+        });
     }
 
     private updateQueue(queue: Queue): void {
@@ -333,6 +472,93 @@ export class SimulationService {
         });
     }
 
+    /** Choose how a machine spreads its output over its output queues */
+    setRoutingStrategy(machineId: string, strategy: RoutingStrategy): Observable<ApiResponse<Machine>> {
+        return this.http.patch<ApiResponse<Machine>>(`${this.API_BASE}/machines/${machineId}/routing`, {
+            strategy,
+        });
+    }
+
+    /** Choose how a machine picks among its input queues */
+    setInputPolicy(machineId: string, policy: InputPolicy): Observable<ApiResponse<Machine>> {
+        return this.http.patch<ApiResponse<Machine>>(`${this.API_BASE}/machines/${machineId}/input-policy`, {
+            policy,
+        });
+    }
+
+    /** Process products in batches of batchSize, waiting up to batchTimeoutMs for a full one */
+    setMachineBatch(machineId: string, batchSize: number, batchTimeoutMs = 0): Observable<ApiResponse<Machine>> {
+        return this.http.patch<ApiResponse<Machine>>(`${this.API_BASE}/machines/${machineId}/batch`, {
+            batchSize,
+            batchTimeoutMs,
+        });
+    }
+
+    /** Let a machine work on this many products in parallel */
+    setMachineServers(machineId: string, servers: number): Observable<ApiResponse<Machine>> {
+        return this.http.patch<ApiResponse<Machine>>(`${this.API_BASE}/machines/${machineId}/servers`, { servers });
+    }
+
+    /** Draw each product's processing time on this machine from a distribution */
+    setProcessingTime(machineId: string, distribution: TimeDistribution): Observable<ApiResponse<Machine>> {
+        return this.http.patch<ApiResponse<Machine>>(`${this.API_BASE}/machines/${machineId}/processing-time`, distribution);
+    }
+
+    /** Default distribution of the gap between arrivals at a source */
+    setArrivalDistribution(distribution: TimeDistribution): Observable<ApiResponse<TimeDistribution>> {
+        return this.http.patch<ApiResponse<TimeDistribution>>(`${this.API_BASE}/arrivals`, distribution);
+    }
+
+    /** Seed the next run's random streams so it can be repeated (null = unseeded) */
+    setRandomSeed(seed: number | null): Observable<ApiResponse<number | null>> {
+        return this.http.patch<ApiResponse<number | null>>(`${this.API_BASE}/seed`, { seed });
+    }
+
+    /** Bound a queue (0 = unbounded) and choose what happens when it is full */
+    setQueueCapacity(queueId: string, capacity: number, overflowPolicy?: QueueOverflow): Observable<ApiResponse<Queue>> {
+        return this.http.patch<ApiResponse<Queue>>(`${this.API_BASE}/queues/${queueId}/capacity`, {
+            capacity,
+            overflowPolicy,
+        });
+    }
+
+    /** Make a queue a buffer, a source (own arrivals) or a sink (products leave the line) */
+    setQueueRole(queueId: string, role: QueueRole): Observable<ApiResponse<Queue>> {
+        return this.http.patch<ApiResponse<Queue>>(`${this.API_BASE}/queues/${queueId}/role`, { role });
+    }
+
+    /** Arrival process of one source (type missing = back to the default) */
+    setSourceArrivals(queueId: string, distribution: TimeDistribution | null): Observable<ApiResponse<Queue>> {
+        return this.http.patch<ApiResponse<Queue>>(`${this.API_BASE}/queues/${queueId}/arrivals`, distribution ?? {});
+    }
+
+    /** Arrivals per source and completions per sink */
+    getFlowStats(): Observable<ApiResponse<FlowStats>> {
+        return this.http.get<ApiResponse<FlowStats>>(`${this.API_BASE}/flow`);
+    }
+
+    /** Arrival/departure rates and machine utilization over sliding windows */
+    getMetrics(): Observable<ApiResponse<MetricsReport>> {
+        return this.http.get<ApiResponse<MetricsReport>>(`${this.API_BASE}/metrics`);
+    }
+
+    /** Latency percentiles per queue, machine and sink, and end to end */
+    getLatencyReport(): Observable<ApiResponse<LatencyReport>> {
+        return this.http.get<ApiResponse<LatencyReport>>(`${this.API_BASE}/latency`);
+    }
+
+    /** Wait-time stats per queue, longest mean wait first */
+    getQueueStats(): Observable<ApiResponse<QueueStats[]>> {
+        return this.http.get<ApiResponse<QueueStats[]>>(`${this.API_BASE}/queues/stats`);
+    }
+
+    /** Set a connection's share under weighted routing / weighted-fair input */
+    setConnectionWeight(connectionId: string, weight: number): Observable<ApiResponse<Connection>> {
+        return this.http.patch<ApiResponse<Connection>>(`${this.API_BASE}/connections/${connectionId}/weight`, {
+            weight,
+        });
+    }
+
     /** Start the simulation */
     startSimulation(): Observable<ApiResponse<void>> {
         if (this.MOCK_MODE) {
@@ -441,8 +667,8 @@ export class SimulationService {
         );
     }
 
-    /** Create a manual snapshot */
-    createSnapshot(label?: string): Observable<ApiResponse<Snapshot>> {
+    /** Create a manual snapshot; format 'json' writes a readable export instead of the binary file */
+    createSnapshot(label?: string, format?: 'binary' | 'json'): Observable<ApiResponse<Snapshot>> {
         if (this.MOCK_MODE) {
             const snapshot: Snapshot = {
                 id: `SNAP${this._snapshots().length + 1}`,
@@ -454,7 +680,7 @@ export class SimulationService {
             return of({ success: true, data: snapshot });
         }
         const snapshotLabel = label || `Snapshot_${new Date().getTime()}`;
-        return this.http.post<ApiResponse<Snapshot>>(`${this.API_BASE}/snapshots`, { label: snapshotLabel }).pipe(
+        return this.http.post<ApiResponse<Snapshot>>(`${this.API_BASE}/snapshots`, { label: snapshotLabel, format }).pipe(
             tap(response => {
                 if (response.success) {
                     this.loadSnapshots();